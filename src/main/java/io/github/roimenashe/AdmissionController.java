@@ -0,0 +1,89 @@
+package io.github.roimenashe;
+
+import io.github.roimenashe.model.QueryPriority;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of concurrent queries and index builds with separate pools, so a rebuild never takes the
+ * capacity of queries. Requests wait for a slot up to the queue timeout and are then rejected with an
+ * {@link OverloadedException}, keeping tail latency bounded under overload instead of queueing without limit.
+ * Waiting interactive queries are admitted before background ones.
+ */
+class AdmissionController {
+
+    private final Pool queries;
+    private final Pool builds;
+    private final long queueTimeoutNanos;
+
+    AdmissionController(int maxConcurrentQueries, int maxConcurrentBuilds, Duration queueTimeout) {
+        this.queries = new Pool("queries", maxConcurrentQueries);
+        this.builds = new Pool("index builds", maxConcurrentBuilds);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+    }
+
+    <T> T query(QueryPriority priority, Callable<T> query) throws Exception {
+        queries.acquire(priority == QueryPriority.INTERACTIVE, queueTimeoutNanos);
+        try {
+            return query.call();
+        } finally {
+            queries.release();
+        }
+    }
+
+    <T> T build(Callable<T> build) throws Exception {
+        builds.acquire(true, queueTimeoutNanos);
+        try {
+            return build.call();
+        } finally {
+            builds.release();
+        }
+    }
+
+    /**
+     * Counting semaphore whose waiters with priority go first. A limit of 0 admits everything.
+     */
+    private static class Pool {
+
+        private final String name;
+        private final int limit;
+        private int active;
+        private int waitingWithPriority;
+
+        Pool(String name, int limit) {
+            this.name = name;
+            this.limit = limit;
+        }
+
+        synchronized void acquire(boolean priority, long timeoutNanos) throws InterruptedException {
+            if (limit == 0) return;
+            long deadline = System.nanoTime() + timeoutNanos;
+            if (priority) {
+                waitingWithPriority++;
+            }
+            try {
+                while (active >= limit || (!priority && waitingWithPriority > 0)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new OverloadedException("Too many concurrent " + name + " (limit " + limit
+                                + "), not admitted within " + Duration.ofNanos(timeoutNanos).toMillis() + "ms");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                active++;
+            } finally {
+                if (priority) {
+                    waitingWithPriority--;
+                }
+            }
+        }
+
+        synchronized void release() {
+            if (limit == 0) return;
+            active--;
+            notifyAll();
+        }
+    }
+}
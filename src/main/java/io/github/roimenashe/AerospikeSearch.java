@@ -1,37 +1,103 @@
 package io.github.roimenashe;
 
 import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
 import com.aerospike.client.Record;
+import com.aerospike.client.exp.Expression;
+import io.github.roimenashe.index.BuildCheckpointer;
+import io.github.roimenashe.index.ConsistencyVerifier;
+import io.github.roimenashe.index.EmbeddingCache;
+import io.github.roimenashe.index.ExpirySweeper;
 import io.github.roimenashe.index.FullTextIndexer;
+import io.github.roimenashe.index.IndexDirectoryFactory;
+import io.github.roimenashe.index.IndexMemoryManager;
+import io.github.roimenashe.index.MultiIndexer;
 import io.github.roimenashe.index.VectorIndexer;
+import io.github.roimenashe.model.ConsistencyReport;
+import io.github.roimenashe.model.FacetResult;
+import io.github.roimenashe.model.HighlightedRecord;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.IndexSpec;
 import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.model.NamespaceSet;
+import io.github.roimenashe.model.QueryPriority;
+import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.SearchResults;
+import io.github.roimenashe.model.ShardQuery;
 import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.VectorSearchMode;
 import io.github.roimenashe.search.FullTextSearchService;
 import io.github.roimenashe.search.HybridSearchService;
+import io.github.roimenashe.search.QueryEmbedder;
+import io.github.roimenashe.search.RerankService;
+import io.github.roimenashe.search.SuggestService;
 import io.github.roimenashe.search.VectorSearchService;
 import io.github.roimenashe.storage.AerospikeConnection;
+import io.github.roimenashe.util.VectorUtil;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 public class AerospikeSearch implements AutoCloseable {
 
+    /**
+     * Follow-up pages requested when fetched records no longer exist.
+     */
+    private static final int MAX_REFILL_ROUNDS = 3;
+
     private final AerospikeConnection aerospikeConnection;
+    private final IndexDirectoryFactory directoryFactory;
+    private final IndexMemoryManager memoryManager;
     private final FullTextIndexer fullTextIndexer;
     private final FullTextSearchService fullTextSearchService;
     private final VectorIndexer vectorIndexer;
     private final VectorSearchService vectorSearchService;
+    private final MultiIndexer multiIndexer;
     private final HybridSearchService hybridSearchService;
+    private final SuggestService suggestService;
+    private final ExpirySweeper expirySweeper;
+    private final ConsistencyVerifier consistencyVerifier;
+    private final RerankService rerankService;
+    private final AdmissionController admissionController;
 
     public AerospikeSearch(IAerospikeClient client) {
-        this.aerospikeConnection = new AerospikeConnection(client);
-        this.fullTextIndexer = new FullTextIndexer(aerospikeConnection);
-        this.fullTextSearchService = new FullTextSearchService(fullTextIndexer);
-        this.vectorIndexer = new VectorIndexer(aerospikeConnection);
-        this.vectorSearchService = new VectorSearchService(vectorIndexer);
+        this(client, AerospikeSearchConfig.defaults());
+    }
+
+    public AerospikeSearch(IAerospikeClient client, AerospikeSearchConfig config) {
+        this.aerospikeConnection = new AerospikeConnection(client, config.getBuildRecordsPerSecond(),
+                config.getPartitionRange());
+        this.directoryFactory = new IndexDirectoryFactory(config.getStorageMode(), config.getOffHeapPath(), config.getSpillPath());
+        this.memoryManager = new IndexMemoryManager(config.getMemoryBudget(), config.getEvictionPolicy());
+        config.getIndexEventListeners().forEach(memoryManager::addListener);
+        BuildCheckpointer checkpointer = new BuildCheckpointer(config.getCheckpointInterval(), config.getCheckpointPath());
+        this.fullTextIndexer = new FullTextIndexer(aerospikeConnection, directoryFactory, memoryManager, checkpointer);
+        this.fullTextSearchService = new FullTextSearchService(fullTextIndexer, config.getWarmupQueries());
+        this.vectorIndexer = new VectorIndexer(aerospikeConnection, directoryFactory, memoryManager, checkpointer,
+                new EmbeddingCache(config.getEmbeddingCachePath()));
+        this.vectorSearchService = new VectorSearchService(vectorIndexer, config.getWarmupQueries());
+        if (config.getWarmupQueries() > 0) {
+            fullTextIndexer.setSearcherWarmer(fullTextSearchService::warm);
+            vectorIndexer.setSearcherWarmer(vectorSearchService::warm);
+        }
+        this.multiIndexer = new MultiIndexer(aerospikeConnection, fullTextIndexer, vectorIndexer);
         this.hybridSearchService = new HybridSearchService(fullTextSearchService, vectorSearchService);
+        this.suggestService = new SuggestService(fullTextIndexer);
+        this.consistencyVerifier = new ConsistencyVerifier(aerospikeConnection, fullTextIndexer, vectorIndexer);
+        this.rerankService = new RerankService();
+        this.admissionController = new AdmissionController(config.getMaxConcurrentQueries(),
+                config.getMaxConcurrentBuilds(), config.getQueueTimeout());
+        Duration sweepInterval = config.getExpirySweepInterval();
+        this.expirySweeper = sweepInterval == null || sweepInterval.isZero() || sweepInterval.isNegative()
+                ? null : new ExpirySweeper(fullTextIndexer, vectorIndexer, sweepInterval);
     }
 
     /**
@@ -42,7 +108,19 @@ public class AerospikeSearch implements AutoCloseable {
      * @param binNames  Optional bins to create the index on. All bins will be included if not specified.
      */
     public void createFullTextIndex(String namespace, String set, String... binNames) throws Exception {
-        fullTextIndexer.createFullTextIndex(namespace, set, binNames);
+        build(() -> fullTextIndexer.createFullTextIndex(namespace, set, binNames));
+    }
+
+    /**
+     * Build or rebuild a full-text index with index options (e.g. sortable bins and an index sort).
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param options   Index options
+     * @param binNames  Optional bins to create the index on. All bins will be included if not specified.
+     */
+    public void createFullTextIndex(String namespace, String set, IndexOptions options, String... binNames) throws Exception {
+        build(() -> fullTextIndexer.createFullTextIndex(namespace, set, options, binNames));
     }
 
     /**
@@ -54,7 +132,22 @@ public class AerospikeSearch implements AutoCloseable {
      * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
      */
     public void createVectorIndex(String namespace, String set, String vectorBin, SimilarityFunction similarityFunction) throws Exception {
-        vectorIndexer.createVectorIndex(namespace, set, vectorBin, similarityFunction);
+        build(() -> vectorIndexer.createVectorIndex(namespace, set, vectorBin, similarityFunction));
+    }
+
+    /**
+     * Create or rebuild a vector index on a vector Bin with index options
+     * (e.g. building the HNSW graph on a truncated vector prefix).
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param vectorBin          Vector Bin name
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param options            Index options
+     */
+    public void createVectorIndex(String namespace, String set, String vectorBin, SimilarityFunction similarityFunction,
+                                  IndexOptions options) throws Exception {
+        build(() -> vectorIndexer.createVectorIndex(namespace, set, vectorBin, similarityFunction, options));
     }
 
     /**
@@ -66,7 +159,45 @@ public class AerospikeSearch implements AutoCloseable {
      * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
      */
     public void createVectorIndex(String namespace, String set, Function<Record, float[]> embedder, SimilarityFunction similarityFunction) throws Exception {
-        vectorIndexer.createVectorIndex(namespace, set, embedder, similarityFunction);
+        build(() -> vectorIndexer.createVectorIndex(namespace, set, embedder, similarityFunction));
+    }
+
+    /**
+     * Create or rebuild a vector index using an embedding function with index options.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param embedder           Vector embedding function
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param options            Index options
+     */
+    public void createVectorIndex(String namespace, String set, Function<Record, float[]> embedder,
+                                  SimilarityFunction similarityFunction, IndexOptions options) throws Exception {
+        build(() -> vectorIndexer.createVectorIndex(namespace, set, embedder, similarityFunction, options));
+    }
+
+    /**
+     * Remove a vector field from a set's vector index. The index is rebuilt with its other fields, which keep the
+     * vectors of the records unchanged since they were indexed. The index is dropped with its last field.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param fieldName Vector field name (the vector Bin name, or the name set with IndexSpec.setFieldName)
+     */
+    public void dropVectorField(String namespace, String set, String fieldName) throws Exception {
+        build(() -> vectorIndexer.dropVectorField(namespace, set, fieldName));
+    }
+
+    /**
+     * Build or rebuild several full-text and vector indexes of a set from a single scan.
+     * The scan projects the union of the bins needed by all indexes, and every record is fed to all index builders.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param specs     Indexes to build (e.g. IndexSpec.fullText(), IndexSpec.vector("embedding", COSINE))
+     */
+    public void createIndexes(String namespace, String set, IndexSpec... specs) throws Exception {
+        build(() -> multiIndexer.createIndexes(namespace, set, specs));
     }
 
     /**
@@ -81,6 +212,69 @@ public class AerospikeSearch implements AutoCloseable {
         return indexes;
     }
 
+    /**
+     * Number of segments of an index, each searched separately by queries. Useful to check the effect of the
+     * segment settings of {@link IndexOptions}.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param indexType Index type
+     * @return Number of segments
+     */
+    public int getSegmentCount(String namespace, String set, IndexType indexType) throws Exception {
+        return indexType == IndexType.VECTOR
+                ? vectorIndexer.getSegmentCount(namespace, set)
+                : fullTextIndexer.getSegmentCount(namespace, set);
+    }
+
+    /**
+     * Memory used by each resident index in bytes. With {@link io.github.roimenashe.model.StorageMode#OFF_HEAP}
+     * this is memory outside the Java heap. Indexes evicted to disk are not included.
+     *
+     * @return Map of index name to its size in bytes
+     */
+    public Map<String, Long> getIndexMemoryUsage() {
+        Map<String, Long> usage = new HashMap<>();
+        usage.putAll(fullTextIndexer.getIndexSizes());
+        usage.putAll(vectorIndexer.getIndexSizes());
+        return usage;
+    }
+
+    /**
+     * Directory off-heap index files are mapped from, resolved from the configured path or the default
+     * (see {@link io.github.roimenashe.model.StorageMode#OFF_HEAP}).
+     *
+     * @return Directory of off-heap index files, null when indexes are kept in the Java heap
+     */
+    public Path getOffHeapPath() {
+        return directoryFactory.getOffHeapPath();
+    }
+
+    /**
+     * Delete the documents of records expired by TTL from all resident indexes now, instead of waiting for the
+     * background sweeper. Expired records are excluded from results either way.
+     *
+     * @return Number of deleted documents
+     */
+    public int deleteExpired() throws Exception {
+        return fullTextIndexer.deleteExpired() + vectorIndexer.deleteExpired();
+    }
+
+    /**
+     * Verify an index against its set with a metadata-only scan, no bins are read. Reports records missing from
+     * the index, documents of deleted records and records written since they were indexed.
+     * For vector indexes, records without a vector are reported as missing.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param indexType Index to verify
+     * @param repair    Whether to re-index and delete the differing records
+     * @return Report of the differences found
+     */
+    public ConsistencyReport verifyIndex(String namespace, String set, IndexType indexType, boolean repair) throws Exception {
+        return admissionController.build(() -> consistencyVerifier.verify(namespace, set, indexType, repair));
+    }
+
     /**
      * Perform a full-text search.
      *
@@ -91,11 +285,114 @@ public class AerospikeSearch implements AutoCloseable {
      * @return List of results
      */
     public List<Record> searchText(String namespace, String set, String query, int limit) throws Exception {
+        return searchText(namespace, set, query, limit, SearchOptions.defaults());
+    }
+
+    /**
+     * Perform a full-text search with per-query options (e.g. a query timeout).
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param query     Full-text query string
+     * @param limit     Result limit
+     * @param options   Search options
+     * @return List of results
+     */
+    public List<Record> searchText(String namespace, String set, String query, int limit,
+                                   SearchOptions options) throws Exception {
         if (limit > 100) {
             throw new IllegalArgumentException("limit must be smaller than 100");
         }
-        List<String> encodedIds = fullTextSearchService.searchText(namespace, set, query, limit);
-        return aerospikeConnection.fetchRecordsByDigest(namespace, set, encodedIds);
+        return fetchLiveRecords(namespace, set, limit, options,
+                n -> fullTextSearchService.searchText(namespace, set, query, n, options));
+    }
+
+    /**
+     * Perform a full-text search that also returns facet counts and aggregations of the bins set with
+     * {@link SearchOptions#setFacets(String...)}. Facets cover all matches, not only the returned records,
+     * and are computed from the index during the same search, without Aerospike reads.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param query     Full-text query string
+     * @param limit     Result limit
+     * @param options   Search options, including the facet bins
+     * @return Results and facets
+     */
+    public SearchResults<Record> searchTextWithFacets(String namespace, String set, String query, int limit,
+                                                      SearchOptions options) throws Exception {
+        if (limit > 100) {
+            throw new IllegalArgumentException("limit must be smaller than 100");
+        }
+        AtomicReference<Map<String, FacetResult>> facets = new AtomicReference<>();
+        List<Record> records = fetchLiveRecords(namespace, set, limit, options, n -> {
+            SearchResults<String> results = fullTextSearchService.searchTextWithFacets(namespace, set, query, n, options);
+            facets.compareAndSet(null, results.getFacets());
+            return results.getResults();
+        });
+        return new SearchResults<>(records, facets.get());
+    }
+
+    /**
+     * Perform a full-text search that also returns the best passages of each result, for the bins indexed with
+     * {@link IndexOptions#setHighlightBins(String...)}. Passages are computed in the index from term offsets.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param query     Full-text query string
+     * @param limit     Result limit
+     * @param options   Search options (e.g. the number of passages per bin)
+     * @return List of results with their highlights
+     */
+    public List<HighlightedRecord> searchTextHighlighted(String namespace, String set, String query, int limit,
+                                                         SearchOptions options) throws Exception {
+        if (limit > 100) {
+            throw new IllegalArgumentException("limit must be smaller than 100");
+        }
+        Map<String, Map<String, String>> highlights = new HashMap<>();
+        Map<String, Record> records = fetchLiveRecordsById(namespace, set, limit, options, n -> {
+            Map<String, Map<String, String>> results = fullTextSearchService.searchTextHighlighted(namespace, set, query, n, options);
+            highlights.putAll(results);
+            return new ArrayList<>(results.keySet());
+        });
+
+        List<HighlightedRecord> results = new ArrayList<>(records.size());
+        records.forEach((id, record) -> results.add(new HighlightedRecord(record, highlights.get(id))));
+        return results;
+    }
+
+    /**
+     * Perform a full-text search over several sets with one query. Results are ranked with term statistics
+     * of all the sets, and the records of every set are read with a single batch.
+     *
+     * @param sets    Aerospike namespaces and sets, each with a full-text index
+     * @param query   Full-text query string
+     * @param limit   Result limit
+     * @param options Search options
+     * @return List of results
+     */
+    public List<Record> searchText(List<NamespaceSet> sets, String query, int limit, SearchOptions options) throws Exception {
+        if (limit > 100) {
+            throw new IllegalArgumentException("limit must be smaller than 100");
+        }
+        return new ArrayList<>(fetchLiveRecordsById(limit, options,
+                n -> fullTextSearchService.searchText(sets, query, n, options),
+                aerospikeConnection::fetchRecordArrayByKeys).values());
+    }
+
+    /**
+     * Autocomplete a prefix from the suggest bins of a full-text index
+     * (see {@link IndexOptions#setSuggestBins(String...)}). Completions come from an in-memory FST,
+     * ordered by weight, without reading the index or Aerospike.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param prefix    Typed prefix
+     * @param n         Maximum number of completions
+     * @return Completions
+     */
+    public List<String> suggest(String namespace, String set, String prefix, int n) throws Exception {
+        return admissionController.query(QueryPriority.INTERACTIVE, () -> suggestService.suggest(namespace, set, prefix, n));
     }
 
     /**
@@ -109,11 +406,124 @@ public class AerospikeSearch implements AutoCloseable {
      * @return List of results
      */
     public List<Record> searchVector(String namespace, String set, float[] queryVector, int k, SimilarityFunction similarityFunction) throws Exception {
+        return searchVector(namespace, set, queryVector, k, similarityFunction, VectorSearchMode.AUTO);
+    }
+
+    /**
+     * Perform a vector search using the given search mode.
+     * {@link VectorSearchMode#EXACT} scores every indexed vector and guarantees 100% recall (except for truncated
+     * fields, whose top prefixes are reranked),
+     * {@link VectorSearchMode#AUTO} uses exact search for small sets and HNSW traversal otherwise.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param queryVector        Float query vector
+     * @param k                  The number of nearest neighbors to be retrieved for a given query
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param mode               Vector search mode (exact, approximate or automatic selection)
+     * @return List of results
+     */
+    public List<Record> searchVector(String namespace, String set, float[] queryVector, int k,
+                                     SimilarityFunction similarityFunction, VectorSearchMode mode) throws Exception {
+        return searchVector(namespace, set, queryVector, k, similarityFunction, SearchOptions.defaults().setVectorSearchMode(mode));
+    }
+
+    /**
+     * Perform a vector search with per-query options, such as the number of HNSW candidates
+     * explored independently of k, a query timeout, or the vector search mode.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param queryVector        Float query vector
+     * @param k                  The number of nearest neighbors to be retrieved for a given query
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param options            Search options
+     * @return List of results
+     */
+    public List<Record> searchVector(String namespace, String set, float[] queryVector, int k,
+                                     SimilarityFunction similarityFunction, SearchOptions options) throws Exception {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive");
+        }
+        if (k > 100) {
+            throw new IllegalArgumentException("K must be smaller than 100");
+        }
+        return fetchLiveRecords(namespace, set, k, options,
+                n -> vectorSearchService.searchVector(namespace, set, queryVector, n, similarityFunction, options));
+    }
+
+    /**
+     * Perform a vector search for query text, embedded by the query embedder. Repeated queries are served from
+     * its cache and concurrent identical queries share one embedder call. The options timeout also bounds the wait
+     * for the query vector.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param queryText          Query text
+     * @param queryEmbedder      Embeds the query text, with the model used to build the index
+     * @param k                  The number of nearest neighbors to be retrieved for a given query
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param options            Search options
+     * @return List of results
+     */
+    public List<Record> searchVector(String namespace, String set, String queryText, QueryEmbedder queryEmbedder, int k,
+                                     SimilarityFunction similarityFunction, SearchOptions options) throws Exception {
+        return searchVector(namespace, set, queryEmbedder.embed(queryText, options.getTimeout()), k, similarityFunction, options);
+    }
+
+    /**
+     * Perform a vector search over several sets for the k global nearest neighbors. The records of every set
+     * are read with a single batch.
+     *
+     * @param sets               Aerospike namespaces and sets, each with a vector index
+     * @param queryVector        Float query vector
+     * @param k                  The number of nearest neighbors to be retrieved for a given query
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param options            Search options
+     * @return List of results
+     */
+    public List<Record> searchVector(List<NamespaceSet> sets, float[] queryVector, int k,
+                                     SimilarityFunction similarityFunction, SearchOptions options) throws Exception {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive");
+        }
+        if (k > 100) {
+            throw new IllegalArgumentException("K must be smaller than 100");
+        }
+        return new ArrayList<>(fetchLiveRecordsById(k, options,
+                n -> vectorSearchService.searchVector(sets, queryVector, n, similarityFunction, options),
+                aerospikeConnection::fetchRecordArrayByKeys).values());
+    }
+
+    /**
+     * Perform a vector search that also returns facet counts and aggregations of the bins set with
+     * {@link SearchOptions#setFacets(String...)} over the k nearest neighbors, computed from the index
+     * without Aerospike reads.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param queryVector        Float query vector
+     * @param k                  The number of nearest neighbors to be retrieved for a given query
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param options            Search options, including the facet bins
+     * @return Results and facets
+     */
+    public SearchResults<Record> searchVectorWithFacets(String namespace, String set, float[] queryVector, int k,
+                                                        SimilarityFunction similarityFunction, SearchOptions options) throws Exception {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive");
+        }
         if (k > 100) {
             throw new IllegalArgumentException("K must be smaller than 100");
         }
-        List<String> encodedIds = vectorSearchService.searchVector(namespace, set, queryVector, k, similarityFunction);
-        return aerospikeConnection.fetchRecordsByDigest(namespace, set, encodedIds);
+        AtomicReference<Map<String, FacetResult>> facets = new AtomicReference<>();
+        List<Record> records = fetchLiveRecords(namespace, set, k, options, n -> {
+            SearchResults<String> results = vectorSearchService.searchVectorWithFacets(namespace, set, queryVector, n,
+                    similarityFunction, options);
+            facets.compareAndSet(null, results.getFacets());
+            return results.getResults();
+        });
+        return new SearchResults<>(records, facets.get());
     }
 
     /**
@@ -138,14 +548,222 @@ public class AerospikeSearch implements AutoCloseable {
                                      int limit,
                                      double textWeight,
                                      double vectorWeight) throws Exception {
-        List<String> encodedIds =
-                hybridSearchService.searchHybrid(namespace, set, textQuery, queryVector, similarityFunction, limit, textWeight, vectorWeight);
-        return aerospikeConnection.fetchRecordsByDigest(namespace, set, encodedIds);
+        return searchHybrid(namespace, set, textQuery, queryVector, similarityFunction, limit, textWeight, vectorWeight,
+                SearchOptions.defaults());
+    }
+
+    /**
+     * Perform a hybrid search with per-query options. The options apply to both the full-text and the vector query.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param textQuery          Full-text query string
+     * @param queryVector        Float query vector
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param limit              Result limit
+     * @param textWeight         Full-Text weight in query (Float between 0-1, combined with vectorWeight should be 1)
+     * @param vectorWeight       Vector weight in query (Float between 0-1, combined with textWeight should be 1)
+     * @param options            Search options
+     * @return List of results
+     */
+    public List<Record> searchHybrid(String namespace, String set,
+                                     String textQuery,
+                                     float[] queryVector,
+                                     SimilarityFunction similarityFunction,
+                                     int limit,
+                                     double textWeight,
+                                     double vectorWeight,
+                                     SearchOptions options) throws Exception {
+        return fetchLiveRecords(namespace, set, limit, options, n -> hybridSearchService.searchHybrid(namespace, set, textQuery,
+                queryVector, similarityFunction, n, textWeight, vectorWeight, options));
+    }
+
+    /**
+     * Perform a hybrid search for query text, matched as a full-text query and embedded by the query embedder
+     * for the vector query. The options timeout also bounds the wait for the query vector.
+     *
+     * @param namespace          Aerospike namespace
+     * @param set                Aerospike set
+     * @param queryText          Query text
+     * @param queryEmbedder      Embeds the query text, with the model used to build the vector index
+     * @param similarityFunction Vector similarity function (e.g. EUCLIDEAN)
+     * @param limit              Result limit
+     * @param textWeight         Full-Text weight in query (Float between 0-1, combined with vectorWeight should be 1)
+     * @param vectorWeight       Vector weight in query (Float between 0-1, combined with textWeight should be 1)
+     * @param options            Search options
+     * @return List of results
+     */
+    public List<Record> searchHybrid(String namespace, String set,
+                                     String queryText,
+                                     QueryEmbedder queryEmbedder,
+                                     SimilarityFunction similarityFunction,
+                                     int limit,
+                                     double textWeight,
+                                     double vectorWeight,
+                                     SearchOptions options) throws Exception {
+        return searchHybrid(namespace, set, queryText, queryEmbedder.embed(queryText, options.getTimeout()), similarityFunction, limit,
+                textWeight, vectorWeight, options);
+    }
+
+    /**
+     * Find the records most similar to an indexed record without reading it: the nearest neighbors of its
+     * indexed vector when the set has a vector index, otherwise a more-like-this query of its indexed text.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param key       Key of the indexed record
+     * @param k         The number of similar records to be retrieved, not counting the record itself
+     * @return List of results, empty if the record is not in the index
+     */
+    public List<Record> searchSimilar(String namespace, String set, Key key, int k) throws Exception {
+        IndexType indexType = vectorIndexer.listVectorIndexes().contains(VectorUtil.getUniqueVectorIndexName(namespace, set))
+                ? IndexType.VECTOR : IndexType.FULL_TEXT;
+        return searchSimilar(namespace, set, key, k, indexType, SearchOptions.defaults());
+    }
+
+    /**
+     * Find the records most similar to an indexed record in the given index, with per-query options, such as
+     * the vector field of a set with several or a filter expression. Vector results are scored with the
+     * similarity function of the field.
+     *
+     * @param namespace Aerospike namespace
+     * @param set       Aerospike set
+     * @param key       Key of the indexed record
+     * @param k         The number of similar records to be retrieved, not counting the record itself
+     * @param indexType Index to search
+     * @param options   Search options
+     * @return List of results, empty if the record is not in the index
+     */
+    public List<Record> searchSimilar(String namespace, String set, Key key, int k, IndexType indexType,
+                                      SearchOptions options) throws Exception {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive");
+        }
+        if (k > 100) {
+            throw new IllegalArgumentException("K must be smaller than 100");
+        }
+        return fetchLiveRecords(namespace, set, k, options, n -> {
+            List<ScoredId> similar = indexType == IndexType.VECTOR
+                    ? vectorSearchService.searchSimilar(namespace, set, key, n, options)
+                    : fullTextSearchService.searchSimilar(namespace, set, key, n, options);
+            return similar.stream().map(ScoredId::getId).toList();
+        });
+    }
+
+    /**
+     * Answer a query of a {@link io.github.roimenashe.shard.SearchCoordinator} with the top ids of the
+     * partitions indexed by this instance. Records are not read, the coordinator reads the merged top.
+     *
+     * @param query Full-text or vector query
+     * @return Top ids with their scores, best first
+     */
+    public List<ScoredId> searchShard(ShardQuery query) throws Exception {
+        SearchOptions options = query.getOptions();
+        return admissionController.query(options.getPriority(), () -> switch (query.getIndexType()) {
+            case FULL_TEXT -> fullTextSearchService.searchWithScores(query.getNamespace(), query.getSet(),
+                    query.getText(), query.getLimit(), options);
+            case VECTOR -> vectorSearchService.searchWithScores(query.getNamespace(), query.getSet(),
+                    query.getVector(), query.getLimit(), query.getSimilarityFunction(), options);
+        });
+    }
+
+    /**
+     * Fetches the records of the top ids, topping up with a larger page when some records no longer exist
+     * (deleted, or expired since the last sweep) or are rejected by the filter expression, so that callers get
+     * {@code limit} live records whenever the index has them.
+     */
+    private List<Record> fetchLiveRecords(String namespace, String set, int limit, SearchOptions options,
+                                          IdSearch<String> search) throws Exception {
+        return new ArrayList<>(fetchLiveRecordsById(namespace, set, limit, options, search).values());
+    }
+
+    /**
+     * Same as {@link #fetchLiveRecords}, keyed by encoded id in result order.
+     */
+    private Map<String, Record> fetchLiveRecordsById(String namespace, String set, int limit, SearchOptions options,
+                                                     IdSearch<String> search) throws Exception {
+        return fetchLiveRecordsById(limit, options, search,
+                (ids, filterExpression) -> aerospikeConnection.fetchRecordArrayByDigest(namespace, set, ids, filterExpression));
+    }
+
+    private <T> Map<T, Record> fetchLiveRecordsById(int limit, SearchOptions options, IdSearch<T> search,
+                                                    RecordFetcher<T> fetcher) throws Exception {
+        return admissionController.query(options.getPriority(), () -> fetchAdmittedRecordsById(limit, options, search, fetcher));
+    }
+
+    private <T> Map<T, Record> fetchAdmittedRecordsById(int limit, SearchOptions options, IdSearch<T> search,
+                                                        RecordFetcher<T> fetcher) throws Exception {
+        if (options.getReranker() != null) {
+            // The candidates are reranked as they are, rejected records leave fewer candidates instead of a refill
+            int depth = Math.max(limit, options.getRerankDepth());
+            int requested = options.getFilterExpression() == null ? depth : depth * options.getOverFetchFactor();
+            List<T> ids = search.search(requested);
+            return rerankService.rerank(ids, batch -> fetcher.fetch(batch, options.getFilterExpression()),
+                    options.getReranker(), options.getRerankBatchSize(), limit);
+        }
+        Map<T, Record> fetched = new HashMap<>();
+        List<T> ids = List.of();
+        int maxRequested = Math.max(limit, options.getMaxFetchDepth());
+        // Filtered searches over-fetch upfront, as most candidates are expected to be rejected
+        int requested = Math.min(maxRequested,
+                options.getFilterExpression() == null ? limit : limit * options.getOverFetchFactor());
+        for (int round = 0; round <= MAX_REFILL_ROUNDS; round++) {
+            ids = search.search(requested);
+            // Only ids not fetched in a previous round are read again
+            List<T> newIds = ids.stream().filter(id -> !fetched.containsKey(id)).toList();
+            Record[] records = fetcher.fetch(newIds, options.getFilterExpression());
+            for (int i = 0; i < records.length; i++) {
+                fetched.put(newIds.get(i), records[i]);
+            }
+
+            long live = ids.stream().filter(id -> fetched.get(id) != null).count();
+            // The index has no more hits once a page is short or brings no new ids
+            if (live >= limit || ids.size() < requested || newIds.isEmpty() || requested == maxRequested) break;
+            // Grow the page by the observed rejection rate, up to the fetch depth
+            long grown = live == 0 ? (long) requested * 4 : (long) Math.ceil((double) requested * limit / live) + 1;
+            requested = (int) Math.min(maxRequested, grown);
+        }
+        Map<T, Record> live = new LinkedHashMap<>();
+        for (T id : ids) {
+            if (live.size() == limit) break;
+            Record record = fetched.get(id);
+            if (record != null) {
+                live.put(id, record);
+            }
+        }
+        return live;
+    }
+
+    private void build(IndexBuild build) throws Exception {
+        admissionController.build(() -> {
+            build.run();
+            return null;
+        });
+    }
+
+    @FunctionalInterface
+    private interface IndexBuild {
+        void run() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface IdSearch<T> {
+        List<T> search(int limit) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface RecordFetcher<T> {
+        Record[] fetch(List<T> ids, Expression filterExpression);
     }
 
     @Override
     public void close() throws Exception {
+        if (expirySweeper != null) {
+            expirySweeper.close();
+        }
+        rerankService.close();
         fullTextIndexer.close();
         vectorIndexer.close();
+        directoryFactory.close();
     }
 }
@@ -0,0 +1,266 @@
+package io.github.roimenashe;
+
+import io.github.roimenashe.index.IndexEventListener;
+import io.github.roimenashe.model.EvictionPolicy;
+import io.github.roimenashe.model.PartitionRange;
+import io.github.roimenashe.model.StorageMode;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Engine-wide configuration of {@link AerospikeSearch}. Defaults keep the behavior of {@link AerospikeSearch#AerospikeSearch(com.aerospike.client.IAerospikeClient)}.
+ */
+public class AerospikeSearchConfig {
+
+    private StorageMode storageMode = StorageMode.HEAP;
+    private Path offHeapPath;
+    private long memoryBudget;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+    private Path spillPath;
+    private final List<IndexEventListener> indexEventListeners = new ArrayList<>();
+    private Duration expirySweepInterval;
+    private long checkpointInterval;
+    private Path checkpointPath;
+    private Path embeddingCachePath;
+    private int maxConcurrentQueries;
+    private int maxConcurrentBuilds;
+    private Duration queueTimeout = Duration.ofMillis(500);
+    private int buildRecordsPerSecond;
+    private PartitionRange partitionRange = PartitionRange.all();
+    private int warmupQueries;
+
+    public static AerospikeSearchConfig defaults() {
+        return new AerospikeSearchConfig();
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Where index data is kept. {@link StorageMode#OFF_HEAP} keeps index size from driving heap sizing and GC pauses.
+     */
+    public AerospikeSearchConfig setStorageMode(StorageMode storageMode) {
+        this.storageMode = storageMode == null ? StorageMode.HEAP : storageMode;
+        return this;
+    }
+
+    public Path getOffHeapPath() {
+        return offHeapPath;
+    }
+
+    /**
+     * Directory for off-heap index files. Should be a memory-backed file system (tmpfs) to keep indexes in memory.
+     * Defaults to {@code /dev/shm} when available, otherwise to {@code java.io.tmpdir}.
+     */
+    public AerospikeSearchConfig setOffHeapPath(Path offHeapPath) {
+        this.offHeapPath = offHeapPath;
+        return this;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Global memory budget in bytes for all indexes. When a build or reload exceeds it, the coldest indexes
+     * are spilled to local disk and reloaded lazily on their next query. 0 (default) means unlimited.
+     */
+    public AerospikeSearchConfig setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("memoryBudget must be non-negative");
+        }
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public AerospikeSearchConfig setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy == null ? EvictionPolicy.LRU : evictionPolicy;
+        return this;
+    }
+
+    public Path getSpillPath() {
+        return spillPath;
+    }
+
+    /**
+     * Local disk directory for evicted indexes. Defaults to {@code java.io.tmpdir}.
+     */
+    public AerospikeSearchConfig setSpillPath(Path spillPath) {
+        this.spillPath = spillPath;
+        return this;
+    }
+
+    public List<IndexEventListener> getIndexEventListeners() {
+        return indexEventListeners;
+    }
+
+    /**
+     * Observe index admission, eviction and reload events.
+     */
+    public AerospikeSearchConfig addIndexEventListener(IndexEventListener listener) {
+        indexEventListeners.add(listener);
+        return this;
+    }
+
+    public Duration getExpirySweepInterval() {
+        return expirySweepInterval;
+    }
+
+    /**
+     * How often a background sweeper deletes the documents of records expired by TTL from the indexes, e.g.
+     * {@code Duration.ofMinutes(1)}. Expired records are excluded from results regardless. null (default) or zero
+     * disables the sweeper, documents of expired records are then deleted by {@link AerospikeSearch#deleteExpired()}
+     * and by rebuilds.
+     */
+    public AerospikeSearchConfig setExpirySweepInterval(Duration expirySweepInterval) {
+        this.expirySweepInterval = expirySweepInterval;
+        return this;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Number of scanned records between checkpoints of an index build. A checkpoint commits the index with the
+     * scan progress of every partition, and a build retried after a failure resumes from the last checkpoint
+     * instead of rescanning the set. 0 (default) disables checkpoints.
+     */
+    public AerospikeSearchConfig setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("checkpointInterval must be non-negative");
+        }
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Local disk directory where checkpoints are copied, so that builds also resume after a restart.
+     * Without it, builds resume only within the same {@link AerospikeSearch} instance.
+     */
+    public AerospikeSearchConfig setCheckpointPath(Path checkpointPath) {
+        this.checkpointPath = checkpointPath;
+        return this;
+    }
+
+    public Path getEmbeddingCachePath() {
+        return embeddingCachePath;
+    }
+
+    /**
+     * Local disk directory caching the vectors computed by embedders in memory-mapped files, keyed by record digest
+     * and generation. Rebuilds, also after a restart, then only call embedders for new or changed records.
+     * null (default) disables the cache.
+     */
+    public AerospikeSearchConfig setEmbeddingCachePath(Path embeddingCachePath) {
+        this.embeddingCachePath = embeddingCachePath;
+        return this;
+    }
+
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    /**
+     * Maximum number of searches running at once, including their record reads. Further searches wait for
+     * the queue timeout, interactive ones first. 0 (default) means unlimited.
+     */
+    public AerospikeSearchConfig setMaxConcurrentQueries(int maxConcurrentQueries) {
+        if (maxConcurrentQueries < 0) {
+            throw new IllegalArgumentException("maxConcurrentQueries must be non-negative");
+        }
+        this.maxConcurrentQueries = maxConcurrentQueries;
+        return this;
+    }
+
+    public int getMaxConcurrentBuilds() {
+        return maxConcurrentBuilds;
+    }
+
+    /**
+     * Maximum number of index builds and verifications running at once, independently of queries.
+     * 0 (default) means unlimited.
+     */
+    public AerospikeSearchConfig setMaxConcurrentBuilds(int maxConcurrentBuilds) {
+        if (maxConcurrentBuilds < 0) {
+            throw new IllegalArgumentException("maxConcurrentBuilds must be non-negative");
+        }
+        this.maxConcurrentBuilds = maxConcurrentBuilds;
+        return this;
+    }
+
+    public Duration getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    /**
+     * How long a search or build waits for a slot before it is rejected with an
+     * {@link OverloadedException}. Zero rejects immediately when all slots are taken. Defaults to 500ms.
+     */
+    public AerospikeSearchConfig setQueueTimeout(Duration queueTimeout) {
+        if (queueTimeout == null || queueTimeout.isNegative()) {
+            throw new IllegalArgumentException("queueTimeout must be non-negative");
+        }
+        this.queueTimeout = queueTimeout;
+        return this;
+    }
+
+    public int getBuildRecordsPerSecond() {
+        return buildRecordsPerSecond;
+    }
+
+    /**
+     * Throttles the scans of index builds to this many records per second from each server node, leaving
+     * capacity to queries. 0 (default) means no limit.
+     */
+    public AerospikeSearchConfig setBuildRecordsPerSecond(int buildRecordsPerSecond) {
+        if (buildRecordsPerSecond < 0) {
+            throw new IllegalArgumentException("buildRecordsPerSecond must be non-negative");
+        }
+        this.buildRecordsPerSecond = buildRecordsPerSecond;
+        return this;
+    }
+
+    public PartitionRange getPartitionRange() {
+        return partitionRange;
+    }
+
+    /**
+     * Partitions indexed by this instance, as one shard of the sets searched by a
+     * {@link io.github.roimenashe.shard.SearchCoordinator}. Index memory and build time then scale with the
+     * shard instead of the whole set. Defaults to all partitions.
+     */
+    public AerospikeSearchConfig setPartitionRange(PartitionRange partitionRange) {
+        this.partitionRange = partitionRange == null ? PartitionRange.all() : partitionRange;
+        return this;
+    }
+
+    public int getWarmupQueries() {
+        return warmupQueries;
+    }
+
+    /**
+     * Number of recent queries kept per index and replayed against each rebuilt index before it replaces the
+     * current one, so the first queries after a rebuild do not pay for cold caches. Vector indexes also read
+     * all their vectors. Builds take longer by the replay time. 0 (default) disables warmup.
+     */
+    public AerospikeSearchConfig setWarmupQueries(int warmupQueries) {
+        if (warmupQueries < 0) {
+            throw new IllegalArgumentException("warmupQueries must be non-negative");
+        }
+        this.warmupQueries = warmupQueries;
+        return this;
+    }
+}
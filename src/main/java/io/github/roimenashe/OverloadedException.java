@@ -0,0 +1,12 @@
+package io.github.roimenashe;
+
+/**
+ * Thrown when a query or an index build is not admitted before the queue timeout, because the maximum number
+ * of concurrent queries or builds is reached. Callers can retry later or shed the request.
+ */
+public class OverloadedException extends RuntimeException {
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.query.PartitionFilter;
+import io.github.roimenashe.model.PartitionRange;
+import io.github.roimenashe.storage.AerospikeConnection;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes index builds resumable. The scan of a checkpointed build runs over a {@link PartitionFilter}, and every
+ * {@code interval} records the index is committed together with the per-partition scan progress in the commit
+ * user data. A build retried after a failure resumes the scan from the last commit instead of starting over.
+ * <p>
+ * The progress is captured before the commit, so the commit holds every record it covers, and records indexed
+ * after the capture are scanned again on resume. Checkpointed builds therefore update documents by id.
+ * With a checkpoint path, committed files are also copied to local disk, so a build can resume after a restart.
+ */
+public class BuildCheckpointer {
+
+    private static final Logger log = LoggerFactory.getLogger(BuildCheckpointer.class);
+    private static final String PROGRESS = "scanProgress";
+    private static final String SIGNATURE = "buildSignature";
+
+    private final long interval;
+    private final Path path;
+
+    /**
+     * Disabled, builds start over after a failure.
+     */
+    public BuildCheckpointer() {
+        this(0, null);
+    }
+
+    /**
+     * @param interval Records between checkpoints, 0 disables checkpoints
+     * @param path     Optional local directory keeping checkpoints across restarts
+     */
+    public BuildCheckpointer(long interval, Path path) {
+        this.interval = interval;
+        this.path = path;
+    }
+
+    public boolean isEnabled() {
+        return interval > 0;
+    }
+
+    /**
+     * Identifies what a build indexes, a checkpoint is resumed only by a build of the same bins or fields over the
+     * same partitions. Each part is sorted, so the signature survives a restart.
+     */
+    public static String signature(PartitionRange partitionRange, Collection<?>... parts) {
+        List<Object> signature = new ArrayList<>();
+        signature.add(partitionRange.toString());
+        for (Collection<?> part : parts) {
+            signature.add(part.stream().map(String::valueOf).sorted().toList());
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Feeds the builder with a scan of the set, resumed from the builder's progress, checkpointing it periodically.
+     * Without checkpoints, the whole set is scanned as before.
+     */
+    public void scan(AerospikeConnection aerospikeConnection, String namespace, String set, IndexBuilder builder) {
+        if (!isEnabled()) {
+            aerospikeConnection.scan(namespace, set, builder, builder.getBinNames());
+            return;
+        }
+        PartitionFilter progress = builder.getResumeProgress() != null
+                ? builder.getResumeProgress() : aerospikeConnection.newPartitionFilter();
+        AtomicLong scanned = new AtomicLong();
+        Object lock = new Object();
+        aerospikeConnection.scanPartitions(namespace, set, progress, (key, record) -> {
+            builder.scanCallback(key, record);
+            if (scanned.incrementAndGet() % interval == 0) {
+                synchronized (lock) {
+                    try {
+                        // The client updates the filter's partition status as records are received
+                        builder.checkpoint(progress);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }, builder.getBinNames());
+    }
+
+    /**
+     * Directory of an unfinished build kept on local disk by a previous process, null if there is none.
+     */
+    public Directory restore(String indexName, IndexDirectoryFactory directoryFactory) throws IOException {
+        if (path == null) return null;
+        Path checkpointPath = getCheckpointPath(indexName);
+        if (!checkpointPath.toFile().isDirectory()) return null;
+
+        try (Directory checkpoint = FSDirectory.open(checkpointPath)) {
+            if (!DirectoryReader.indexExists(checkpoint)) return null;
+            Directory directory = directoryFactory.create(indexName);
+            for (String file : SegmentInfos.readLatestCommit(checkpoint).files(true)) {
+                directory.copyFrom(checkpoint, file, file, IOContext.DEFAULT);
+            }
+            log.info("Restored build checkpoint of index [{}]", indexName);
+            return directory;
+        }
+    }
+
+    /**
+     * Scan progress of the unfinished build committed last to the directory, null if the last build completed
+     * or was started with another signature (e.g. other bins).
+     */
+    public PartitionFilter getProgress(Directory directory, String signature) throws IOException {
+        if (!isEnabled() || !DirectoryReader.indexExists(directory)) return null;
+        Map<String, String> userData = SegmentInfos.readLatestCommit(directory).getUserData();
+        String progress = userData.get(PROGRESS);
+        if (progress == null || !signature.equals(userData.get(SIGNATURE))) return null;
+        return deserialize(progress);
+    }
+
+    /**
+     * Commits the records indexed so far with a snapshot of the scan progress, and copies new files to the
+     * checkpoint path.
+     */
+    public void checkpoint(String indexName, IndexWriter writer, Directory directory, PartitionFilter progress,
+                           String signature) throws IOException {
+        writer.setLiveCommitData(Map.of(PROGRESS, serialize(progress), SIGNATURE, signature).entrySet());
+        writer.commit();
+        if (path != null) {
+            save(indexName, directory);
+        }
+    }
+
+    /**
+     * Removes the checkpoint kept on disk for a build that starts over, whose files would reuse the same names.
+     */
+    public void discard(String indexName) throws IOException {
+        if (path != null) {
+            IOUtils.rm(getCheckpointPath(indexName));
+        }
+    }
+
+    /**
+     * Clears the scan progress before the final commit of a build, so the index is not resumed anymore.
+     */
+    public void complete(String indexName, IndexWriter writer) throws IOException {
+        if (!isEnabled()) return;
+        writer.setLiveCommitData(Map.<String, String>of().entrySet());
+        discard(indexName);
+    }
+
+    /**
+     * Copies the files of the last commit that are not on disk yet (segment files never change), then removes
+     * the files of older commits. The commit point is renamed into place last, so a crash keeps the previous one.
+     */
+    private void save(String indexName, Directory directory) throws IOException {
+        SegmentInfos commit = SegmentInfos.readLatestCommit(directory);
+        String segmentsFile = commit.getSegmentsFileName();
+        Collection<String> files = commit.files(true);
+        try (FSDirectory checkpoint = FSDirectory.open(getCheckpointPath(indexName))) {
+            Set<String> existing = Set.of(checkpoint.listAll());
+            for (String file : files) {
+                if (!file.equals(segmentsFile) && !existing.contains(file)) {
+                    checkpoint.copyFrom(directory, file, file, IOContext.DEFAULT);
+                }
+            }
+            String pending = "pending_" + segmentsFile;
+            checkpoint.copyFrom(directory, segmentsFile, pending, IOContext.DEFAULT);
+            Set<String> written = new HashSet<>(files);
+            written.remove(segmentsFile);
+            written.add(pending);
+            checkpoint.sync(written);
+            checkpoint.rename(pending, segmentsFile);
+            checkpoint.syncMetaData();
+            for (String file : checkpoint.listAll()) {
+                if (!files.contains(file)) {
+                    checkpoint.deleteFile(file);
+                }
+            }
+        }
+    }
+
+    private Path getCheckpointPath(String indexName) {
+        return path.resolve(indexName.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    private static String serialize(PartitionFilter filter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(filter);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static PartitionFilter deserialize(String progress) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(progress)))) {
+            return (PartitionFilter) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid scan progress", e);
+        }
+    }
+}
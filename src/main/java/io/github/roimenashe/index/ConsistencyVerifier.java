@@ -0,0 +1,101 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.Key;
+import io.github.roimenashe.model.ConsistencyReport;
+import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.storage.AerospikeConnection;
+import io.github.roimenashe.util.ExpirationUtil;
+import org.apache.lucene.util.FixedBitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares an index with its set without reading any bins. The digests of the index are loaded into a sorted
+ * {@link DigestTable}, then a metadata-only scan of the set looks every record up in it:
+ * <ul>
+ *     <li>records not found are missing from the index, if the indexer would index them: full-text builds index
+ *     every record, vector builds skip records without a vector, so those are read to check their vector bins</li>
+ *     <li>records found with another generation or void-time were written or touched since they were indexed</li>
+ *     <li>documents never looked up belong to deleted records</li>
+ * </ul>
+ * A repair re-indexes or deletes only those records, instead of rebuilding the index.
+ */
+public class ConsistencyVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsistencyVerifier.class);
+
+    private final AerospikeConnection aerospikeConnection;
+    private final FullTextIndexer fullTextIndexer;
+    private final VectorIndexer vectorIndexer;
+
+    public ConsistencyVerifier(AerospikeConnection aerospikeConnection, FullTextIndexer fullTextIndexer,
+                               VectorIndexer vectorIndexer) {
+        this.aerospikeConnection = aerospikeConnection;
+        this.fullTextIndexer = fullTextIndexer;
+        this.vectorIndexer = vectorIndexer;
+    }
+
+    public ConsistencyReport verify(String namespace, String set, IndexType indexType, boolean repair) throws Exception {
+        DigestTable table = switch (indexType) {
+            case FULL_TEXT -> fullTextIndexer.readDigests(namespace, set);
+            case VECTOR -> vectorIndexer.readDigests(namespace, set);
+        };
+
+        FixedBitSet seen = new FixedBitSet(Math.max(1, table.size()));
+        List<Key> notFound = new ArrayList<>();
+        List<Key> stale = new ArrayList<>();
+        AtomicLong scanned = new AtomicLong();
+        aerospikeConnection.scanMetadata(namespace, set, (key, record) -> {
+            scanned.incrementAndGet();
+            int index = table.find(key.digest);
+            // The scan calls back from several threads
+            synchronized (seen) {
+                if (index < 0) {
+                    notFound.add(key);
+                    return;
+                }
+                seen.set(index);
+                long generation = table.getGeneration(index);
+                if ((generation > 0 && generation != record.generation)
+                        || table.getVoidTime(index) != ExpirationUtil.getVoidTime(record)) {
+                    stale.add(key);
+                }
+            }
+        });
+
+        // Only the records not found are read, the scan itself stays metadata-only
+        List<Key> missing = indexType == IndexType.VECTOR && !notFound.isEmpty()
+                ? vectorIndexer.filterIndexable(namespace, set, notFound)
+                : notFound;
+        if (missing.size() < notFound.size()) {
+            log.debug("{} records of [{}:{}] have no vector and are not indexed", notFound.size() - missing.size(),
+                    namespace, set);
+        }
+
+        List<Key> extra = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            if (!seen.get(i)) {
+                extra.add(new Key(namespace, table.getDigest(i), set, null));
+            }
+        }
+
+        boolean repaired = false;
+        if (repair && (!missing.isEmpty() || !stale.isEmpty() || !extra.isEmpty())) {
+            List<Key> reindex = new ArrayList<>(missing);
+            reindex.addAll(stale);
+            switch (indexType) {
+                case FULL_TEXT -> fullTextIndexer.repair(namespace, set, reindex, extra);
+                case VECTOR -> vectorIndexer.repair(namespace, set, reindex, extra);
+            }
+            repaired = true;
+        }
+
+        ConsistencyReport report = new ConsistencyReport(table.size(), scanned.get(), missing, extra, stale, repaired);
+        log.info("Verified {} index of [{}:{}]: {}", indexType, namespace, set, report);
+        return report;
+    }
+}
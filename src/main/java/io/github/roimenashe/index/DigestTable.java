@@ -0,0 +1,177 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.Record;
+import io.github.roimenashe.util.ExpirationUtil;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IntroSorter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Digests of the records in an index, with the generation and void-time they were indexed at, packed in
+ * parallel arrays sorted by digest. About 36 bytes per record, so that a whole index can be compared with a
+ * digest-only scan of its set.
+ */
+public class DigestTable {
+
+    /**
+     * Index field holding the record generation at indexing time.
+     */
+    public static final String GENERATION_FIELD = "_generation";
+
+    private static final int DIGEST_LENGTH = 20;
+
+    private byte[] digests = new byte[0];
+    private long[] generations = new long[0];
+    private long[] voidTimes = new long[0];
+    private int size;
+
+    /**
+     * Stores the generation of a record, so that later writes to it can be detected without reading its bins.
+     */
+    public static void addGeneration(Document doc, Record record) {
+        doc.add(new NumericDocValuesField(GENERATION_FIELD, record.generation));
+    }
+
+    /**
+     * Reads the live documents of an index.
+     *
+     * @param filter Optional filter restricting the documents, e.g. to one set of a shared index
+     */
+    public static DigestTable read(IndexReader reader, Query filter) throws IOException {
+        DigestTable table = new DigestTable();
+        Weight weight = filter == null ? null
+                : new IndexSearcher(reader).createWeight(filter, ScoreMode.COMPLETE_NO_SCORES, 1f);
+        for (LeafReaderContext leaf : reader.leaves()) {
+            DocIdSetIterator docs;
+            if (weight == null) {
+                docs = DocIdSetIterator.all(leaf.reader().maxDoc());
+            } else {
+                Scorer scorer = weight.scorer(leaf);
+                if (scorer == null) continue;
+                docs = scorer.iterator();
+            }
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            StoredFields storedFields = leaf.reader().storedFields();
+            NumericDocValues generations = DocValues.getNumeric(leaf.reader(), GENERATION_FIELD);
+            NumericDocValues voidTimes = DocValues.getNumeric(leaf.reader(), ExpirationUtil.VOID_TIME_FIELD);
+            for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+                if (liveDocs != null && !liveDocs.get(doc)) continue;
+                DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor("id");
+                storedFields.document(doc, visitor);
+                byte[] digest = Base64.getDecoder().decode(visitor.getDocument().get("id"));
+                long generation = generations.advanceExact(doc) ? generations.longValue() : 0;
+                long voidTime = voidTimes.advanceExact(doc) ? voidTimes.longValue() : 0;
+                table.add(digest, generation, voidTime);
+            }
+        }
+        table.sort();
+        return table;
+    }
+
+    private void add(byte[] digest, long generation, long voidTime) {
+        if (size == generations.length) {
+            generations = ArrayUtil.grow(generations, size + 1);
+            voidTimes = ArrayUtil.growExact(voidTimes, generations.length);
+            digests = ArrayUtil.growExact(digests, generations.length * DIGEST_LENGTH);
+        }
+        System.arraycopy(digest, 0, digests, size * DIGEST_LENGTH, DIGEST_LENGTH);
+        generations[size] = generation;
+        voidTimes[size] = voidTime;
+        size++;
+    }
+
+    private void sort() {
+        byte[] pivot = new byte[DIGEST_LENGTH];
+        byte[] swap = new byte[DIGEST_LENGTH];
+        new IntroSorter() {
+            @Override
+            protected void swap(int i, int j) {
+                System.arraycopy(digests, i * DIGEST_LENGTH, swap, 0, DIGEST_LENGTH);
+                System.arraycopy(digests, j * DIGEST_LENGTH, digests, i * DIGEST_LENGTH, DIGEST_LENGTH);
+                System.arraycopy(swap, 0, digests, j * DIGEST_LENGTH, DIGEST_LENGTH);
+                long generation = generations[i];
+                generations[i] = generations[j];
+                generations[j] = generation;
+                long voidTime = voidTimes[i];
+                voidTimes[i] = voidTimes[j];
+                voidTimes[j] = voidTime;
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                System.arraycopy(digests, i * DIGEST_LENGTH, pivot, 0, DIGEST_LENGTH);
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return Arrays.compareUnsigned(pivot, 0, DIGEST_LENGTH, digests, j * DIGEST_LENGTH, (j + 1) * DIGEST_LENGTH);
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Arrays.compareUnsigned(digests, i * DIGEST_LENGTH, (i + 1) * DIGEST_LENGTH,
+                        digests, j * DIGEST_LENGTH, (j + 1) * DIGEST_LENGTH);
+            }
+        }.sort(0, size);
+    }
+
+    /**
+     * Position of a digest, or -1 if the index has no document for it.
+     */
+    public int find(byte[] digest) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Arrays.compareUnsigned(digests, mid * DIGEST_LENGTH, (mid + 1) * DIGEST_LENGTH, digest, 0, DIGEST_LENGTH);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] getDigest(int index) {
+        return Arrays.copyOfRange(digests, index * DIGEST_LENGTH, (index + 1) * DIGEST_LENGTH);
+    }
+
+    /**
+     * Generation the record was indexed at, 0 if unknown (indexed before generations were stored).
+     */
+    public long getGeneration(int index) {
+        return generations[index];
+    }
+
+    /**
+     * Void-time the record was indexed with in epoch seconds, 0 if it never expires.
+     */
+    public long getVoidTime(int index) {
+        return voidTimes[index];
+    }
+}
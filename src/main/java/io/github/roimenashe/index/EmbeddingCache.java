@@ -0,0 +1,338 @@
+package io.github.roimenashe.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the vectors computed by embedders in memory-mapped files on local disk, keyed by record digest and
+ * generation, so that rebuilds only call the embedder for new or changed records.
+ * <p>
+ * Each vector field has its own file, an open-addressing hash table of fixed-size slots
+ * {@code [used][digest][generation][vector]} that lives outside the Java heap. A record written since it was
+ * embedded has a new generation, its slot is overwritten with the new vector. The table doubles into a new file
+ * when it is three quarters full. Slots of deleted records are not reclaimed, delete the file to reset a cache,
+ * e.g. after changing the embedding model without renaming the field.
+ */
+public class EmbeddingCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+    private static final int MAGIC = 0x45434831;
+    private static final int HEADER_SIZE = 32;
+    private static final int DIGEST_LENGTH = 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final Path path;
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Disabled, embedders are called for every record.
+     */
+    public EmbeddingCache() {
+        this(null);
+    }
+
+    /**
+     * @param path Local directory of the cache files, null disables the cache
+     */
+    public EmbeddingCache(Path path) {
+        this.path = path;
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    /**
+     * Cached vector of a record at its generation, or the vector computed by the embedder, which is then cached.
+     *
+     * @param name     Name of the vector field, e.g. namespace, set and field name
+     * @param embedder Computes the vector on a miss, called without holding any lock
+     */
+    public float[] get(String name, byte[] digest, int generation, Supplier<float[]> embedder) {
+        if (!isEnabled()) {
+            return embedder.get();
+        }
+        Table table = tables.computeIfAbsent(name, this::open);
+        float[] vector = table.get(digest, generation);
+        if (vector != null) {
+            hits.incrementAndGet();
+            return vector;
+        }
+        misses.incrementAndGet();
+        vector = embedder.get();
+        if (vector != null) {
+            table.put(digest, generation, vector);
+        }
+        return vector;
+    }
+
+    /**
+     * Removes the cached vectors of a field together with their file.
+     */
+    public void delete(String name) {
+        Table table = tables.remove(name);
+        if (table != null) {
+            table.delete();
+        }
+    }
+
+    /**
+     * Number of vectors served from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of vectors computed by embedders.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Writes cached vectors to disk, e.g. once a build completes.
+     */
+    public void flush() {
+        tables.values().forEach(Table::flush);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        tables.values().forEach(Table::close);
+        tables.clear();
+    }
+
+    private Table open(String name) {
+        try {
+            Files.createDirectories(path);
+            return new Table(path.resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".vec"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Hash table of one vector field, created on its first vector since the dimensions are unknown before.
+     */
+    private static class Table {
+
+        private final Path file;
+        private FileChannel channel;
+        private MappedByteBuffer header;
+        private MappedByteBuffer[] chunks;
+        private int dimensions;
+        private int slotSize;
+        private long slotsPerChunk;
+        private long capacity;
+        private long size;
+
+        Table(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file)) {
+                try {
+                    map(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                } catch (IOException | IllegalStateException e) {
+                    log.warn("Ignoring unreadable embedding cache [{}]", file, e);
+                    close();
+                    Files.delete(file);
+                }
+            }
+        }
+
+        synchronized float[] get(byte[] digest, int generation) {
+            if (channel == null) return null;
+            long slot = find(digest);
+            MappedByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.get(offset) == 0 || chunk.getInt(offset + 1 + DIGEST_LENGTH) != generation) return null;
+            return read(chunk, offset);
+        }
+
+        synchronized void put(byte[] digest, int generation, float[] vector) {
+            try {
+                if (channel == null || vector.length != dimensions) {
+                    if (channel != null) {
+                        log.warn("Embedding dimensions of [{}] changed from {} to {}, clearing the cache",
+                                file, dimensions, vector.length);
+                    }
+                    create(file, vector.length, INITIAL_CAPACITY);
+                }
+                long slot = find(digest);
+                if (chunk(slot).get(offset(slot)) == 0) {
+                    size++;
+                    header.putLong(16, size);
+                }
+                write(slot, digest, generation, vector);
+                if (size * 4 > capacity * 3) {
+                    grow();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Slot holding the digest, or the empty slot where it belongs.
+         */
+        private long find(byte[] digest) {
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            long slot = hash & (capacity - 1);
+            while (true) {
+                MappedByteBuffer chunk = chunk(slot);
+                int offset = offset(slot);
+                if (chunk.get(offset) == 0 || matches(chunk, offset + 1, digest)) {
+                    return slot;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+        }
+
+        private static boolean matches(MappedByteBuffer chunk, int offset, byte[] digest) {
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                if (chunk.get(offset + i) != digest[i]) return false;
+            }
+            return true;
+        }
+
+        private void write(long slot, byte[] digest, int generation, float[] vector) {
+            MappedByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            chunk.put(offset, (byte) 1);
+            chunk.put(offset + 1, digest);
+            chunk.putInt(offset + 1 + DIGEST_LENGTH, generation);
+            int vectorOffset = offset + 1 + DIGEST_LENGTH + Integer.BYTES;
+            for (int i = 0; i < vector.length; i++) {
+                chunk.putFloat(vectorOffset + i * Float.BYTES, vector[i]);
+            }
+        }
+
+        /**
+         * Rehashes into a file of twice the capacity, which replaces the current one once complete.
+         * The slot size is unchanged, so old slots are located as before.
+         */
+        private void grow() throws IOException {
+            FileChannel oldChannel = channel;
+            MappedByteBuffer[] oldChunks = chunks;
+            long oldCapacity = capacity;
+            create(file.resolveSibling(file.getFileName() + ".tmp"), dimensions, capacity * 2);
+            byte[] digest = new byte[DIGEST_LENGTH];
+            for (long slot = 0; slot < oldCapacity; slot++) {
+                MappedByteBuffer chunk = oldChunks[(int) (slot / slotsPerChunk)];
+                int offset = offset(slot);
+                if (chunk.get(offset) == 0) continue;
+                chunk.get(offset + 1, digest);
+                write(find(digest), digest, chunk.getInt(offset + 1 + DIGEST_LENGTH), read(chunk, offset));
+                size++;
+            }
+            header.putLong(16, size);
+            flush();
+            oldChannel.close();
+            Files.move(file.resolveSibling(file.getFileName() + ".tmp"), file,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private float[] read(MappedByteBuffer chunk, int offset) {
+            int vectorOffset = offset + 1 + DIGEST_LENGTH + Integer.BYTES;
+            float[] vector = new float[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = chunk.getFloat(vectorOffset + i * Float.BYTES);
+            }
+            return vector;
+        }
+
+        private void create(Path target, int dimensions, long capacity) throws IOException {
+            if (channel != null && target.equals(file)) {
+                close();
+            }
+            FileChannel created = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long slotSize = 1 + DIGEST_LENGTH + Integer.BYTES + (long) dimensions * Float.BYTES;
+            // Extending the file fills it with zeros, i.e. empty slots
+            created.write(ByteBuffer.allocate(1), HEADER_SIZE + capacity * slotSize - 1);
+            MappedByteBuffer createdHeader = created.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            createdHeader.putInt(0, MAGIC);
+            createdHeader.putInt(4, dimensions);
+            createdHeader.putLong(8, capacity);
+            createdHeader.putLong(16, 0);
+            map(created);
+        }
+
+        private void map(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not an embedding cache");
+            }
+            this.dimensions = header.getInt(4);
+            this.capacity = header.getLong(8);
+            this.size = header.getLong(16);
+            this.slotSize = 1 + DIGEST_LENGTH + Integer.BYTES + dimensions * Float.BYTES;
+            // Slots never cross chunks, each chunk is mapped by one buffer
+            this.slotsPerChunk = Math.max(1, CHUNK_SIZE / slotSize);
+            int chunkCount = (int) ((capacity + slotsPerChunk - 1) / slotsPerChunk);
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long slots = Math.min(slotsPerChunk, capacity - i * slotsPerChunk);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * slotsPerChunk * slotSize,
+                        slots * slotSize);
+            }
+        }
+
+        private MappedByteBuffer chunk(long slot) {
+            return chunks[(int) (slot / slotsPerChunk)];
+        }
+
+        private int offset(long slot) {
+            return (int) (slot % slotsPerChunk) * slotSize;
+        }
+
+        synchronized void flush() {
+            if (channel == null) return;
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+
+        synchronized void delete() {
+            close();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete embedding cache [{}]", file, e);
+            }
+        }
+
+        synchronized void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close embedding cache [{}]", file, e);
+            }
+            channel = null;
+        }
+    }
+}
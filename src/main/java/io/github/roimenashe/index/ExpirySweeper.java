@@ -0,0 +1,60 @@
+package io.github.roimenashe.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes the documents of records expired by TTL from the full-text and vector indexes.
+ * Queries already exclude expired documents, sweeping keeps them from occupying index memory.
+ */
+public class ExpirySweeper implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpirySweeper.class);
+
+    private final FullTextIndexer fullTextIndexer;
+    private final VectorIndexer vectorIndexer;
+    private final ScheduledExecutorService scheduler;
+
+    public ExpirySweeper(FullTextIndexer fullTextIndexer, VectorIndexer vectorIndexer, Duration interval) {
+        this.fullTextIndexer = fullTextIndexer;
+        this.vectorIndexer = vectorIndexer;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "aerospike-search-expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::sweep, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sweeps all resident indexes once.
+     *
+     * @return Number of deleted documents
+     */
+    public int sweep() {
+        try {
+            int deleted = fullTextIndexer.deleteExpired() + vectorIndexer.deleteExpired();
+            if (deleted > 0) {
+                log.debug("Swept {} expired documents", deleted);
+            }
+            return deleted;
+        } catch (Exception e) {
+            // Keep the schedule alive, the next run retries
+            log.warn("Failed to sweep expired documents", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        // No interrupt, it would close the NIO channels of an index being swept
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -2,110 +2,488 @@ package io.github.roimenashe.index;
 
 import com.aerospike.client.Key;
 import com.aerospike.client.Record;
-import com.aerospike.client.ScanCallback;
+import com.aerospike.client.query.PartitionFilter;
+import io.github.roimenashe.model.IndexOptions;
 import io.github.roimenashe.storage.AerospikeConnection;
+import io.github.roimenashe.util.ExpirationUtil;
+import io.github.roimenashe.util.FacetUtil;
 import io.github.roimenashe.util.FullTextUtil;
+import io.github.roimenashe.util.SegmentUtil;
+import io.github.roimenashe.util.SortUtil;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.suggest.Lookup;
 import org.apache.lucene.store.Directory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class FullTextIndexer implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(FullTextIndexer.class);
 
+    /**
+     * Field holding the set of a document in a shared index.
+     */
+    public static final String SET_FIELD = "_set";
+
+    private static final int REPAIR_BATCH_SIZE = 1000;
+
+    /**
+     * Stored text with term offsets in the postings, for highlighting.
+     */
+    private static final FieldType TEXT_WITH_OFFSETS = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        TEXT_WITH_OFFSETS.setIndexOptions(org.apache.lucene.index.IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_WITH_OFFSETS.freeze();
+    }
+
     private final AerospikeConnection aerospikeConnection;
+    private final IndexDirectoryFactory directoryFactory;
+    private final IndexStore store;
+    private final BuildCheckpointer checkpointer;
     private final Analyzer analyzer;
-    private final Map<String, Directory> directories = new ConcurrentHashMap<>();
-    private final Map<String, IndexWriter> writers = new ConcurrentHashMap<>();
-    private final Map<String, IndexSearcher> searchers = new ConcurrentHashMap<>();
+    private final Map<String, Lookup> suggesters = new ConcurrentHashMap<>();
+    // Set index name to the name of the shared index holding its documents
+    private final Map<String, String> sharedIndexes = new ConcurrentHashMap<>();
+    // Set index name to how its documents were built, to repair single records
+    private final Map<String, DocumentSpec> documentSpecs = new ConcurrentHashMap<>();
+    private volatile SearcherWarmer searcherWarmer = (namespace, set, searcher) -> {
+    };
 
     public FullTextIndexer(AerospikeConnection aerospikeConnection) {
+        this(aerospikeConnection, new IndexDirectoryFactory(), new IndexMemoryManager());
+    }
+
+    public FullTextIndexer(AerospikeConnection aerospikeConnection, IndexDirectoryFactory directoryFactory,
+                           IndexMemoryManager memoryManager) {
+        this(aerospikeConnection, directoryFactory, memoryManager, new BuildCheckpointer());
+    }
+
+    public FullTextIndexer(AerospikeConnection aerospikeConnection, IndexDirectoryFactory directoryFactory,
+                           IndexMemoryManager memoryManager, BuildCheckpointer checkpointer) {
         this.aerospikeConnection = aerospikeConnection;
+        this.directoryFactory = directoryFactory;
+        this.checkpointer = checkpointer;
         this.analyzer = new StandardAnalyzer();
+        this.store = new IndexStore(directoryFactory, memoryManager, () -> new IndexWriterConfig(analyzer));
     }
 
     public void createFullTextIndex(String namespace, String set, String... binNames) throws Exception {
-        String key = FullTextUtil.getFullTextUniqueIndexName(namespace, set);
+        createFullTextIndex(namespace, set, IndexOptions.defaults(), binNames);
+    }
 
-        Directory directory = directories.computeIfAbsent(key, k -> new ByteBuffersDirectory());
-        IndexWriter writer = writers.computeIfAbsent(key, k -> {
-            try {
-                return new IndexWriter(directory, new IndexWriterConfig(analyzer));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+    public void createFullTextIndex(String namespace, String set, IndexOptions options, String... binNames) throws Exception {
+        IndexBuilder builder = newIndexBuilder(namespace, set, options, checkpointer.isEnabled(), binNames);
+        try {
+            checkpointer.scan(aerospikeConnection, namespace, set, builder);
+        } catch (RuntimeException e) {
+            builder.abort();
+            throw e;
+        }
+        long count = builder.commit();
+
+        log.info("Indexed {} records for [{}:{}]", count, namespace, set);
+    }
+
+    public IndexBuilder newIndexBuilder(String namespace, String set, String... binNames) throws IOException {
+        return newIndexBuilder(namespace, set, IndexOptions.defaults(), binNames);
+    }
+
+    /**
+     * Prepares a rebuild of the full-text index, to be fed by a scan of the set.
+     *
+     * With a shared index, only the set's own documents are replaced. Builds of the same index, including the
+     * builds of other sets sharing it, run one at a time: this waits for the running one to be committed or aborted.
+     *
+     * @param options  Index options, such as sortable bins and the index sort
+     * @param binNames Optional bins to create the index on. All bins will be included if not specified.
+     */
+    public IndexBuilder newIndexBuilder(String namespace, String set, IndexOptions options, String... binNames) throws IOException {
+        return newIndexBuilder(namespace, set, options, false, binNames);
+    }
+
+    /**
+     * @param resumable Whether the build is fed by a checkpointed scan. A resumable build continues the last
+     *                  unfinished build with the same bins instead of starting over. Shared indexes and indexes
+     *                  with suggestions, which need every record in one pass, always start over.
+     */
+    private IndexBuilder newIndexBuilder(String namespace, String set, IndexOptions options, boolean resumable,
+                                         String... binNames) throws IOException {
+        String setKey = FullTextUtil.getFullTextUniqueIndexName(namespace, set);
+        boolean shared = options.getSharedIndex() != null;
+        String key = shared ? FullTextUtil.getSharedIndexName(namespace, options.getSharedIndex()) : setKey;
+        Set<String> indexedBins = binNames == null || binNames.length == 0 ? null : Set.of(binNames);
+        DocumentSpec spec = new DocumentSpec(shared ? setKey : null, indexedBins, options.getSortableBins(),
+                options.getFacetBins(), options.getHighlightBins(), SortUtil.toSort(options.getIndexSort()),
+                binNames == null ? new String[0] : binNames);
+
+        if (shared) {
+            // Fails before waiting for the shared index, checked again once the build holds it
+            checkSharedFields(setKey, key, spec);
+        }
+        store.beginBuild(key);
+        try {
+            return prepareBuild(namespace, set, setKey, key, options, spec, resumable);
+        } catch (IOException | RuntimeException e) {
+            store.rollback(key);
+            store.endBuild(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Prepares the build of an index pinned by the caller.
+     *
+     * @param setKey Name of the set's index
+     * @param key    Name of the index holding the set's documents, the set's index or a shared one
+     */
+    private IndexBuilder prepareBuild(String namespace, String set, String setKey, String key, IndexOptions options,
+                                      DocumentSpec spec, boolean resumable) throws IOException {
+        boolean shared = !key.equals(setKey);
+        Sort indexSort = spec.indexSort();
+        SuggesterBuilder suggesterBuilder = options.getSuggestBins().length == 0 ? null : new SuggesterBuilder(options);
+        boolean checkpointed = resumable && !shared && suggesterBuilder == null;
+
+        if (shared) {
+            // The documents of the other sets must survive the rebuild
+            store.reload(key);
+            checkSharedIndexSort(key, indexSort);
+            checkSharedFields(setKey, key, spec);
+        } else {
+            store.discardSpill(key);
+            store.releaseOnSortChange(key, indexSort);
+        }
+        Directory directory = store.openDirectory(key, () -> checkpointed ? checkpointer.restore(key, directoryFactory) : null);
+        IndexWriter writer = store.openWriter(key, indexSort);
+        SegmentUtil.applySegmentOptions(writer, options);
 
-        writer.deleteAll();
+        String signature = BuildCheckpointer.signature(aerospikeConnection.getPartitionRange(),
+                spec.indexedBins() == null ? Set.of() : spec.indexedBins(), spec.sortableBins(), spec.facetBins(),
+                spec.highlightBins());
+        PartitionFilter resumeProgress = checkpointed ? checkpointer.getProgress(directory, signature) : null;
         AtomicLong count = new AtomicLong();
+        if (resumeProgress != null) {
+            count.set(writer.getDocStats().numDocs);
+            log.info("Resuming build of [{}] after {} records", key, count.get());
+        } else if (shared) {
+            writer.deleteDocuments(new Term(SET_FIELD, setKey));
+        } else {
+            writer.deleteAll();
+            if (checkpointed) {
+                checkpointer.discard(key);
+            }
+        }
+        AtomicBoolean ended = new AtomicBoolean();
 
-        ScanCallback callback = (Key akey, Record record) -> {
-            Document doc = new Document();
-            String encodedId = Base64.getEncoder().encodeToString(akey.digest);
-            doc.add(new StringField("id", encodedId, Field.Store.YES));
+        return new IndexBuilder() {
+            @Override
+            public String[] getBinNames() {
+                String[] projected = spec.getBinNames();
+                if (projected.length == 0 || suggesterBuilder == null) {
+                    return projected;
+                }
+                Set<String> withSuggestions = new LinkedHashSet<>(List.of(projected));
+                withSuggestions.addAll(suggesterBuilder.getBinNames());
+                return withSuggestions.toArray(String[]::new);
+            }
 
-            record.bins.forEach((binName, value) -> {
-                if (value instanceof String text && !text.isEmpty()) {
-                    doc.add(new TextField(binName, text, Field.Store.YES));
+            @Override
+            public void scanCallback(Key akey, Record record) {
+                Document doc = spec.createDocument(akey, record);
+                if (suggesterBuilder != null) {
+                    suggesterBuilder.add(record);
                 }
-            });
 
-            synchronized (writer) {
+                synchronized (writer) {
+                    try {
+                        if (checkpointed) {
+                            // Records indexed after the last checkpoint are scanned again on resume
+                            writer.updateDocument(new Term("id", doc.get("id")), doc);
+                        } else {
+                            writer.addDocument(doc);
+                        }
+                        count.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+
+            @Override
+            public PartitionFilter getResumeProgress() {
+                return resumeProgress;
+            }
+
+            @Override
+            public void checkpoint(PartitionFilter progress) throws IOException {
+                if (checkpointed) {
+                    checkpointer.checkpoint(key, writer, directory, progress, signature);
+                }
+            }
+
+            @Override
+            public long commit() throws IOException {
+                if (!ended.compareAndSet(false, true)) {
+                    throw new IllegalStateException("Build of [" + key + "] already committed or aborted");
+                }
+                // The set keeps being served by its previous index until the new one is published
+                String previousKey = sharedIndexes.getOrDefault(setKey, setKey);
                 try {
-                    writer.addDocument(doc);
-                    count.incrementAndGet();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                    checkpointer.complete(key, writer);
+                    SegmentUtil.forceMerge(key, writer, options);
+                    writer.commit();
+                    DirectoryReader reader = DirectoryReader.open(writer);
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    // Queries keep using the previous searcher while the new one warms up
+                    searcherWarmer.warm(namespace, set, searcher);
+                    if (shared) {
+                        sharedIndexes.put(setKey, key);
+                    } else {
+                        sharedIndexes.remove(setKey);
+                    }
+                    store.publish(key, searcher);
+                    documentSpecs.put(setKey, spec);
+                    if (suggesterBuilder != null) {
+                        suggesters.put(setKey, suggesterBuilder.build(analyzer));
+                    } else {
+                        suggesters.remove(setKey);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    abandon();
+                    throw e;
+                } finally {
+                    store.endBuild(key);
+                }
+                // Once the permit is released, as detaching waits for the previous index's own builds
+                detachFromPreviousIndex(setKey, previousKey, key);
+                return count.get();
+            }
+
+            @Override
+            public void abort() {
+                if (ended.compareAndSet(false, true)) {
+                    abandon();
+                    store.endBuild(key);
+                }
+            }
+
+            private void abandon() {
+                // A checkpointed build is resumed by the next build rather than rolled back
+                if (checkpointed) {
+                    store.suspend(key);
+                } else {
+                    store.rollback(key);
                 }
             }
         };
+    }
 
-        if (binNames != null && binNames.length > 0) {
-            aerospikeConnection.scan(namespace, set, callback, binNames);
-        } else {
-            aerospikeConnection.scan(namespace, set, callback);
+    /**
+     * Digests of the set's records in its index, with the generation and void-time they were indexed at.
+     */
+    public DigestTable readDigests(String namespace, String set) throws IOException {
+        IndexSearcher searcher = acquireSearcher(namespace, set);
+        if (searcher == null) {
+            throw new IllegalStateException("Index not built yet. Call createFullTextIndex() first.");
+        }
+        try {
+            return DigestTable.read(searcher.getIndexReader(), getSetFilter(namespace, set));
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Re-indexes single records of the set from their current bins and deletes the documents of others,
+     * with the options of the last build, then swaps in a new searcher.
+     *
+     * @param reindex Records to index again, those that no longer exist are deleted
+     * @param delete  Records to delete from the index
+     */
+    public void repair(String namespace, String set, List<Key> reindex, List<Key> delete) throws IOException {
+        String setKey = FullTextUtil.getFullTextUniqueIndexName(namespace, set);
+        DocumentSpec spec = documentSpecs.get(setKey);
+        String key = sharedIndexes.getOrDefault(setKey, setKey);
+        if (spec == null || !store.exists(key)) {
+            throw new IllegalStateException("Index not built yet. Call createFullTextIndex() first.");
+        }
+        store.update(key, writer -> {
+            for (int from = 0; from < reindex.size(); from += REPAIR_BATCH_SIZE) {
+                List<Key> batch = reindex.subList(from, Math.min(reindex.size(), from + REPAIR_BATCH_SIZE));
+                Record[] records = aerospikeConnection.fetchRecordArrayByKeys(batch, spec.getBinNames());
+                for (int i = 0; i < records.length; i++) {
+                    Term id = new Term("id", Base64.getEncoder().encodeToString(batch.get(i).digest));
+                    if (records[i] == null) {
+                        writer.deleteDocuments(id);
+                    } else {
+                        writer.updateDocument(id, spec.createDocument(batch.get(i), records[i]));
+                    }
+                }
+            }
+            for (Key deleted : delete) {
+                writer.deleteDocuments(new Term("id", Base64.getEncoder().encodeToString(deleted.digest)));
+            }
+        });
+    }
+
+    /**
+     * A shared index holds other sets, so it is not recreated for another sort.
+     */
+    private void checkSharedIndexSort(String key, Sort indexSort) {
+        Sort sharedSort = store.getIndexSort(key);
+        if (store.exists(key) && !Objects.equals(sharedSort, indexSort)) {
+            throw new IllegalArgumentException("Shared index [" + key + "] is sorted by "
+                    + sharedSort + ", its sets cannot use another index sort");
         }
+    }
 
-        writer.commit();
-        closeOldSearcher(key);
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        searchers.put(key, searcher);
+    /**
+     * The sets of a shared index write their text bins to the same fields, whose index options must agree.
+     * A bin highlighted by one set (indexed with offsets) and indexed without highlighting by another would fail
+     * the build.
+     */
+    private void checkSharedFields(String setKey, String key, DocumentSpec spec) {
+        documentSpecs.forEach((otherSetKey, other) -> {
+            if (otherSetKey.equals(setKey) || !key.equals(sharedIndexes.get(otherSetKey))) return;
+            String bin = spec.conflictingBin(other);
+            if (bin != null) {
+                throw new IllegalArgumentException("Bin '" + bin + "' of shared index [" + key + "] is highlighted by only one of "
+                        + setKey + " and " + otherSetKey + ", sets of a shared index must highlight the same bins");
+            }
+        });
+    }
 
-        log.info("Indexed {} records for [{}:{}]", count.get(), namespace, set);
+    /**
+     * Removes the documents of a set from the index it was built into before, when it moves between a dedicated
+     * index and a shared one, or to another shared index. Runs after the new index is published, so a failed build
+     * leaves the set served by its previous index. A failure here only leaves unreachable documents behind, as
+     * queries of the set already go to the new index, so it is logged rather than failing the committed build.
+     *
+     * @param previousKey Index the set was built into before, the set's own index if it was not shared
+     * @param newKey      Index the set is built into now
+     */
+    private void detachFromPreviousIndex(String setKey, String previousKey, String newKey) {
+        if (previousKey.equals(newKey)) return;
+
+        try {
+            if (!previousKey.equals(setKey)) {
+                if (store.exists(previousKey)) {
+                    store.update(previousKey, writer -> writer.deleteDocuments(new Term(SET_FIELD, setKey)));
+                }
+            } else {
+                store.drop(setKey);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to remove the documents of [{}] from its previous index [{}]", setKey, previousKey, e);
+        }
+    }
+
+    /**
+     * Warms rebuilt indexes before they replace the current ones.
+     */
+    public void setSearcherWarmer(SearcherWarmer searcherWarmer) {
+        this.searcherWarmer = searcherWarmer;
     }
 
+    /**
+     * Names of the sets' indexes. Sets of a shared index are listed individually, not the shared index.
+     */
     public Set<String> listFullTextIndexes() {
-        return directories.keySet();
+        Set<String> indexes = store.listIndexes();
+        indexes.removeAll(sharedIndexes.values());
+        indexes.addAll(sharedIndexes.keySet());
+        return indexes;
     }
 
-    private void closeOldSearcher(String key) throws IOException {
-        IndexSearcher oldSearcher = searchers.get(key);
-        if (oldSearcher != null) {
-            oldSearcher.getIndexReader().close();
+    /**
+     * Number of segments of an index, each searched separately by queries.
+     */
+    public int getSegmentCount(String namespace, String set) throws IOException {
+        IndexSearcher searcher = acquireSearcher(namespace, set);
+        if (searcher == null) {
+            throw new IllegalStateException("No full-text index for " + namespace + "." + set);
         }
+        try {
+            return searcher.getIndexReader().leaves().size();
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Memory used by each index in bytes, on or off heap depending on the storage mode.
+     * A shared index is reported once, under its own name.
+     */
+    public Map<String, Long> getIndexSizes() {
+        return store.getIndexSizes();
     }
 
-    public IndexSearcher getIndexSearcher(String namespace, String set) {
-        return searchers.get(FullTextUtil.getFullTextUniqueIndexName(namespace, set));
+    /**
+     * Deletes the documents of expired records from all resident indexes. Evicted indexes are swept after reload.
+     *
+     * @return Number of deleted documents
+     */
+    public int deleteExpired() throws IOException {
+        return store.deleteExpired();
+    }
+
+    /**
+     * Searcher of the index holding the set, reloaded if the index was evicted, null if it is not built.
+     * For a set of a shared index, queries must be restricted with {@link #getSetFilter(String, String)}.
+     * The searcher must be released with {@link #releaseSearcher} once the query is done, it stays open until then
+     * even if the index is rebuilt or evicted meanwhile.
+     */
+    public IndexSearcher acquireSearcher(String namespace, String set) {
+        String setKey = FullTextUtil.getFullTextUniqueIndexName(namespace, set);
+        return store.acquire(sharedIndexes.getOrDefault(setKey, setKey));
+    }
+
+    /**
+     * Releases a searcher from {@link #acquireSearcher}, or a searcher over the same reader.
+     */
+    public void releaseSearcher(IndexSearcher searcher) throws IOException {
+        store.release(searcher);
+    }
+
+    /**
+     * Filter matching the documents of a set in its shared index, null if the set has a dedicated index.
+     */
+    public Query getSetFilter(String namespace, String set) {
+        String setKey = FullTextUtil.getFullTextUniqueIndexName(namespace, set);
+        return sharedIndexes.containsKey(setKey) ? new TermQuery(new Term(SET_FIELD, setKey)) : null;
+    }
+
+    /**
+     * Suggester of the set's full-text index, null if the index was built without suggest bins.
+     * Suggesters stay on heap when their index is evicted.
+     */
+    public Lookup getSuggester(String namespace, String set) {
+        return suggesters.get(FullTextUtil.getFullTextUniqueIndexName(namespace, set));
     }
 
     public Analyzer getAnalyzer() {
@@ -114,11 +492,69 @@ public class FullTextIndexer implements AutoCloseable {
 
     @Override
     public void close() throws IOException {
-        for (IndexWriter writer : writers.values()) {
-            writer.close();
+        store.close();
+    }
+
+    /**
+     * How the documents of a set are built from its records.
+     *
+     * @param sharedSet   Set index name stored in the documents of a shared index, null for a dedicated index
+     * @param indexedBins Text bins to index, null for all bins
+     */
+    private record DocumentSpec(String sharedSet, Set<String> indexedBins, Set<String> sortableBins, Set<String> facetBins,
+                                Set<String> highlightBins, Sort indexSort, String[] binNames) {
+
+        /**
+         * Bins to read from each record, empty for all bins.
+         */
+        String[] getBinNames() {
+            if (binNames.length == 0) {
+                return binNames;
+            }
+            Set<String> projected = new LinkedHashSet<>(List.of(binNames));
+            projected.addAll(sortableBins);
+            projected.addAll(facetBins);
+            return projected.toArray(String[]::new);
+        }
+
+        /**
+         * A text bin indexed by both specs, with offsets by only one of them. Null if there is none.
+         */
+        String conflictingBin(DocumentSpec other) {
+            for (String bin : highlightBins) {
+                if (indexes(bin) && other.indexes(bin) && !other.highlightBins.contains(bin)) return bin;
+            }
+            for (String bin : other.highlightBins) {
+                if (indexes(bin) && other.indexes(bin) && !highlightBins.contains(bin)) return bin;
+            }
+            return null;
         }
-        for (Directory directory : directories.values()) {
-            directory.close();
+
+        private boolean indexes(String bin) {
+            return indexedBins == null || indexedBins.contains(bin);
+        }
+
+        Document createDocument(Key key, Record record) {
+            Document doc = new Document();
+            doc.add(new StringField("id", Base64.getEncoder().encodeToString(key.digest), Field.Store.YES));
+            if (sharedSet != null) {
+                doc.add(new StringField(SET_FIELD, sharedSet, Field.Store.YES));
+            }
+            ExpirationUtil.addVoidTime(doc, record);
+            DigestTable.addGeneration(doc, record);
+            SortUtil.addSortableValues(doc, record, sortableBins);
+            FacetUtil.addFacetValues(doc, record, facetBins, sortableBins);
+
+            record.bins.forEach((binName, value) -> {
+                // The scan may project more bins than this index needs when it is shared with other builders
+                if (indexedBins != null && !indexedBins.contains(binName)) return;
+                if (value instanceof String text && !text.isEmpty()) {
+                    doc.add(highlightBins.contains(binName)
+                            ? new Field(binName, text, TEXT_WITH_OFFSETS)
+                            : new TextField(binName, text, Field.Store.YES));
+                }
+            });
+            return doc;
         }
     }
 }
@@ -0,0 +1,73 @@
+package io.github.roimenashe.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full vectors of truncated vector fields, whose indexes only hold their prefixes, so that searches rerank their
+ * candidates without reading the records. Vectors are kept outside the Java heap in memory-mapped files, in the
+ * table format of the {@link EmbeddingCache}: about {@code 25 + 4 * dimensions} bytes per record, keyed by record
+ * digest and generation. A record written since it was indexed no longer matches its indexed generation.
+ * <p>
+ * Every build of a field writes a table of its own, so searchers of the previous build keep reranking with the
+ * vectors they were built with, and a failed build leaves them untouched. Fields kept by a build share its table.
+ */
+class FullVectorStore implements AutoCloseable {
+
+    private final IndexDirectoryFactory directoryFactory;
+    private final Map<VectorField, String> tableNames = new ConcurrentHashMap<>();
+    private final AtomicLong tableIds = new AtomicLong();
+    private EmbeddingCache tables;
+
+    FullVectorStore(IndexDirectoryFactory directoryFactory) {
+        this.directoryFactory = directoryFactory;
+    }
+
+    /**
+     * Full vector of a record at the generation it was indexed at, null if the field's table does not hold it.
+     */
+    float[] get(VectorField field, byte[] digest, int generation) {
+        String name = tableNames.get(field);
+        return name == null ? null : tables().get(name, digest, generation, () -> null);
+    }
+
+    /**
+     * Stores the full vector of a record, indexed by a build or repair of the field.
+     */
+    void put(VectorField field, byte[] digest, int generation, float[] vector) {
+        String name = tableNames.computeIfAbsent(field, f -> f.getLuceneField() + "-" + tableIds.incrementAndGet());
+        tables().get(name, digest, generation, () -> vector);
+    }
+
+    /**
+     * Deletes the table of a field that is no longer served, e.g. replaced by a build or dropped.
+     */
+    void remove(VectorField field) {
+        String name = tableNames.remove(field);
+        if (name != null) {
+            tables().delete(name);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (tables != null) {
+            tables.close();
+        }
+        tableNames.clear();
+    }
+
+    private synchronized EmbeddingCache tables() {
+        if (tables == null) {
+            try {
+                tables = new EmbeddingCache(directoryFactory.getFullVectorPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.query.PartitionFilter;
+
+import java.io.IOException;
+
+/**
+ * Builds a single index from the records of a scan. Obtained from an indexer, fed with every record
+ * of one scan (possibly from several threads) and then committed, which makes the new index searchable.
+ * A builder that is not committed, e.g. because the scan failed, must be aborted.
+ */
+public interface IndexBuilder extends ScanCallback {
+
+    /**
+     * Bins the builder reads from each record, empty if it needs all bins.
+     */
+    String[] getBinNames();
+
+    /**
+     * Commits the index and swaps in a new searcher.
+     *
+     * @return Number of indexed records
+     */
+    long commit() throws IOException;
+
+    /**
+     * Abandons the build, the index keeps serving its previous searcher. Does nothing once committed.
+     */
+    default void abort() {
+    }
+
+    /**
+     * Scan progress of an interrupted build that this builder continues, null when it starts from scratch.
+     */
+    default PartitionFilter getResumeProgress() {
+        return null;
+    }
+
+    /**
+     * Durably commits the records indexed so far with the scan progress, without swapping the searcher.
+     * Builders that cannot resume ignore checkpoints.
+     */
+    default void checkpoint(PartitionFilter progress) throws IOException {
+    }
+}
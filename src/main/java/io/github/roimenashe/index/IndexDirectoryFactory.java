@@ -0,0 +1,187 @@
+package io.github.roimenashe.index;
+
+import io.github.roimenashe.model.StorageMode;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Creates and releases the Lucene directories that hold index data, according to the configured {@link StorageMode}.
+ */
+public class IndexDirectoryFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexDirectoryFactory.class);
+    private static final Path SHM = Path.of("/dev/shm");
+
+    private final StorageMode storageMode;
+    private final Path offHeapPath;
+    private final Path spillPath;
+    private Path rootPath;
+    private Path spillRootPath;
+    private Path fullVectorPath;
+
+    public IndexDirectoryFactory() {
+        this(StorageMode.HEAP, null, null);
+    }
+
+    public IndexDirectoryFactory(StorageMode storageMode, Path offHeapPath, Path spillPath) {
+        this.storageMode = storageMode;
+        this.offHeapPath = offHeapPath;
+        this.spillPath = spillPath;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Directory the off-heap index files are mapped from: the configured path, otherwise {@code /dev/shm},
+     * or {@code java.io.tmpdir} (with a warning, as it may be disk-backed) when {@code /dev/shm} is not writable.
+     * Null with {@link StorageMode#HEAP}.
+     */
+    public Path getOffHeapPath() {
+        if (storageMode != StorageMode.OFF_HEAP) return null;
+        if (offHeapPath != null) return offHeapPath;
+        return Files.isDirectory(SHM) && Files.isWritable(SHM) ? SHM : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    public Directory create(String indexName) throws IOException {
+        if (storageMode == StorageMode.HEAP) {
+            return new ByteBuffersDirectory();
+        }
+        // Lucene maps the files with MemorySegment arenas, which are closed (unmapped) together with their readers.
+        // Each directory has its own path, a replaced one may be released after its successor is created.
+        return new MMapDirectory(Files.createTempDirectory(getRootPath(), toFileName(indexName) + "-"));
+    }
+
+    /**
+     * Closes the directory and deletes its off-heap files, releasing the memory immediately.
+     */
+    public void release(String indexName, Directory directory) throws IOException {
+        Path path = directory instanceof FSDirectory fsDirectory ? fsDirectory.getDirectory() : null;
+        directory.close();
+        if (storageMode == StorageMode.OFF_HEAP && path != null) {
+            IOUtils.rm(path);
+        }
+    }
+
+    /**
+     * Copies the index files to local disk, so the in-memory directory can be released.
+     */
+    public void spill(String indexName, Directory directory) throws IOException {
+        Path path = getSpillPath(indexName);
+        IOUtils.rm(path);
+        try (Directory spillDirectory = FSDirectory.open(path)) {
+            for (String file : directory.listAll()) {
+                if (!"write.lock".equals(file)) {
+                    spillDirectory.copyFrom(directory, file, file, IOContext.DEFAULT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a new in-memory directory holding the files of a spilled index, and removes the spilled copy.
+     */
+    public Directory restore(String indexName) throws IOException {
+        Path path = getSpillPath(indexName);
+        Directory directory = create(indexName);
+        try (Directory spillDirectory = FSDirectory.open(path)) {
+            for (String file : spillDirectory.listAll()) {
+                directory.copyFrom(spillDirectory, file, file, IOContext.DEFAULT);
+            }
+        }
+        IOUtils.rm(path);
+        return directory;
+    }
+
+    public void deleteSpill(String indexName) throws IOException {
+        IOUtils.rm(getSpillPath(indexName));
+    }
+
+    /**
+     * Closes the factory, removing the root directories of off-heap and spilled indexes.
+     */
+    public synchronized void close() throws IOException {
+        if (fullVectorPath != null) {
+            IOUtils.rm(fullVectorPath);
+            fullVectorPath = null;
+        }
+        if (rootPath != null) {
+            IOUtils.rm(rootPath);
+            rootPath = null;
+        }
+        if (spillRootPath != null) {
+            IOUtils.rm(spillRootPath);
+            spillRootPath = null;
+        }
+    }
+
+    public static long sizeInBytes(Directory directory) {
+        long size = 0;
+        try {
+            for (String file : directory.listAll()) {
+                try {
+                    size += directory.fileLength(file);
+                } catch (NoSuchFileException e) {
+                    // File deleted by a concurrent merge or commit
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to compute index size", e);
+        }
+        return size;
+    }
+
+    /**
+     * Directory of the full vectors of truncated vector fields, memory-mapped next to the indexes: under the
+     * off-heap directory with {@link StorageMode#OFF_HEAP}, otherwise in {@code java.io.tmpdir}. Removed on close.
+     */
+    public synchronized Path getFullVectorPath() throws IOException {
+        if (fullVectorPath == null) {
+            Path parent = storageMode == StorageMode.OFF_HEAP ? getRootPath() : Path.of(System.getProperty("java.io.tmpdir"));
+            fullVectorPath = Files.createTempDirectory(parent, "aerospike-search-vectors-");
+        }
+        return fullVectorPath;
+    }
+
+    private Path getSpillPath(String indexName) throws IOException {
+        return getSpillRootPath().resolve(toFileName(indexName));
+    }
+
+    private static String toFileName(String indexName) {
+        return indexName.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + Integer.toHexString(indexName.hashCode());
+    }
+
+    private synchronized Path getRootPath() throws IOException {
+        if (rootPath == null) {
+            Path parent = getOffHeapPath();
+            if (offHeapPath == null && !parent.equals(SHM)) {
+                log.warn("{} is not available, off-heap index files are mapped from {}, which may not be memory-backed. "
+                        + "Set AerospikeSearchConfig.setOffHeapPath to a tmpfs", SHM, parent);
+            }
+            Files.createDirectories(parent);
+            rootPath = Files.createTempDirectory(parent, "aerospike-search-");
+        }
+        return rootPath;
+    }
+
+    private synchronized Path getSpillRootPath() throws IOException {
+        if (spillRootPath == null) {
+            Path parent = spillPath != null ? spillPath : Path.of(System.getProperty("java.io.tmpdir"));
+            Files.createDirectories(parent);
+            spillRootPath = Files.createTempDirectory(parent, "aerospike-search-spill-");
+        }
+        return spillRootPath;
+    }
+}
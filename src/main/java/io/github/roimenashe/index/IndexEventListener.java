@@ -0,0 +1,25 @@
+package io.github.roimenashe.index;
+
+/**
+ * Receives index memory events. All methods have empty defaults, implement only the events of interest.
+ */
+public interface IndexEventListener {
+
+    /**
+     * An index was built and admitted to memory.
+     */
+    default void onAdmit(String indexName, long sizeInBytes) {
+    }
+
+    /**
+     * An index was spilled to local disk to stay within the memory budget.
+     */
+    default void onEvict(String indexName, long sizeInBytes) {
+    }
+
+    /**
+     * A spilled index was reloaded into memory because it was queried.
+     */
+    default void onReload(String indexName, long sizeInBytes) {
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.roimenashe.index;
+
+import io.github.roimenashe.model.EvictionPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts the memory of resident indexes against a global budget and evicts cold indexes when it is exceeded.
+ */
+public class IndexMemoryManager {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexMemoryManager.class);
+
+    /**
+     * Implemented by indexers that can spill an index out of memory.
+     */
+    public interface Evictable {
+        /**
+         * @return Whether the index was evicted, false if it is in use and stays resident
+         */
+        boolean evict(String indexName) throws IOException;
+
+        /**
+         * Whether the index is in use, e.g. by a running build, and must not be chosen for eviction.
+         */
+        default boolean isPinned(String indexName) {
+            return false;
+        }
+    }
+
+    private static class Entry {
+        final Evictable owner;
+        final long sizeInBytes;
+        volatile long lastAccess;
+        final AtomicLong accessCount = new AtomicLong();
+
+        Entry(Evictable owner, long sizeInBytes) {
+            this.owner = owner;
+            this.sizeInBytes = sizeInBytes;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    private final long memoryBudget;
+    private final EvictionPolicy evictionPolicy;
+    private final List<IndexEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long usedBytes;
+
+    public IndexMemoryManager() {
+        this(0, EvictionPolicy.LRU);
+    }
+
+    /**
+     * @param memoryBudget   Global budget in bytes for all resident indexes, 0 for unlimited
+     * @param evictionPolicy Policy used to choose the indexes to evict
+     */
+    public IndexMemoryManager(long memoryBudget, EvictionPolicy evictionPolicy) {
+        this.memoryBudget = memoryBudget;
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    public void addListener(IndexEventListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Accounts a newly built or reloaded index and evicts other indexes until the budget is met.
+     * Indexes pinned by their owner are not evicted.
+     * Must not be called while holding an indexer lock, since eviction calls back into the indexers.
+     */
+    public void admit(String indexName, long sizeInBytes, Evictable owner, boolean reloaded) {
+        List<Map.Entry<String, Entry>> victims = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(indexName, new Entry(owner, sizeInBytes));
+            if (previous != null) {
+                usedBytes -= previous.sizeInBytes;
+            }
+            usedBytes += sizeInBytes;
+
+            if (memoryBudget > 0) {
+                List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+                candidates.removeIf(e -> e.getKey().equals(indexName) || e.getValue().owner.isPinned(e.getKey()));
+                candidates.sort(evictionPolicy == EvictionPolicy.LFU
+                        ? Comparator.comparingLong(e -> e.getValue().accessCount.get())
+                        : Comparator.comparingLong(e -> e.getValue().lastAccess));
+                for (Map.Entry<String, Entry> candidate : candidates) {
+                    if (usedBytes <= memoryBudget) break;
+                    entries.remove(candidate.getKey());
+                    usedBytes -= candidate.getValue().sizeInBytes;
+                    victims.add(candidate);
+                }
+                if (usedBytes > memoryBudget) {
+                    log.warn("Index [{}] of {} bytes exceeds the memory budget of {} bytes", indexName, sizeInBytes, memoryBudget);
+                }
+            }
+        }
+
+        for (IndexEventListener listener : listeners) {
+            if (reloaded) {
+                listener.onReload(indexName, sizeInBytes);
+            } else {
+                listener.onAdmit(indexName, sizeInBytes);
+            }
+        }
+        for (Map.Entry<String, Entry> victim : victims) {
+            try {
+                if (!victim.getValue().owner.evict(victim.getKey())) {
+                    // Pinned since it was chosen, keep accounting it
+                    restore(victim.getKey(), victim.getValue());
+                    continue;
+                }
+                log.info("Evicted index [{}] ({} bytes) to stay within the memory budget", victim.getKey(), victim.getValue().sizeInBytes);
+                for (IndexEventListener listener : listeners) {
+                    listener.onEvict(victim.getKey(), victim.getValue().sizeInBytes);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to evict index [{}]", victim.getKey(), e);
+            }
+        }
+    }
+
+    private synchronized void restore(String indexName, Entry entry) {
+        if (entries.putIfAbsent(indexName, entry) == null) {
+            usedBytes += entry.sizeInBytes;
+        }
+    }
+
+    /**
+     * Records a query against a resident index.
+     */
+    public void touch(String indexName) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(indexName);
+        }
+        if (entry != null) {
+            entry.lastAccess = System.nanoTime();
+            entry.accessCount.incrementAndGet();
+        }
+    }
+
+    public synchronized void remove(String indexName) {
+        Entry entry = entries.remove(indexName);
+        if (entry != null) {
+            usedBytes -= entry.sizeInBytes;
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+}
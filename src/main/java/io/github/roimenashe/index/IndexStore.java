@@ -0,0 +1,422 @@
+package io.github.roimenashe.index;
+
+import io.github.roimenashe.util.ExpirationUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOConsumer;
+import org.apache.lucene.util.IOSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Directories, writers and searchers of the indexes of an indexer, with the lifecycle shared by the full-text and
+ * vector indexers: builds swap in new searchers, and cold indexes are evicted to local disk and reloaded on demand.
+ * <p>
+ * Searchers are reference counted. A query {@link #acquire acquires} the searcher of an index and
+ * {@link #release releases} it when done, so a searcher replaced by a rebuild or an eviction is closed, and its
+ * directory released, only once its last query is done.
+ * <p>
+ * Builds, repairs and drops of an index are serialized by a per-index permit, and a running build pins its index,
+ * which is then neither evicted nor swept. A failed build is rolled back to the last commit, and a failed
+ * checkpointed build keeps its index pinned until a build completes it. Swaps, evictions and
+ * reloads happen under the store's lock, memory admission outside of it since it evicts other indexes.
+ */
+class IndexStore implements IndexMemoryManager.Evictable {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexStore.class);
+
+    private final IndexDirectoryFactory directoryFactory;
+    private final IndexMemoryManager memoryManager;
+    private final Supplier<IndexWriterConfig> writerConfig;
+    private final Map<String, Directory> directories = new ConcurrentHashMap<>();
+    private final Map<String, IndexWriter> writers = new ConcurrentHashMap<>();
+    private final Map<String, IndexSearcher> searchers = new ConcurrentHashMap<>();
+    private final Set<String> spilledIndexes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Semaphore> buildPermits = new ConcurrentHashMap<>();
+    // Indexes with a running build, updated under the store's lock and read by the memory manager under its own lock
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    // Indexes whose directory holds the checkpoints of a failed build, which must not be served
+    private final Set<String> unfinished = ConcurrentHashMap.newKeySet();
+
+    IndexStore(IndexDirectoryFactory directoryFactory, IndexMemoryManager memoryManager,
+               Supplier<IndexWriterConfig> writerConfig) {
+        this.directoryFactory = directoryFactory;
+        this.memoryManager = memoryManager;
+        this.writerConfig = writerConfig;
+    }
+
+    /**
+     * Waits for the running build of an index, if any, then pins the index until {@link #endBuild}, so it is neither
+     * evicted nor swept while the build writes to it. Must not be called by the builder of the same index, nor while
+     * holding the store's lock.
+     */
+    void beginBuild(String key) throws InterruptedIOException {
+        try {
+            buildPermits.computeIfAbsent(key, k -> new Semaphore(1)).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the build of index " + key);
+        }
+        synchronized (this) {
+            building.add(key);
+        }
+    }
+
+    void endBuild(String key) {
+        synchronized (this) {
+            building.remove(key);
+        }
+        buildPermits.get(key).release();
+    }
+
+    @Override
+    public boolean isPinned(String key) {
+        return building.contains(key) || unfinished.contains(key);
+    }
+
+    /**
+     * Discards what a failed build wrote since the last commit, the index keeps serving its previous searcher.
+     * An index that never served a searcher is dropped.
+     */
+    synchronized void rollback(String key) {
+        try {
+            IndexWriter writer = writers.remove(key);
+            if (writer != null) {
+                writer.rollback();
+            }
+            if (!searchers.containsKey(key)) {
+                dropIndex(key);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to roll back the build of index [{}]", key, e);
+        }
+    }
+
+    /**
+     * Suspends a failed checkpointed build. Its checkpoints are committed to the index's directory, where the next
+     * build resumes from them, but must not be served: the index keeps serving its previous searcher (or none), and
+     * is neither evicted, swept nor updated until a build completes it or the index is dropped.
+     */
+    synchronized void suspend(String key) {
+        unfinished.add(key);
+        try {
+            IndexWriter writer = writers.remove(key);
+            if (writer != null) {
+                writer.rollback();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to roll back the build of index [{}]", key, e);
+        }
+    }
+
+    /**
+     * Directory of an index, restored by the supplier or created empty if the index has none.
+     *
+     * @param restore Supplies the directory of an unfinished build, or null to create an empty one
+     */
+    synchronized Directory openDirectory(String key, IOSupplier<Directory> restore) throws IOException {
+        Directory directory = directories.get(key);
+        if (directory == null) {
+            directory = restore.get();
+            if (directory == null) {
+                directory = directoryFactory.create(key);
+            }
+            directories.put(key, directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Writer of an index, opened on its directory with the given index sort if the index has none.
+     */
+    synchronized IndexWriter openWriter(String key, Sort indexSort) throws IOException {
+        IndexWriter writer = writers.get(key);
+        if (writer == null) {
+            IndexWriterConfig config = writerConfig.get();
+            if (indexSort != null) {
+                config.setIndexSort(indexSort);
+            }
+            writer = new IndexWriter(directories.get(key), config);
+            writers.put(key, writer);
+        }
+        return writer;
+    }
+
+    /**
+     * Index sort of an index, from its writer or, for an index reloaded without a writer, from its segments.
+     */
+    synchronized Sort getIndexSort(String key) {
+        IndexWriter writer = writers.get(key);
+        if (writer != null) {
+            return writer.getConfig().getIndexSort();
+        }
+        IndexSearcher searcher = searchers.get(key);
+        if (searcher != null) {
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                return leaf.reader().getMetaData().sort();
+            }
+        }
+        return null;
+    }
+
+    boolean exists(String key) {
+        return directories.containsKey(key) || spilledIndexes.contains(key);
+    }
+
+    /**
+     * The index sort of a writer is fixed, so an index built with another sort is dropped and recreated.
+     */
+    synchronized void releaseOnSortChange(String key, Sort indexSort) throws IOException {
+        if (directories.containsKey(key) && !Objects.equals(getIndexSort(key), indexSort)) {
+            dropIndex(key);
+        }
+    }
+
+    /**
+     * Deletes the spilled copy of an index that is rebuilt from scratch.
+     */
+    synchronized void discardSpill(String key) throws IOException {
+        if (spilledIndexes.remove(key)) {
+            directoryFactory.deleteSpill(key);
+        }
+    }
+
+    /**
+     * Swaps in a new searcher of an index and accounts its memory. The previous searcher is closed once the
+     * queries using it are done.
+     */
+    void publish(String key, IndexSearcher searcher) throws IOException {
+        long size;
+        synchronized (this) {
+            swap(key, searcher);
+            unfinished.remove(key);
+            size = IndexDirectoryFactory.sizeInBytes(directories.get(key));
+        }
+        memoryManager.admit(key, size, this, false);
+    }
+
+    /**
+     * Applies changes to a built index, such as a repair, commits them and swaps in a new searcher.
+     * An evicted index is reloaded first.
+     */
+    void update(String key, IOConsumer<IndexWriter> changes) throws IOException {
+        beginBuild(key);
+        try {
+            reload(key);
+            long size;
+            synchronized (this) {
+                if (!directories.containsKey(key)) {
+                    throw new IllegalStateException("Index " + key + " not built");
+                }
+                if (unfinished.contains(key)) {
+                    throw new IllegalStateException("Index " + key + " has an unfinished build, build it again first");
+                }
+                IndexWriter writer = openWriter(key, getIndexSort(key));
+                try {
+                    changes.accept(writer);
+                    writer.commit();
+                } catch (IOException | RuntimeException e) {
+                    rollback(key);
+                    throw e;
+                }
+                swap(key, new IndexSearcher(DirectoryReader.open(writer)));
+                size = IndexDirectoryFactory.sizeInBytes(directories.get(key));
+            }
+            memoryManager.admit(key, size, this, false);
+        } finally {
+            endBuild(key);
+        }
+    }
+
+    /**
+     * Closes an index and releases its memory, including a spilled copy, once its running build is done.
+     */
+    void drop(String key) throws IOException {
+        beginBuild(key);
+        try {
+            dropIndex(key);
+        } finally {
+            endBuild(key);
+        }
+    }
+
+    private synchronized void dropIndex(String key) throws IOException {
+        discardSpill(key);
+        unfinished.remove(key);
+        Directory directory = directories.remove(key);
+        if (directory == null) return;
+
+        IndexWriter writer = writers.remove(key);
+        if (writer != null) {
+            writer.close();
+        }
+        retire(key, searchers.remove(key), directory);
+        memoryManager.remove(key);
+    }
+
+    /**
+     * Searcher of an index, reloaded if the index was evicted, null if it is not built. The searcher stays open
+     * until {@link #release released}, even if the index is rebuilt or evicted meanwhile.
+     */
+    IndexSearcher acquire(String key) {
+        while (true) {
+            IndexSearcher searcher = searchers.get(key);
+            if (searcher == null) {
+                if (!spilledIndexes.contains(key)) {
+                    return null;
+                }
+                reload(key);
+            } else if (searcher.getIndexReader().tryIncRef()) {
+                memoryManager.touch(key);
+                return searcher;
+            }
+            // Otherwise the searcher was just replaced, retry with the new one
+        }
+    }
+
+    void release(IndexSearcher searcher) throws IOException {
+        searcher.getIndexReader().decRef();
+    }
+
+    /**
+     * Deletes the documents of expired records from all resident indexes, opening a writer on reloaded indexes.
+     * Evicted indexes are swept after reload, indexes being built after their build.
+     *
+     * @return Number of deleted documents
+     */
+    int deleteExpired() throws IOException {
+        long now = ExpirationUtil.nowSeconds();
+        int deleted = 0;
+        for (String key : searchers.keySet()) {
+            synchronized (this) {
+                // A build commits its own writer, the sweep must not publish its documents before it completes
+                IndexSearcher searcher = searchers.get(key);
+                if (searcher == null || isPinned(key) || !ExpirationUtil.hasExpired(searcher.getIndexReader(), now)) continue;
+                // Deleted documents keep their points until merged, so count the live expired ones
+                int count = searcher.count(ExpirationUtil.expiredQuery(now));
+                if (count == 0) continue;
+                IndexWriter writer = openWriter(key, getIndexSort(key));
+                writer.deleteDocuments(ExpirationUtil.expiredQuery(now));
+                writer.commit();
+                swap(key, new IndexSearcher(DirectoryReader.open(writer)));
+                deleted += count;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Spills an index to local disk and releases its memory once its queries are done. The index is reloaded when
+     * it is next queried. Indexes with a running build are not evicted.
+     */
+    @Override
+    public synchronized boolean evict(String key) throws IOException {
+        if (isPinned(key)) return false;
+        Directory directory = directories.get(key);
+        if (directory == null) return true;
+
+        IndexWriter writer = writers.remove(key);
+        if (writer != null) {
+            writer.close();
+        }
+        directoryFactory.spill(key, directory);
+        directories.remove(key);
+        spilledIndexes.add(key);
+        retire(key, searchers.remove(key), directory);
+        return true;
+    }
+
+    /**
+     * Reloads an evicted index into memory, doing nothing if it is resident.
+     */
+    void reload(String key) {
+        long size;
+        synchronized (this) {
+            if (!spilledIndexes.contains(key)) return;
+            try {
+                Directory directory = directoryFactory.restore(key);
+                directories.put(key, directory);
+                searchers.put(key, new IndexSearcher(DirectoryReader.open(directory)));
+                spilledIndexes.remove(key);
+                size = IndexDirectoryFactory.sizeInBytes(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to reload index " + key, e);
+            }
+        }
+        // Admission may evict other indexes, so it runs outside of the store's lock
+        memoryManager.admit(key, size, this, true);
+        log.info("Reloaded index [{}] ({} bytes)", key, size);
+    }
+
+    Set<String> listIndexes() {
+        Set<String> indexes = new HashSet<>(directories.keySet());
+        indexes.addAll(spilledIndexes);
+        return indexes;
+    }
+
+    /**
+     * Memory used by each resident index in bytes, on or off heap depending on the storage mode.
+     */
+    Map<String, Long> getIndexSizes() {
+        Map<String, Long> sizes = new HashMap<>();
+        directories.forEach((key, directory) -> sizes.put(key, IndexDirectoryFactory.sizeInBytes(directory)));
+        return sizes;
+    }
+
+    synchronized void close() throws IOException {
+        for (IndexWriter writer : writers.values()) {
+            writer.close();
+        }
+        writers.clear();
+        for (String key : new ArrayList<>(directories.keySet())) {
+            memoryManager.remove(key);
+            retire(key, searchers.remove(key), directories.remove(key));
+        }
+    }
+
+    private void swap(String key, IndexSearcher searcher) throws IOException {
+        IndexSearcher previous = searchers.put(key, searcher);
+        if (previous != null) {
+            previous.getIndexReader().decRef();
+        }
+    }
+
+    /**
+     * Closes a searcher that is no longer served, and releases the directory once the queries still using the
+     * searcher are done.
+     */
+    private void retire(String key, IndexSearcher searcher, Directory directory) throws IOException {
+        if (searcher == null) {
+            directoryFactory.release(key, directory);
+            return;
+        }
+        IndexReader reader = searcher.getIndexReader();
+        reader.getReaderCacheHelper().addClosedListener(cacheKey -> {
+            try {
+                directoryFactory.release(key, directory);
+            } catch (IOException e) {
+                log.warn("Failed to release the directory of index [{}]", key, e);
+            }
+        });
+        reader.decRef();
+    }
+}
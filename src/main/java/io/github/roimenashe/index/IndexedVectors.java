@@ -0,0 +1,81 @@
+package io.github.roimenashe.index;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.KnnVectorValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Vectors of some fields in the current searcher of an index. A build of the index's other fields reuses them for
+ * the records unchanged since they were indexed, instead of extracting (embedding) them again.
+ * Lookups open their own doc values and vector values, so they may run on several scan threads.
+ */
+class IndexedVectors {
+
+    private final IndexSearcher searcher;
+    private final Set<VectorField> fields;
+
+    /**
+     * @param searcher Searcher acquired from the index store, released by the build
+     * @param fields   Fields whose vectors are reused
+     */
+    IndexedVectors(IndexSearcher searcher, Set<VectorField> fields) {
+        this.searcher = searcher;
+        this.fields = fields;
+    }
+
+    IndexSearcher getSearcher() {
+        return searcher;
+    }
+
+    boolean reuses(VectorField field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Indexed vector of the field for a record (the prefix of a truncated field), null if the field is not reused,
+     * or the record is not indexed or was written since.
+     */
+    float[] get(VectorField field, byte[] digest, int generation) throws IOException {
+        if (!reuses(field)) return null;
+
+        BytesRef id = new BytesRef(Base64.getEncoder().encodeToString(digest));
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            Terms terms = leaf.reader().terms("id");
+            if (terms == null) continue;
+            TermsEnum termsEnum = terms.iterator();
+            if (!termsEnum.seekExact(id)) continue;
+
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            PostingsEnum postings = termsEnum.postings(null, PostingsEnum.NONE);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if (liveDocs != null && !liveDocs.get(doc)) continue;
+                NumericDocValues generations = DocValues.getNumeric(leaf.reader(), DigestTable.GENERATION_FIELD);
+                if (!generations.advanceExact(doc) || generations.longValue() != generation) return null;
+                return read(leaf, field, doc);
+            }
+        }
+        return null;
+    }
+
+    private static float[] read(LeafReaderContext leaf, VectorField field, int doc) throws IOException {
+        FloatVectorValues values = leaf.reader().getFloatVectorValues(field.getLuceneField());
+        if (values == null) return null;
+        KnnVectorValues.DocIndexIterator iterator = values.iterator();
+        if (iterator.advance(doc) != doc) return null;
+        // Vector values may reuse their array
+        return values.vectorValue(iterator.index()).clone();
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import io.github.roimenashe.model.IndexSpec;
+import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.storage.AerospikeConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds several indexes of a set from a single Aerospike scan.
+ */
+public class MultiIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(MultiIndexer.class);
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Object[] END_OF_SCAN = new Object[0];
+
+    private final AerospikeConnection aerospikeConnection;
+    private final FullTextIndexer fullTextIndexer;
+    private final VectorIndexer vectorIndexer;
+
+    public MultiIndexer(AerospikeConnection aerospikeConnection, FullTextIndexer fullTextIndexer, VectorIndexer vectorIndexer) {
+        this.aerospikeConnection = aerospikeConnection;
+        this.fullTextIndexer = fullTextIndexer;
+        this.vectorIndexer = vectorIndexer;
+    }
+
+    /**
+     * Scans the set once with a bin projection covering all specs, and fans every record out to one builder per spec.
+     * Each builder consumes its own bounded queue on a dedicated thread, so slow builders (e.g. embedders)
+     * run in parallel with the others and apply back-pressure to the scan.
+     */
+    public void createIndexes(String namespace, String set, IndexSpec... specs) throws Exception {
+        if (specs == null || specs.length == 0) {
+            throw new IllegalArgumentException("At least one index spec is required");
+        }
+        // A set has one full-text index, whose builds run one at a time
+        if (Arrays.stream(specs).filter(spec -> spec.getIndexType() == IndexType.FULL_TEXT).count() > 1) {
+            throw new IllegalArgumentException("At most one full-text index spec per set");
+        }
+
+        // All vector fields of a set share one index, so vector specs are built by a single builder
+        List<IndexBuilder> builders = new ArrayList<>(specs.length);
+        try {
+            createIndexes(namespace, set, specs, builders);
+        } catch (Exception | Error e) {
+            // Builders committed already ignore the abort
+            builders.forEach(IndexBuilder::abort);
+            throw e;
+        }
+    }
+
+    private void createIndexes(String namespace, String set, IndexSpec[] specs, List<IndexBuilder> builders) throws Exception {
+        List<IndexSpec> vectorSpecs = new ArrayList<>();
+        for (IndexSpec spec : specs) {
+            switch (spec.getIndexType()) {
+                case FULL_TEXT -> builders.add(fullTextIndexer.newIndexBuilder(namespace, set, spec.getOptions(), spec.getBinNames()));
+                case VECTOR -> vectorSpecs.add(spec);
+            }
+        }
+        if (!vectorSpecs.isEmpty()) {
+            builders.add(vectorIndexer.newIndexBuilder(namespace, set, vectorSpecs));
+        }
+
+        List<BlockingQueue<Object[]>> queues = new ArrayList<>(builders.size());
+        List<Future<?>> consumers = new ArrayList<>(builders.size());
+        ExecutorService executor = Executors.newFixedThreadPool(builders.size());
+        try {
+            for (IndexBuilder builder : builders) {
+                BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+                queues.add(queue);
+                consumers.add(executor.submit(() -> {
+                    for (Object[] item = queue.take(); item != END_OF_SCAN; item = queue.take()) {
+                        builder.scanCallback((Key) item[0], (Record) item[1]);
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                aerospikeConnection.scan(namespace, set, (key, record) -> {
+                    Object[] item = new Object[]{key, record};
+                    for (int i = 0; i < queues.size(); i++) {
+                        put(queues.get(i), item, consumers.get(i));
+                    }
+                }, getBinNames(builders));
+            } catch (RuntimeException e) {
+                // Surface the failure of a builder rather than the aborted scan
+                for (Future<?> consumer : consumers) {
+                    if (consumer.isDone()) {
+                        consumer.get();
+                    }
+                }
+                throw e;
+            }
+
+            for (int i = 0; i < queues.size(); i++) {
+                put(queues.get(i), END_OF_SCAN, consumers.get(i));
+            }
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < builders.size(); i++) {
+            long count = builders.get(i).commit();
+            log.info("Indexed {} records for [{}:{}] (builder {} of {})", count, namespace, set, i + 1, builders.size());
+        }
+    }
+
+    /**
+     * Union of the bins needed by all builders, empty (all bins) if any builder needs all bins.
+     */
+    private String[] getBinNames(List<IndexBuilder> builders) {
+        Set<String> binNames = new LinkedHashSet<>();
+        for (IndexBuilder builder : builders) {
+            if (builder.getBinNames().length == 0) {
+                return new String[0];
+            }
+            binNames.addAll(List.of(builder.getBinNames()));
+        }
+        return binNames.toArray(String[]::new);
+    }
+
+    private void put(BlockingQueue<Object[]> queue, Object[] item, Future<?> consumer) {
+        try {
+            // A failed builder stops consuming, fail the scan instead of blocking on its full queue
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (consumer.isDone()) {
+                    throw new IllegalStateException("Index builder failed during scan");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while indexing", e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.roimenashe.index;
+
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Warms the searcher of a rebuilt index before it replaces the current one, so the first queries after a
+ * rebuild do not pay for cold data and lazily loaded structures.
+ */
+@FunctionalInterface
+public interface SearcherWarmer {
+
+    void warm(String namespace, String set, IndexSearcher searcher);
+}
@@ -0,0 +1,128 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.Record;
+import io.github.roimenashe.model.IndexOptions;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects completions from scanned records and builds an FST-based suggester from them.
+ */
+public class SuggesterBuilder {
+
+    private final String[] suggestBins;
+    private final String weightBin;
+    private final boolean fuzzy;
+    private final Map<String, Long> weights = new ConcurrentHashMap<>();
+
+    public SuggesterBuilder(IndexOptions options) {
+        this.suggestBins = options.getSuggestBins();
+        this.weightBin = options.getSuggestWeightBin();
+        this.fuzzy = options.isFuzzySuggestions();
+    }
+
+    /**
+     * Bins read from each record.
+     */
+    public Set<String> getBinNames() {
+        Set<String> binNames = new LinkedHashSet<>(List.of(suggestBins));
+        if (weightBin != null) {
+            binNames.add(weightBin);
+        }
+        return binNames;
+    }
+
+    public void add(Record record) {
+        long weight = 1;
+        if (weightBin != null && record.getValue(weightBin) instanceof Number number) {
+            // The suggester encodes weights as non-negative ints
+            weight = Math.clamp(number.longValue(), 0, Integer.MAX_VALUE);
+        }
+        for (String binName : suggestBins) {
+            switch (record.getValue(binName)) {
+                case String text when !text.isBlank() -> weights.merge(text, weight, Math::max);
+                case List<?> values -> {
+                    for (Object value : values) {
+                        if (value instanceof String text && !text.isBlank()) {
+                            weights.merge(text, weight, Math::max);
+                        }
+                    }
+                }
+                case null, default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the suggester. The FST lives on heap, lookups do not touch the index or Aerospike.
+     */
+    public Lookup build(Analyzer analyzer) throws IOException {
+        // Sorting during the build spills to a temporary directory
+        try (ByteBuffersDirectory tempDir = new ByteBuffersDirectory()) {
+            AnalyzingSuggester suggester = fuzzy
+                    ? new FuzzySuggester(tempDir, "suggest", analyzer)
+                    : new AnalyzingSuggester(tempDir, "suggest", analyzer);
+            suggester.build(new WeightedInputIterator(weights.entrySet().iterator()));
+            return suggester;
+        }
+    }
+
+    private static class WeightedInputIterator implements InputIterator {
+
+        private final Iterator<Map.Entry<String, Long>> entries;
+        private long weight;
+
+        private WeightedInputIterator(Iterator<Map.Entry<String, Long>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public BytesRef next() {
+            if (!entries.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, Long> entry = entries.next();
+            weight = entry.getValue();
+            return new BytesRef(entry.getKey());
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
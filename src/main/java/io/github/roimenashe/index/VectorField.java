@@ -0,0 +1,115 @@
+package io.github.roimenashe.index;
+
+import com.aerospike.client.Record;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.util.VectorUtil;
+import org.apache.lucene.index.VectorSimilarityFunction;
+
+import java.util.function.Function;
+
+/**
+ * A named vector field of a set's vector index. Several fields (bins or embedders) share the documents of one index.
+ * <p>
+ * COSINE fields are normalized at ingest and stored with dot-product scoring. Fields whose stored vectors are unit
+ * length can also be queried under other similarity functions, since cosine, dot-product and euclidean
+ * rankings coincide on unit vectors.
+ */
+public class VectorField {
+
+    private final String name;
+    private final SimilarityFunction similarityFunction;
+    private final Function<Record, float[]> extractor;
+    private final String[] binNames;
+    private final IndexOptions options;
+    private final boolean embedded;
+    private volatile boolean unitLength;
+
+    public VectorField(String name, SimilarityFunction similarityFunction, Function<Record, float[]> extractor,
+                       String[] binNames, IndexOptions options, boolean embedded) {
+        this.name = name;
+        this.similarityFunction = similarityFunction;
+        this.extractor = extractor;
+        this.binNames = binNames;
+        this.options = options;
+        this.embedded = embedded;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SimilarityFunction getSimilarityFunction() {
+        return similarityFunction;
+    }
+
+    public Function<Record, float[]> getExtractor() {
+        return extractor;
+    }
+
+    /**
+     * Bins read by the extractor, empty if it needs all bins.
+     */
+    public String[] getBinNames() {
+        return binNames;
+    }
+
+    public IndexOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Whether vectors are computed by an embedder rather than read from a bin.
+     */
+    public boolean isEmbedded() {
+        return embedded;
+    }
+
+    /**
+     * Name of the Lucene KNN field.
+     */
+    public String getLuceneField() {
+        return name + ":" + similarityFunction.name();
+    }
+
+    /**
+     * Whether vectors are normalized at ingest. Truncated fields keep raw prefixes, which are not unit length anyway.
+     */
+    public boolean isNormalized() {
+        return similarityFunction == SimilarityFunction.COSINE && !options.isTruncated();
+    }
+
+    public VectorSimilarityFunction getStoredSimilarity() {
+        if (isNormalized()) {
+            // Dot product equals cosine on unit vectors, and is cheaper to compute
+            return VectorSimilarityFunction.DOT_PRODUCT;
+        }
+        return VectorUtil.getVectorSimilarityFunction(similarityFunction);
+    }
+
+    /**
+     * Whether all vectors ingested by the last build were already unit length.
+     */
+    public boolean isUnitLength() {
+        return unitLength;
+    }
+
+    void setUnitLength(boolean unitLength) {
+        this.unitLength = unitLength;
+    }
+
+    /**
+     * Whether this field can answer queries under the given similarity function with the correct ranking.
+     */
+    public boolean canServe(SimilarityFunction requested) {
+        if (requested == similarityFunction) {
+            return true;
+        }
+        if (options.isTruncated()) {
+            return false;
+        }
+        boolean storesUnitVectors = isNormalized() || unitLength;
+        // Cosine only needs unit stored vectors, dot-product and euclidean need the raw vectors to be unit length
+        return storesUnitVectors && (requested == SimilarityFunction.COSINE || unitLength);
+    }
+}
@@ -2,8 +2,16 @@ package io.github.roimenashe.index;
 
 import com.aerospike.client.Key;
 import com.aerospike.client.Record;
+import com.aerospike.client.query.PartitionFilter;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.IndexSpec;
 import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.SortBy;
 import io.github.roimenashe.storage.AerospikeConnection;
+import io.github.roimenashe.util.ExpirationUtil;
+import io.github.roimenashe.util.FacetUtil;
+import io.github.roimenashe.util.SegmentUtil;
+import io.github.roimenashe.util.SortUtil;
 import io.github.roimenashe.util.VectorUtil;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -12,39 +20,593 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.Directory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
-import static io.github.roimenashe.util.VectorUtil.getVectorSimilarityFunction;
-
 public class VectorIndexer implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(VectorIndexer.class);
+    private static final int REPAIR_BATCH_SIZE = 1000;
 
     private final AerospikeConnection aerospikeConnection;
-    private final Map<String, Directory> directories = new ConcurrentHashMap<>();
-    private final Map<String, IndexWriter> writers = new ConcurrentHashMap<>();
-    private final Map<String, IndexSearcher> searchers = new ConcurrentHashMap<>();
+    private final IndexDirectoryFactory directoryFactory;
+    private final IndexStore store;
+    private final BuildCheckpointer checkpointer;
+    private final EmbeddingCache embeddingCache;
+    private final FullVectorStore fullVectors;
+    private final Map<String, Map<String, VectorField>> vectorFields = new ConcurrentHashMap<>();
+    private final Map<String, SortBy> indexSorts = new ConcurrentHashMap<>();
+    private volatile SearcherWarmer searcherWarmer = (namespace, set, searcher) -> {
+    };
 
     public VectorIndexer(AerospikeConnection aerospikeConnection) {
+        this(aerospikeConnection, new IndexDirectoryFactory(), new IndexMemoryManager());
+    }
+
+    public VectorIndexer(AerospikeConnection aerospikeConnection, IndexDirectoryFactory directoryFactory,
+                         IndexMemoryManager memoryManager) {
+        this(aerospikeConnection, directoryFactory, memoryManager, new BuildCheckpointer());
+    }
+
+    public VectorIndexer(AerospikeConnection aerospikeConnection, IndexDirectoryFactory directoryFactory,
+                         IndexMemoryManager memoryManager, BuildCheckpointer checkpointer) {
+        this(aerospikeConnection, directoryFactory, memoryManager, checkpointer, new EmbeddingCache());
+    }
+
+    public VectorIndexer(AerospikeConnection aerospikeConnection, IndexDirectoryFactory directoryFactory,
+                         IndexMemoryManager memoryManager, BuildCheckpointer checkpointer, EmbeddingCache embeddingCache) {
         this.aerospikeConnection = aerospikeConnection;
+        this.directoryFactory = directoryFactory;
+        this.store = new IndexStore(directoryFactory, memoryManager, IndexWriterConfig::new);
+        this.checkpointer = checkpointer;
+        this.embeddingCache = embeddingCache;
+        this.fullVectors = new FullVectorStore(directoryFactory);
     }
 
     public void createVectorIndex(String namespace, String set, String vectorBinName,
                                   SimilarityFunction similarityFunction) throws Exception {
-        Function<Record, float[]> extractor = record -> {
+        createVectorIndex(namespace, set, vectorBinName, similarityFunction, IndexOptions.defaults());
+    }
+
+    public void createVectorIndex(String namespace, String set, String vectorBinName,
+                                  SimilarityFunction similarityFunction, IndexOptions options) throws Exception {
+        long count = createVectorIndex(namespace, set, IndexSpec.vector(vectorBinName, similarityFunction).setOptions(options));
+        log.info("Vector-indexed {} records (from bin '{}') for [{}:{}]", count, vectorBinName, namespace, set);
+    }
+
+    /**
+     * Scans Aerospike records, computes vector embeddings via the supplied embedder,
+     * and builds an in-memory Lucene vector index.
+     */
+    public void createVectorIndex(String namespace, String set,
+                                  Function<Record, float[]> embedder, SimilarityFunction similarityFunction) throws Exception {
+        createVectorIndex(namespace, set, embedder, similarityFunction, IndexOptions.defaults());
+    }
+
+    public void createVectorIndex(String namespace, String set, Function<Record, float[]> embedder,
+                                  SimilarityFunction similarityFunction, IndexOptions options) throws Exception {
+        long count = createVectorIndex(namespace, set, IndexSpec.vector(embedder, similarityFunction).setOptions(options));
+        log.info("Vector-indexed {} records for [{}:{}]", count, namespace, set);
+    }
+
+    /**
+     * Adds or replaces a vector field of the set's vector index and rebuilds the index. The index's other fields
+     * keep the vectors of the records unchanged since they were indexed, only the field of the spec is extracted
+     * (embedded) for every record.
+     *
+     * @return Number of indexed records
+     */
+    public long createVectorIndex(String namespace, String set, IndexSpec spec) throws Exception {
+        return build(namespace, set, List.of(spec), Set.of());
+    }
+
+    /**
+     * Removes a vector field from the set's vector index, rebuilding the index with its other fields, which keep
+     * the vectors of the records unchanged since they were indexed. The index is dropped with its last field.
+     *
+     * @return Number of indexed records
+     */
+    public long dropVectorField(String namespace, String set, String fieldName) throws Exception {
+        String key = VectorUtil.getUniqueVectorIndexName(namespace, set);
+        Collection<VectorField> fields = vectorFields.getOrDefault(key, Map.of()).values();
+        if (fields.stream().noneMatch(field -> field.getName().equals(fieldName))) {
+            throw new IllegalArgumentException("No vector field " + fieldName + " in the vector index of " + namespace + "." + set);
+        }
+        if (fields.stream().allMatch(field -> field.getName().equals(fieldName))) {
+            store.drop(key);
+            vectorFields.remove(key).values().forEach(fullVectors::remove);
+            indexSorts.remove(key);
+            log.info("Dropped vector index [{}] with its last field '{}'", key, fieldName);
+            return 0;
+        }
+        return build(namespace, set, List.of(), Set.of(fieldName));
+    }
+
+    private long build(String namespace, String set, List<IndexSpec> specs, Set<String> droppedFields) throws Exception {
+        IndexBuilder builder = newIndexBuilder(namespace, set, specs, droppedFields, checkpointer.isEnabled());
+        try {
+            checkpointer.scan(aerospikeConnection, namespace, set, builder);
+        } catch (RuntimeException e) {
+            builder.abort();
+            throw e;
+        }
+        return builder.commit();
+    }
+
+    /**
+     * Prepares a rebuild of the set's vector index with the vector fields described by the specs added or replaced,
+     * to be fed by a scan of the set. The index's other fields keep the vectors of the records unchanged since they
+     * were indexed.
+     */
+    public IndexBuilder newIndexBuilder(String namespace, String set, List<IndexSpec> specs) throws IOException {
+        return newIndexBuilder(namespace, set, specs, Set.of(), false);
+    }
+
+    /**
+     * @param droppedFields Names of the fields the build removes from the index
+     * @param resumable     Whether the build is fed by a checkpointed scan. A resumable build continues the last
+     *                      unfinished build of the same fields instead of starting over.
+     */
+    private IndexBuilder newIndexBuilder(String namespace, String set, List<IndexSpec> specs, Set<String> droppedFields,
+                                         boolean resumable) throws IOException {
+        String key = VectorUtil.getUniqueVectorIndexName(namespace, set);
+        store.beginBuild(key);
+        IndexedVectors indexedVectors = null;
+        try {
+            // Fields are resolved under the build permit, and registered only once the build commits
+            Map<String, VectorField> current = vectorFields.getOrDefault(key, Map.of());
+            Map<String, VectorField> fields = resolveFields(current, specs, droppedFields);
+            // Sort options apply to the whole index, the latest spec setting an index sort wins
+            SortBy indexSort = specs.stream()
+                    .map(spec -> spec.getOptions().getIndexSort())
+                    .filter(Objects::nonNull)
+                    .reduce((first, second) -> second)
+                    .orElse(indexSorts.get(key));
+            // Segment options apply to the whole index as well, the latest spec's options win
+            IndexOptions segmentOptions = specs.isEmpty() ? IndexOptions.defaults() : specs.getLast().getOptions();
+
+            Set<VectorField> keptFields = new HashSet<>(fields.values());
+            keptFields.retainAll(current.values());
+            if (!keptFields.isEmpty()) {
+                IndexSearcher searcher = store.acquire(key);
+                if (searcher != null) {
+                    indexedVectors = new IndexedVectors(searcher, keptFields);
+                }
+            }
+            return prepareBuild(namespace, set, key, fields, indexSort, indexedVectors, segmentOptions, resumable);
+        } catch (IOException | RuntimeException e) {
+            release(key, indexedVectors);
+            store.rollback(key);
+            store.endBuild(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Prepares the build of an index pinned by the caller.
+     *
+     * @param fields         All fields of the index once the build commits
+     * @param indexedVectors Vectors reused by the fields that are not rebuilt, null if there are none
+     */
+    private IndexBuilder prepareBuild(String namespace, String set, String key, Map<String, VectorField> fields,
+                                      SortBy sortBy, IndexedVectors indexedVectors, IndexOptions segmentOptions,
+                                      boolean resumable) throws IOException {
+        Collection<VectorField> fieldList = fields.values();
+        Sort indexSort = SortUtil.toSort(sortBy);
+        Set<String> sortableBins = getSortableBins(fieldList, sortBy);
+        Set<String> facetBins = getFacetBins(fieldList);
+
+        store.discardSpill(key);
+        store.releaseOnSortChange(key, indexSort);
+        Directory directory = store.openDirectory(key, () -> resumable ? checkpointer.restore(key, directoryFactory) : null);
+        IndexWriter writer = store.openWriter(key, indexSort);
+        SegmentUtil.applySegmentOptions(writer, segmentOptions);
+
+        String signature = BuildCheckpointer.signature(aerospikeConnection.getPartitionRange(),
+                fields.keySet(), sortableBins, facetBins);
+        PartitionFilter resumeProgress = resumable ? checkpointer.getProgress(directory, signature) : null;
+        AtomicLong count = new AtomicLong();
+        if (resumeProgress != null) {
+            count.set(writer.getDocStats().numDocs);
+            log.info("Resuming build of [{}] after {} records", key, count.get());
+        } else {
+            writer.deleteAll();
+            if (resumable) {
+                checkpointer.discard(key);
+            }
+        }
+        // Vectors indexed before a resume were not inspected, so they are not assumed to be unit length
+        Map<VectorField, FieldStats> stats = new HashMap<>();
+        fieldList.forEach(field -> stats.put(field, new FieldStats(resumeProgress == null)));
+        AtomicBoolean ended = new AtomicBoolean();
+
+        return new IndexBuilder() {
+            @Override
+            public String[] getBinNames() {
+                return VectorIndexer.getBinNames(fieldList, sortableBins, facetBins);
+            }
+
+            @Override
+            public void scanCallback(Key akey, Record record) {
+                try {
+                    Document doc = createDocument(key, akey, record, fieldList, sortableBins, facetBins, stats,
+                            indexedVectors);
+                    if (doc == null) return;
+
+                    synchronized (writer) {
+                        if (resumable) {
+                            // Records indexed after the last checkpoint are scanned again on resume
+                            writer.updateDocument(new Term("id", doc.get("id")), doc);
+                        } else {
+                            writer.addDocument(doc);
+                        }
+                        count.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public PartitionFilter getResumeProgress() {
+                return resumeProgress;
+            }
+
+            @Override
+            public void checkpoint(PartitionFilter progress) throws IOException {
+                if (resumable) {
+                    checkpointer.checkpoint(key, writer, directory, progress, signature);
+                }
+            }
+
+            @Override
+            public long commit() throws IOException {
+                if (!ended.compareAndSet(false, true)) {
+                    throw new IllegalStateException("Build of [" + key + "] already committed or aborted");
+                }
+                try {
+                    embeddingCache.flush();
+                    checkpointer.complete(key, writer);
+                    SegmentUtil.forceMerge(key, writer, segmentOptions);
+                    writer.commit();
+                    DirectoryReader reader = DirectoryReader.open(writer);
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    // Queries keep using the previous searcher while the new one warms up
+                    searcherWarmer.warm(namespace, set, searcher);
+                    store.publish(key, searcher);
+                    Map<String, VectorField> committed = new ConcurrentHashMap<>(fields);
+                    if (resumeProgress == null && count.get() > 0) {
+                        // A field without any vector cannot answer queries, unless the whole set is empty
+                        committed.values().removeIf(field -> stats.get(field).vectors.get() == 0);
+                        fields.values().stream()
+                                .filter(field -> !committed.containsValue(field))
+                                .forEach(field -> log.info("Vector field {} of [{}] has no vectors, removed",
+                                        field.getName(), key));
+                    }
+                    stats.forEach((field, fieldStats) -> field.setUnitLength(fieldStats.unitLength.get()
+                            && fieldStats.vectors.get() > 0));
+                    Map<String, VectorField> previous = vectorFields.put(key, committed);
+                    // Full vectors of the replaced, dropped and removed fields are no longer reranked with
+                    if (previous != null) {
+                        previous.values().stream().filter(field -> !committed.containsValue(field)).forEach(fullVectors::remove);
+                    }
+                    fields.values().stream().filter(field -> !committed.containsValue(field)).forEach(fullVectors::remove);
+                    if (sortBy != null) {
+                        indexSorts.put(key, sortBy);
+                    }
+                    return count.get();
+                } catch (IOException | RuntimeException e) {
+                    abandon();
+                    throw e;
+                } finally {
+                    release(key, indexedVectors);
+                    store.endBuild(key);
+                }
+            }
+
+            @Override
+            public void abort() {
+                if (ended.compareAndSet(false, true)) {
+                    abandon();
+                    release(key, indexedVectors);
+                    store.endBuild(key);
+                }
+            }
+
+            private void abandon() {
+                // A checkpointed build is resumed by the next build rather than rolled back
+                if (resumable) {
+                    store.suspend(key);
+                } else {
+                    store.rollback(key);
+                }
+                Map<String, VectorField> registered = vectorFields.getOrDefault(key, Map.of());
+                fields.values().stream().filter(field -> !registered.containsValue(field)).forEach(fullVectors::remove);
+            }
+        };
+    }
+
+    /**
+     * Releases the searcher of the reused vectors of a build.
+     */
+    private void release(String key, IndexedVectors indexedVectors) {
+        if (indexedVectors == null) return;
+        try {
+            store.release(indexedVectors.getSearcher());
+        } catch (IOException e) {
+            log.warn("Failed to release the searcher of index [{}]", key, e);
+        }
+    }
+
+    /**
+     * Creates the document of a record with a vector in at least one of the fields, null otherwise.
+     *
+     * @param key            Name of the index
+     * @param stats          Vectors seen of each field, updated with the record's vectors
+     * @param indexedVectors Vectors reused by the fields that are not rebuilt, null if there are none
+     */
+    private Document createDocument(String key, Key akey, Record record, Collection<VectorField> fields, Set<String> sortableBins,
+                                    Set<String> facetBins, Map<VectorField, FieldStats> stats,
+                                    IndexedVectors indexedVectors) throws IOException {
+        Document doc = null;
+        for (VectorField field : fields) {
+            float[] vector = indexedVectors == null ? null : indexedVectors.get(field, akey.digest, record.generation);
+            boolean reused = vector != null;
+            if (!reused) {
+                vector = extractVector(key, field, akey, record);
+            }
+            if (vector == null) continue;
+
+            if (doc == null) {
+                doc = new Document();
+                String encodedId = Base64.getEncoder().encodeToString(akey.digest);
+                doc.add(new StringField("id", encodedId, Field.Store.YES));
+                ExpirationUtil.addVoidTime(doc, record);
+                DigestTable.addGeneration(doc, record);
+                SortUtil.addSortableValues(doc, record, sortableBins);
+                FacetUtil.addFacetValues(doc, record, facetBins, sortableBins);
+            }
+            FieldStats fieldStats = stats.get(field);
+            fieldStats.vectors.incrementAndGet();
+            // Indexed vectors of normalized and truncated fields do not tell whether the ingested ones were unit
+            // length, the flag of the build that ingested them does
+            boolean unit = reused && (field.isNormalized() || field.getOptions().isTruncated())
+                    ? field.isUnitLength()
+                    : VectorUtil.isUnitLength(vector);
+            if (!unit) {
+                fieldStats.unitLength.set(false);
+            }
+            if (field.getOptions().isTruncated()) {
+                // Graph is built on the vector prefix, searches rerank with the full vectors kept next to the index.
+                // Reused prefixes have their full vector stored already, by the build that indexed them.
+                if (!reused) {
+                    fullVectors.put(field, akey.digest, record.generation, vector);
+                }
+                float[] prefix = Arrays.copyOf(vector, Math.min(vector.length, field.getOptions().getTruncatedDimensions()));
+                doc.add(new KnnFloatVectorField(field.getLuceneField(), prefix, field.getStoredSimilarity()));
+            } else {
+                float[] stored = field.isNormalized() ? VectorUtil.normalize(vector) : vector;
+                doc.add(new KnnFloatVectorField(field.getLuceneField(), stored, field.getStoredSimilarity()));
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Vector of a field for a record, null if it has none. Embeddings of records unchanged since they were last
+     * embedded are reused, bin vectors are cheap to read.
+     */
+    private float[] extractVector(String key, VectorField field, Key akey, Record record) {
+        return field.isEmbedded()
+                ? embeddingCache.get(key + ":" + field.getName(), akey.digest, record.generation,
+                () -> field.getExtractor().apply(record))
+                : field.getExtractor().apply(record);
+    }
+
+    /**
+     * Bins read by the fields, plus the sortable and facet bins. Empty if any field needs all bins.
+     */
+    private static String[] getBinNames(Collection<VectorField> fields, Set<String> sortableBins, Set<String> facetBins) {
+        Set<String> binNames = new LinkedHashSet<>();
+        for (VectorField field : fields) {
+            if (field.getBinNames().length == 0) {
+                return new String[0];
+            }
+            binNames.addAll(List.of(field.getBinNames()));
+        }
+        binNames.addAll(sortableBins);
+        binNames.addAll(facetBins);
+        return binNames.toArray(String[]::new);
+    }
+
+    private static Set<String> getSortableBins(Collection<VectorField> fields, SortBy indexSort) {
+        Set<String> sortableBins = new LinkedHashSet<>();
+        fields.forEach(field -> sortableBins.addAll(field.getOptions().getSortableBins()));
+        if (indexSort != null) {
+            sortableBins.add(indexSort.getBinName());
+        }
+        return sortableBins;
+    }
+
+    private static Set<String> getFacetBins(Collection<VectorField> fields) {
+        Set<String> facetBins = new LinkedHashSet<>();
+        fields.forEach(field -> facetBins.addAll(field.getOptions().getFacetBins()));
+        return facetBins;
+    }
+
+    /**
+     * Full vectors of a truncated field, whose index only holds their prefixes, in the order of the keys, with
+     * null for records without one at the generation they were indexed at. Vectors are read locally from the full
+     * vectors stored by the build, without Aerospike reads. Records not stored there (e.g. indexed before a
+     * resumed build) cost one batch read for all of them, records written since they were indexed are left out,
+     * and embedded fields embed them again (through the embedding cache when enabled).
+     *
+     * @param generations Generations the records were indexed at
+     */
+    public float[][] readFullVectors(VectorField field, List<Key> keys, long[] generations) {
+        float[][] vectors = new float[keys.size()][];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = fullVectors.get(field, keys.get(i).digest, (int) generations[i]);
+            if (vectors[i] == null) {
+                misses.add(i);
+            }
+        }
+        if (misses.isEmpty()) {
+            return vectors;
+        }
+
+        Record[] records = aerospikeConnection.fetchRecordArrayByKeys(misses.stream().map(keys::get).toList(),
+                field.getBinNames());
+        for (int j = 0; j < records.length; j++) {
+            int i = misses.get(j);
+            if (records[j] == null || records[j].generation != generations[i]) continue;
+            Key key = keys.get(i);
+            vectors[i] = extractVector(VectorUtil.getUniqueVectorIndexName(key.namespace, key.setName), field, key, records[j]);
+        }
+        return vectors;
+    }
+
+    /**
+     * Digests of the set's records in its vector index, with the generation and void-time they were indexed at.
+     */
+    public DigestTable readDigests(String namespace, String set) throws IOException {
+        IndexSearcher searcher = acquireSearcher(namespace, set);
+        if (searcher == null) {
+            throw new IllegalStateException("Vector index not built yet. Call createVectorIndex() first.");
+        }
+        try {
+            return DigestTable.read(searcher.getIndexReader(), null);
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Records of the set a build would index, those that exist and have a vector in at least one field. Records are
+     * read in batches of their vector bins; embedded fields embed them through the embedding cache, so a following
+     * repair reuses the embeddings.
+     */
+    public List<Key> filterIndexable(String namespace, String set, List<Key> keys) throws IOException {
+        String key = VectorUtil.getUniqueVectorIndexName(namespace, set);
+        List<VectorField> fields = new ArrayList<>(vectorFields.getOrDefault(key, Map.of()).values());
+        String[] binNames = getBinNames(fields, Set.of(), Set.of());
+        List<Key> indexable = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += REPAIR_BATCH_SIZE) {
+            List<Key> batch = keys.subList(from, Math.min(keys.size(), from + REPAIR_BATCH_SIZE));
+            Record[] records = aerospikeConnection.fetchRecordArrayByKeys(batch, binNames);
+            for (int i = 0; i < records.length; i++) {
+                if (records[i] == null) continue;
+                for (VectorField field : fields) {
+                    if (extractVector(key, field, batch.get(i), records[i]) != null) {
+                        indexable.add(batch.get(i));
+                        break;
+                    }
+                }
+            }
+        }
+        return indexable;
+    }
+
+    /**
+     * Re-indexes single records of the set with the current vector fields (embedding only those records)
+     * and deletes the documents of others, then swaps in a new searcher.
+     *
+     * @param reindex Records to index again, those that no longer exist or have no vector are deleted
+     * @param delete  Records to delete from the index
+     */
+    public void repair(String namespace, String set, List<Key> reindex, List<Key> delete) throws IOException {
+        String key = VectorUtil.getUniqueVectorIndexName(namespace, set);
+        if (!store.exists(key)) {
+            throw new IllegalStateException("Vector index not built yet. Call createVectorIndex() first.");
+        }
+        List<VectorField> fields = new ArrayList<>(vectorFields.getOrDefault(key, Map.of()).values());
+        Set<String> sortableBins = getSortableBins(fields, indexSorts.get(key));
+        Set<String> facetBins = getFacetBins(fields);
+        String[] binNames = getBinNames(fields, sortableBins, facetBins);
+        Map<VectorField, FieldStats> stats = new HashMap<>();
+        fields.forEach(field -> stats.put(field, new FieldStats(true)));
+
+        store.update(key, writer -> {
+            for (int from = 0; from < reindex.size(); from += REPAIR_BATCH_SIZE) {
+                List<Key> batch = reindex.subList(from, Math.min(reindex.size(), from + REPAIR_BATCH_SIZE));
+                Record[] records = aerospikeConnection.fetchRecordArrayByKeys(batch, binNames);
+                for (int i = 0; i < records.length; i++) {
+                    Term id = new Term("id", Base64.getEncoder().encodeToString(batch.get(i).digest));
+                    Document doc = records[i] == null ? null
+                            : createDocument(key, batch.get(i), records[i], fields, sortableBins, facetBins, stats, null);
+                    if (doc == null) {
+                        writer.deleteDocuments(id);
+                    } else {
+                        writer.updateDocument(id, doc);
+                    }
+                }
+            }
+            for (Key deleted : delete) {
+                writer.deleteDocuments(new Term("id", Base64.getEncoder().encodeToString(deleted.digest)));
+            }
+        });
+        stats.forEach((field, fieldStats) -> {
+            if (!fieldStats.unitLength.get()) {
+                field.setUnitLength(false);
+            }
+        });
+    }
+
+    /**
+     * Fields of the index once a build commits: the current fields without the dropped ones, plus the fields of the
+     * specs, by Lucene field name. A spec for a similarity function that an existing field of the same name already
+     * serves replaces that field's definition instead of storing the vectors a second time.
+     */
+    private static Map<String, VectorField> resolveFields(Map<String, VectorField> current, List<IndexSpec> specs,
+                                                          Set<String> droppedFields) {
+        Map<String, VectorField> fields = new ConcurrentHashMap<>(current);
+        fields.values().removeIf(field -> droppedFields.contains(field.getName()));
+        for (IndexSpec spec : specs) {
+            VectorField field = new VectorField(spec.getFieldName(), spec.getSimilarityFunction(),
+                    getExtractor(spec), spec.getBinNames(), spec.getOptions(), spec.getEmbedder() != null);
+            VectorField existing = spec.getOptions().isTruncated() ? null : fields.values().stream()
+                    .filter(f -> f.getName().equals(field.getName()) && f.canServe(field.getSimilarityFunction()))
+                    .findFirst()
+                    .orElse(null);
+            if (existing != null && existing.getSimilarityFunction() != field.getSimilarityFunction()) {
+                VectorField shared = new VectorField(existing.getName(), existing.getSimilarityFunction(),
+                        field.getExtractor(), field.getBinNames(), existing.getOptions(), field.isEmbedded());
+                fields.put(shared.getLuceneField(), shared);
+            } else {
+                fields.put(field.getLuceneField(), field);
+            }
+        }
+        return fields;
+    }
+
+    private static Function<Record, float[]> getExtractor(IndexSpec spec) {
+        if (spec.getEmbedder() != null) {
+            return spec.getEmbedder();
+        }
+        String vectorBinName = spec.getVectorBin();
+        return record -> {
             Object raw = record.getValue(vectorBinName);
             switch (raw) {
                 case null -> {
@@ -65,87 +627,131 @@ public class VectorIndexer implements AutoCloseable {
             }
             return null;
         };
-
-        long count = buildVectorIndex(namespace, set, similarityFunction, extractor, vectorBinName);
-        log.info("Vector-indexed {} records (from bin '{}') for [{}:{}]", count, vectorBinName, namespace, set);
     }
 
     /**
-     * Scans Aerospike records, computes vector embeddings via the supplied embedder,
-     * and builds an in-memory Lucene vector index.
+     * Resolves the vector field answering a query.
+     *
+     * @param fieldName          Optional vector field name, required only when several fields serve the similarity function
+     * @param similarityFunction Similarity function of the query
      */
-    public void createVectorIndex(String namespace, String set,
-                                  Function<Record, float[]> embedder, SimilarityFunction similarityFunction) throws Exception {
-        long count = buildVectorIndex(namespace, set, similarityFunction, embedder);
-        log.info("Vector-indexed {} records for [{}:{}]", count, namespace, set);
-    }
-
-    private long buildVectorIndex(String namespace, String set, SimilarityFunction similarityFunction,
-                                  Function<Record, float[]> vectorExtractor, String... binNames) throws Exception {
-        String key = VectorUtil.getUniqueVectorIndexName(namespace, set, similarityFunction);
-
-        Directory directory = directories.computeIfAbsent(key, k -> new ByteBuffersDirectory());
-        IndexWriter writer = writers.computeIfAbsent(key, k -> {
-            try {
-                return new IndexWriter(directory, new IndexWriterConfig());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
-
-        writer.deleteAll();
-        AtomicLong count = new AtomicLong();
+    public VectorField resolveField(String namespace, String set, String fieldName, SimilarityFunction similarityFunction) {
+        Map<String, VectorField> fields = vectorFields.getOrDefault(VectorUtil.getUniqueVectorIndexName(namespace, set), Map.of());
+        List<VectorField> candidates = fields.values().stream()
+                .filter(f -> fieldName == null || f.getName().equals(fieldName))
+                .toList();
 
-        aerospikeConnection.scan(namespace, set, (Key akey, Record record) -> {
-            float[] vector = vectorExtractor.apply(record);
-            if (vector == null) return;
+        // Prefer fields built for this similarity function, then fields that can serve it
+        List<VectorField> matches = candidates.stream()
+                .filter(f -> f.getSimilarityFunction() == similarityFunction)
+                .toList();
+        if (matches.isEmpty()) {
+            matches = candidates.stream().filter(f -> f.canServe(similarityFunction)).toList();
+        }
+        if (matches.isEmpty()) {
+            throw new IllegalStateException("Vector index not built for similarityFunction: " + similarityFunction
+                    + (fieldName == null ? "" : " and vector field: " + fieldName));
+        }
+        if (matches.stream().map(VectorField::getName).distinct().count() > 1) {
+            throw new IllegalArgumentException("Several vector fields serve similarityFunction " + similarityFunction
+                    + ", specify the vector field to search");
+        }
+        return matches.getFirst();
+    }
 
-            Document doc = new Document();
-            String encodedId = Base64.getEncoder().encodeToString(akey.digest);
-            doc.add(new StringField("id", encodedId, Field.Store.YES));
-            doc.add(new KnnFloatVectorField("vector", vector, getVectorSimilarityFunction(similarityFunction)));
+    /**
+     * Resolves a vector field by name, or the set's only vector field, for queries made of an indexed vector.
+     *
+     * @param fieldName Optional vector field name, required only when the set has several vector fields
+     */
+    public VectorField resolveField(String namespace, String set, String fieldName) {
+        Map<String, VectorField> fields = vectorFields.getOrDefault(VectorUtil.getUniqueVectorIndexName(namespace, set), Map.of());
+        List<VectorField> matches = fields.values().stream()
+                .filter(f -> fieldName == null || f.getName().equals(fieldName))
+                .toList();
+        if (matches.isEmpty()) {
+            throw new IllegalStateException("Vector index not built" + (fieldName == null ? "" : " for vector field: " + fieldName));
+        }
+        if (matches.stream().map(VectorField::getName).distinct().count() > 1) {
+            throw new IllegalArgumentException("Several vector fields in set " + set + ", specify the vector field to search");
+        }
+        return matches.getFirst();
+    }
 
-            synchronized (writer) {
-                try {
-                    writer.addDocument(doc);
-                    count.incrementAndGet();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        }, binNames);
+    /**
+     * Deletes the documents of expired records from all resident indexes. Evicted indexes are swept after reload.
+     *
+     * @return Number of deleted documents
+     */
+    public int deleteExpired() throws IOException {
+        return store.deleteExpired();
+    }
 
-        writer.commit();
-        closeOldSearcher(key);
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        searchers.put(key, searcher);
+    /**
+     * Warms rebuilt indexes before they replace the current ones.
+     */
+    public void setSearcherWarmer(SearcherWarmer searcherWarmer) {
+        this.searcherWarmer = searcherWarmer;
+    }
 
-        return count.get();
+    public Set<String> listVectorIndexes() {
+        return store.listIndexes();
     }
 
-    private void closeOldSearcher(String key) throws IOException {
-        IndexSearcher oldSearcher = searchers.get(key);
-        if (oldSearcher != null) {
-            oldSearcher.getIndexReader().close();
+    /**
+     * Number of segments of an index, each searched separately by queries.
+     */
+    public int getSegmentCount(String namespace, String set) throws IOException {
+        IndexSearcher searcher = acquireSearcher(namespace, set);
+        if (searcher == null) {
+            throw new IllegalStateException("No vector index for " + namespace + "." + set);
+        }
+        try {
+            return searcher.getIndexReader().leaves().size();
+        } finally {
+            releaseSearcher(searcher);
         }
     }
 
-    public Set<String> listVectorIndexes() {
-        return directories.keySet();
+    /**
+     * Memory used by each index in bytes, on or off heap depending on the storage mode.
+     */
+    public Map<String, Long> getIndexSizes() {
+        return store.getIndexSizes();
     }
 
-    public IndexSearcher getIndexSearcher(String namespace, String set, SimilarityFunction similarityFunction) {
-        return searchers.get(VectorUtil.getUniqueVectorIndexName(namespace, set, similarityFunction));
+    /**
+     * Searcher of the set's vector index, reloaded if the index was evicted, null if it is not built.
+     * The searcher must be released with {@link #releaseSearcher} once the query is done, it stays open until then
+     * even if the index is rebuilt or evicted meanwhile.
+     */
+    public IndexSearcher acquireSearcher(String namespace, String set) {
+        return store.acquire(VectorUtil.getUniqueVectorIndexName(namespace, set));
+    }
+
+    /**
+     * Releases a searcher from {@link #acquireSearcher}, or a searcher over the same reader.
+     */
+    public void releaseSearcher(IndexSearcher searcher) throws IOException {
+        store.release(searcher);
     }
 
     @Override
     public void close() throws IOException {
-        for (IndexWriter writer : writers.values()) {
-            writer.close();
-        }
-        for (Directory directory : directories.values()) {
-            directory.close();
+        store.close();
+        embeddingCache.close();
+        fullVectors.close();
+    }
+
+    /**
+     * Vectors of a field seen by a build or repair.
+     */
+    private static final class FieldStats {
+        final AtomicBoolean unitLength;
+        final AtomicLong vectors = new AtomicLong();
+
+        FieldStats(boolean unitLength) {
+            this.unitLength = new AtomicBoolean(unitLength);
         }
     }
 }
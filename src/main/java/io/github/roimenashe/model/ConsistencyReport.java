@@ -0,0 +1,81 @@
+package io.github.roimenashe.model;
+
+import com.aerospike.client.Key;
+
+import java.util.List;
+
+/**
+ * Differences between an index and its set, found by comparing the digests of the index with a digest-only scan.
+ * Keys of extra documents carry the digest only, their records no longer exist.
+ */
+public class ConsistencyReport {
+
+    private final long indexed;
+    private final long scanned;
+    private final List<Key> missing;
+    private final List<Key> extra;
+    private final List<Key> stale;
+    private final boolean repaired;
+
+    public ConsistencyReport(long indexed, long scanned, List<Key> missing, List<Key> extra, List<Key> stale,
+                             boolean repaired) {
+        this.indexed = indexed;
+        this.scanned = scanned;
+        this.missing = missing;
+        this.extra = extra;
+        this.stale = stale;
+        this.repaired = repaired;
+    }
+
+    /**
+     * Number of documents in the index.
+     */
+    public long getIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Number of records in the set.
+     */
+    public long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * Records of the set without a document in the index.
+     */
+    public List<Key> getMissing() {
+        return List.copyOf(missing);
+    }
+
+    /**
+     * Documents of the index whose record no longer exists.
+     */
+    public List<Key> getExtra() {
+        return List.copyOf(extra);
+    }
+
+    /**
+     * Records written or touched (new generation or TTL) since they were indexed.
+     */
+    public List<Key> getStale() {
+        return List.copyOf(stale);
+    }
+
+    /**
+     * Whether the differences were repaired.
+     */
+    public boolean isRepaired() {
+        return repaired;
+    }
+
+    public boolean isConsistent() {
+        return missing.isEmpty() && extra.isEmpty() && stale.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistencyReport{indexed=" + indexed + ", scanned=" + scanned + ", missing=" + missing.size()
+                + ", extra=" + extra.size() + ", stale=" + stale.size() + ", repaired=" + repaired + '}';
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.roimenashe.model;
+
+public enum EvictionPolicy {
+    /**
+     * Evict the index that was queried least recently.
+     */
+    LRU,
+    /**
+     * Evict the index that was queried least often.
+     */
+    LFU
+}
@@ -0,0 +1,69 @@
+package io.github.roimenashe.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts and aggregations of one facet bin over the matches of a search.
+ * Keyword values are counted, numeric values are aggregated.
+ */
+public class FacetResult {
+
+    private final String binName;
+    private final Map<String, Long> counts;
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double sum;
+
+    public FacetResult(String binName, Map<String, Long> counts, long count, double min, double max, double sum) {
+        this.binName = binName;
+        this.counts = counts;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    public String getBinName() {
+        return binName;
+    }
+
+    /**
+     * Most frequent keyword values with their number of matches, in descending count order.
+     */
+    public Map<String, Long> getCounts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    /**
+     * Number of matches with a numeric value.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Smallest numeric value, NaN when no match has a numeric value.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Largest numeric value, NaN when no match has a numeric value.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "FacetResult{binName='" + binName + "', counts=" + counts + ", count=" + count
+                + ", min=" + getMin() + ", max=" + getMax() + ", sum=" + sum + '}';
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.roimenashe.model;
+
+import com.aerospike.client.Record;
+
+import java.util.Map;
+
+/**
+ * A search result with the best passages of its highlighted bins, matched terms wrapped in {@code <b>} tags.
+ */
+public class HighlightedRecord {
+
+    private final Record record;
+    private final Map<String, String> highlights;
+
+    public HighlightedRecord(Record record, Map<String, String> highlights) {
+        this.record = record;
+        this.highlights = highlights;
+    }
+
+    public Record getRecord() {
+        return record;
+    }
+
+    /**
+     * Passages by bin name. Several passages of a bin are joined with "... ".
+     */
+    public Map<String, String> getHighlights() {
+        return highlights;
+    }
+
+    public String getHighlight(String binName) {
+        return highlights.get(binName);
+    }
+}
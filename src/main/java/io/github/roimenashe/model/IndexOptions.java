@@ -0,0 +1,263 @@
+package io.github.roimenashe.model;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-index build options. All options are optional, defaults keep the behavior of the plain create methods.
+ */
+public class IndexOptions {
+
+    private int truncatedDimensions;
+    private int rerankOversample = 4;
+    private String[] sortableBins = new String[0];
+    private SortBy indexSort;
+    private String[] facetBins = new String[0];
+    private String[] suggestBins = new String[0];
+    private String suggestWeightBin;
+    private boolean fuzzySuggestions;
+    private String[] highlightBins = new String[0];
+    private String sharedIndex;
+    private double ramBufferSizeMb;
+    private double segmentsPerTier;
+    private double maxMergedSegmentMb;
+    private int mergeThreads;
+    private int forceMergeSegments;
+
+    public static IndexOptions defaults() {
+        return new IndexOptions();
+    }
+
+    public int getTruncatedDimensions() {
+        return truncatedDimensions;
+    }
+
+    /**
+     * Vector indexes only: build the HNSW graph on the first {@code truncatedDimensions} dimensions of each vector
+     * (e.g. Matryoshka embeddings). Only prefixes are indexed, full vectors are kept next to the index, outside the
+     * Java heap, to rerank an over-fetched candidate set at search time. 0 (default) indexes every dimension.
+     */
+    public IndexOptions setTruncatedDimensions(int truncatedDimensions) {
+        if (truncatedDimensions < 0) {
+            throw new IllegalArgumentException("truncatedDimensions must be non-negative");
+        }
+        this.truncatedDimensions = truncatedDimensions;
+        return this;
+    }
+
+    public boolean isTruncated() {
+        return truncatedDimensions > 0;
+    }
+
+    public int getRerankOversample() {
+        return rerankOversample;
+    }
+
+    /**
+     * Vector indexes only: number of candidates fetched per requested result from a truncated index
+     * before reranking with full vectors.
+     */
+    public IndexOptions setRerankOversample(int rerankOversample) {
+        if (rerankOversample < 1) {
+            throw new IllegalArgumentException("rerankOversample must be at least 1");
+        }
+        this.rerankOversample = rerankOversample;
+        return this;
+    }
+
+    /**
+     * Numeric bins indexed as sortable doc values, including the index sort bin.
+     */
+    public Set<String> getSortableBins() {
+        Set<String> bins = new LinkedHashSet<>(List.of(sortableBins));
+        if (indexSort != null) {
+            bins.add(indexSort.getBinName());
+        }
+        return bins;
+    }
+
+    /**
+     * Numeric bins to index as sortable doc values, so that results can be ordered by them
+     * with {@link SearchOptions#setSortBy(SortBy)}. Values are sorted as doubles.
+     */
+    public IndexOptions setSortableBins(String... sortableBins) {
+        this.sortableBins = sortableBins == null ? new String[0] : sortableBins;
+        return this;
+    }
+
+    public SortBy getIndexSort() {
+        return indexSort;
+    }
+
+    /**
+     * Keeps the documents of each index segment ordered by a numeric bin. Queries sorted the same way then stop
+     * collecting after the first k matches of every segment instead of visiting all matches.
+     */
+    public IndexOptions setIndexSort(SortBy indexSort) {
+        this.indexSort = indexSort;
+        return this;
+    }
+
+    public Set<String> getFacetBins() {
+        return new LinkedHashSet<>(List.of(facetBins));
+    }
+
+    /**
+     * Keyword (string or list of strings) and numeric bins indexed as doc values for facets and aggregations,
+     * see {@link SearchOptions#setFacets(String...)}. Numeric facet bins are sortable as well.
+     */
+    public IndexOptions setFacetBins(String... facetBins) {
+        this.facetBins = facetBins == null ? new String[0] : facetBins;
+        return this;
+    }
+
+    public String[] getSuggestBins() {
+        return suggestBins;
+    }
+
+    /**
+     * Full-text indexes only: string bins whose values are offered as completions by {@code suggest}.
+     */
+    public IndexOptions setSuggestBins(String... suggestBins) {
+        this.suggestBins = suggestBins == null ? new String[0] : suggestBins;
+        return this;
+    }
+
+    public String getSuggestWeightBin() {
+        return suggestWeightBin;
+    }
+
+    /**
+     * Full-text indexes only: numeric bin (e.g. popularity) ranking the completions of a record. Completions rank
+     * equally without it.
+     */
+    public IndexOptions setSuggestWeightBin(String suggestWeightBin) {
+        this.suggestWeightBin = suggestWeightBin;
+        return this;
+    }
+
+    public boolean isFuzzySuggestions() {
+        return fuzzySuggestions;
+    }
+
+    /**
+     * Full-text indexes only: tolerate typos in suggestion prefixes (one edit after the first character).
+     */
+    public IndexOptions setFuzzySuggestions(boolean fuzzySuggestions) {
+        this.fuzzySuggestions = fuzzySuggestions;
+        return this;
+    }
+
+    public Set<String> getHighlightBins() {
+        return new LinkedHashSet<>(List.of(highlightBins));
+    }
+
+    /**
+     * Full-text indexes only: text bins indexed with term offsets, so that highlighted searches take passages
+     * straight from the postings instead of re-analyzing the text.
+     */
+    public IndexOptions setHighlightBins(String... highlightBins) {
+        this.highlightBins = highlightBins == null ? new String[0] : highlightBins;
+        return this;
+    }
+
+    public String getSharedIndex() {
+        return sharedIndex;
+    }
+
+    /**
+     * Full-text indexes only: stores the set's documents in a physical index shared with the other sets of the
+     * namespace that name the same shared index, instead of a dedicated one. Meant for many small sets
+     * (e.g. one per tenant), whose per-index writer, searcher and segment overhead would outweigh their data.
+     * Searches of the set are filtered by set, and rebuilding the set replaces only its own documents.
+     * Builds of the sets of a shared index run one at a time, and a failed build leaves the index as it was.
+     * Sets of a shared index must use the same index sort and highlight the same bins.
+     */
+    public IndexOptions setSharedIndex(String sharedIndex) {
+        this.sharedIndex = sharedIndex;
+        return this;
+    }
+
+    public double getRamBufferSizeMb() {
+        return ramBufferSizeMb;
+    }
+
+    /**
+     * Memory buffering documents before they are flushed as a new segment. A larger buffer writes fewer, larger
+     * segments during a build. 0 (default) uses Lucene's 16MB.
+     */
+    public IndexOptions setRamBufferSizeMb(double ramBufferSizeMb) {
+        if (ramBufferSizeMb < 0) {
+            throw new IllegalArgumentException("ramBufferSizeMb must be non-negative");
+        }
+        this.ramBufferSizeMb = ramBufferSizeMb;
+        return this;
+    }
+
+    public double getSegmentsPerTier() {
+        return segmentsPerTier;
+    }
+
+    /**
+     * Number of segments of similar size allowed before they are merged. Fewer segments per tier means fewer
+     * segments to search, each vector segment being a separate HNSW graph, at the cost of more merging.
+     * 0 (default) uses Lucene's 10.
+     */
+    public IndexOptions setSegmentsPerTier(double segmentsPerTier) {
+        if (segmentsPerTier != 0 && segmentsPerTier < 2) {
+            throw new IllegalArgumentException("segmentsPerTier must be at least 2");
+        }
+        this.segmentsPerTier = segmentsPerTier;
+        return this;
+    }
+
+    public double getMaxMergedSegmentMb() {
+        return maxMergedSegmentMb;
+    }
+
+    /**
+     * Largest segment produced by background merges. Does not limit {@link #setForceMergeSegments(int)}.
+     * 0 (default) uses Lucene's 5GB.
+     */
+    public IndexOptions setMaxMergedSegmentMb(double maxMergedSegmentMb) {
+        if (maxMergedSegmentMb < 0) {
+            throw new IllegalArgumentException("maxMergedSegmentMb must be non-negative");
+        }
+        this.maxMergedSegmentMb = maxMergedSegmentMb;
+        return this;
+    }
+
+    public int getMergeThreads() {
+        return mergeThreads;
+    }
+
+    /**
+     * Threads merging segments in the background. 0 (default) picks a count from the available processors.
+     */
+    public IndexOptions setMergeThreads(int mergeThreads) {
+        if (mergeThreads < 0) {
+            throw new IllegalArgumentException("mergeThreads must be non-negative");
+        }
+        this.mergeThreads = mergeThreads;
+        return this;
+    }
+
+    public int getForceMergeSegments() {
+        return forceMergeSegments;
+    }
+
+    /**
+     * Merges the index down to at most this many segments once a build completes, before the rebuilt index
+     * replaces the current one, which keeps serving queries meanwhile. Searches then visit fewer segments
+     * (and HNSW graphs), but the build takes longer and needs up to twice the index size while merging.
+     * 0 (default) leaves the segments as built.
+     */
+    public IndexOptions setForceMergeSegments(int forceMergeSegments) {
+        if (forceMergeSegments < 0) {
+            throw new IllegalArgumentException("forceMergeSegments must be non-negative");
+        }
+        this.forceMergeSegments = forceMergeSegments;
+        return this;
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.roimenashe.model;
+
+import com.aerospike.client.Record;
+
+import java.util.function.Function;
+
+/**
+ * Describes one index to build with {@code createIndexes}.
+ */
+public class IndexSpec {
+
+    private final IndexType indexType;
+    private final String[] binNames;
+    private final String vectorBin;
+    private final Function<Record, float[]> embedder;
+    private final SimilarityFunction similarityFunction;
+    private IndexOptions options = IndexOptions.defaults();
+    private String fieldName;
+
+    private IndexSpec(IndexType indexType, String[] binNames, String vectorBin,
+                      Function<Record, float[]> embedder, SimilarityFunction similarityFunction) {
+        this.indexType = indexType;
+        this.binNames = binNames;
+        this.vectorBin = vectorBin;
+        this.embedder = embedder;
+        this.similarityFunction = similarityFunction;
+        this.fieldName = vectorBin != null ? vectorBin : "vector";
+    }
+
+    /**
+     * A full-text index.
+     *
+     * @param binNames Optional bins to create the index on. All bins will be included if not specified.
+     */
+    public static IndexSpec fullText(String... binNames) {
+        return new IndexSpec(IndexType.FULL_TEXT, binNames == null ? new String[0] : binNames, null, null, null);
+    }
+
+    /**
+     * A vector index on a vector Bin.
+     */
+    public static IndexSpec vector(String vectorBin, SimilarityFunction similarityFunction) {
+        return new IndexSpec(IndexType.VECTOR, new String[]{vectorBin}, vectorBin, null, similarityFunction);
+    }
+
+    /**
+     * A vector index using an embedding function. The embedder receives records with all bins.
+     */
+    public static IndexSpec vector(Function<Record, float[]> embedder, SimilarityFunction similarityFunction) {
+        return new IndexSpec(IndexType.VECTOR, new String[0], null, embedder, similarityFunction);
+    }
+
+    public IndexSpec setOptions(IndexOptions options) {
+        this.options = options == null ? IndexOptions.defaults() : options;
+        return this;
+    }
+
+    /**
+     * Vector indexes only: name of the vector field in the set's vector index, used to pick the field at query time
+     * when a set has several vector fields. Defaults to the vector Bin name, or "vector" for embedders.
+     */
+    public IndexSpec setFieldName(String fieldName) {
+        this.fieldName = fieldName;
+        return this;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * Bins read by the index, empty if it needs all bins.
+     */
+    public String[] getBinNames() {
+        return binNames;
+    }
+
+    public String getVectorBin() {
+        return vectorBin;
+    }
+
+    public Function<Record, float[]> getEmbedder() {
+        return embedder;
+    }
+
+    public SimilarityFunction getSimilarityFunction() {
+        return similarityFunction;
+    }
+
+    public IndexOptions getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.roimenashe.model;
+
+import java.util.Objects;
+
+/**
+ * An Aerospike namespace and set, one of the targets of a cross-set search.
+ */
+public class NamespaceSet {
+
+    private final String namespace;
+    private final String set;
+
+    private NamespaceSet(String namespace, String set) {
+        this.namespace = Objects.requireNonNull(namespace, "namespace");
+        this.set = Objects.requireNonNull(set, "set");
+    }
+
+    public static NamespaceSet of(String namespace, String set) {
+        return new NamespaceSet(namespace, set);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getSet() {
+        return set;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NamespaceSet other && namespace.equals(other.namespace) && set.equals(other.set);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(namespace, set);
+    }
+
+    @Override
+    public String toString() {
+        return namespace + ":" + set;
+    }
+}
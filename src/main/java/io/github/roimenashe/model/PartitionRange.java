@@ -0,0 +1,72 @@
+package io.github.roimenashe.model;
+
+import com.aerospike.client.cluster.Partition;
+import com.aerospike.client.query.PartitionFilter;
+
+/**
+ * Contiguous range of the 4096 Aerospike partitions indexed by one shard.
+ */
+public class PartitionRange {
+
+    public static final int PARTITIONS = 4096;
+
+    private final int begin;
+    private final int count;
+
+    private PartitionRange(int begin, int count) {
+        if (begin < 0 || count < 1 || begin + count > PARTITIONS) {
+            throw new IllegalArgumentException("Invalid partition range [" + begin + ", " + (begin + count) + ")");
+        }
+        this.begin = begin;
+        this.count = count;
+    }
+
+    public static PartitionRange all() {
+        return new PartitionRange(0, PARTITIONS);
+    }
+
+    public static PartitionRange of(int begin, int count) {
+        return new PartitionRange(begin, count);
+    }
+
+    /**
+     * The range of one of {@code shardCount} shards splitting the partitions evenly.
+     */
+    public static PartitionRange forShard(int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardCount > PARTITIONS || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+        }
+        int begin = shardIndex * PARTITIONS / shardCount;
+        int end = (shardIndex + 1) * PARTITIONS / shardCount;
+        return new PartitionRange(begin, end - begin);
+    }
+
+    public int getBegin() {
+        return begin;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isAll() {
+        return count == PARTITIONS;
+    }
+
+    public boolean contains(byte[] digest) {
+        int partitionId = Partition.getPartitionId(digest);
+        return partitionId >= begin && partitionId < begin + count;
+    }
+
+    /**
+     * A new scan filter over the range. Filters record the scan progress, so each scan needs its own.
+     */
+    public PartitionFilter toFilter() {
+        return isAll() ? PartitionFilter.all() : PartitionFilter.range(begin, count);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + begin + ", " + (begin + count) + ")";
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.roimenashe.model;
+
+public enum QueryPriority {
+    /**
+     * User-facing queries, admitted before waiting background queries.
+     */
+    INTERACTIVE,
+    /**
+     * Batch and analytics queries, admitted only when no interactive query is waiting.
+     */
+    BACKGROUND
+}
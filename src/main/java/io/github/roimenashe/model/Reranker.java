@@ -0,0 +1,18 @@
+package io.github.roimenashe.model;
+
+import com.aerospike.client.Record;
+
+import java.util.List;
+
+/**
+ * Scores search candidates in batches, e.g. with a cross-encoder over the query and the candidate records.
+ */
+@FunctionalInterface
+public interface Reranker {
+
+    /**
+     * @param candidates Fetched candidate records, in index relevance order
+     * @return One score per candidate, higher is more relevant
+     */
+    float[] score(List<Record> candidates);
+}
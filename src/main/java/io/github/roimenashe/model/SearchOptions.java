@@ -0,0 +1,242 @@
+package io.github.roimenashe.model;
+
+import com.aerospike.client.exp.Expression;
+
+import java.time.Duration;
+
+/**
+ * Per-query search options. All options are optional, defaults keep the behavior of the plain search methods.
+ */
+public class SearchOptions {
+
+    private int numCandidates;
+    private Duration timeout;
+    private VectorSearchMode vectorSearchMode = VectorSearchMode.AUTO;
+    private String vectorField;
+    private Expression filterExpression;
+    private int overFetchFactor = 3;
+    private int maxFetchDepth = 1000;
+    private SortBy sortBy;
+    private String[] facets = new String[0];
+    private int maxFacetValues = 10;
+    private int maxPassages = 1;
+    private Reranker reranker;
+    private int rerankDepth;
+    private int rerankBatchSize;
+    private QueryPriority priority = QueryPriority.INTERACTIVE;
+
+    public static SearchOptions defaults() {
+        return new SearchOptions();
+    }
+
+    public int getNumCandidates() {
+        return numCandidates;
+    }
+
+    /**
+     * Number of HNSW candidates (ef) explored by approximate vector search. Values smaller than k are ignored.
+     * Higher values improve recall at the cost of latency.
+     */
+    public SearchOptions setNumCandidates(int numCandidates) {
+        if (numCandidates < 0) {
+            throw new IllegalArgumentException("numCandidates must be non-negative");
+        }
+        this.numCandidates = numCandidates;
+        return this;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Time budget for the index query. Once the budget is spent, the results collected so far are returned.
+     */
+    public SearchOptions setTimeout(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.timeout = timeout;
+        return this;
+    }
+
+    public VectorSearchMode getVectorSearchMode() {
+        return vectorSearchMode;
+    }
+
+    public SearchOptions setVectorSearchMode(VectorSearchMode vectorSearchMode) {
+        this.vectorSearchMode = vectorSearchMode == null ? VectorSearchMode.AUTO : vectorSearchMode;
+        return this;
+    }
+
+    public String getVectorField() {
+        return vectorField;
+    }
+
+    /**
+     * Vector field to search, required only when several vector fields of the set serve the similarity function.
+     */
+    public SearchOptions setVectorField(String vectorField) {
+        this.vectorField = vectorField;
+        return this;
+    }
+
+    public Expression getFilterExpression() {
+        return filterExpression;
+    }
+
+    /**
+     * Aerospike filter expression applied by the server during the batch read of the results
+     * (e.g. {@code Exp.build(Exp.eq(Exp.stringBin("status"), Exp.val("active")))}).
+     * Records filtered out are not sent to the client, and more results are fetched to fill the limit.
+     */
+    public SearchOptions setFilterExpression(Expression filterExpression) {
+        this.filterExpression = filterExpression;
+        return this;
+    }
+
+    public int getOverFetchFactor() {
+        return overFetchFactor;
+    }
+
+    /**
+     * Multiple of the limit requested from the index when a filter expression is set. Higher values suit more
+     * selective filters, and save follow-up pages.
+     */
+    public SearchOptions setOverFetchFactor(int overFetchFactor) {
+        if (overFetchFactor < 1) {
+            throw new IllegalArgumentException("overFetchFactor must be at least 1");
+        }
+        this.overFetchFactor = overFetchFactor;
+        return this;
+    }
+
+    public int getMaxFetchDepth() {
+        return maxFetchDepth;
+    }
+
+    /**
+     * Maximum number of index hits a search reads records of, across the larger pages requested when records are
+     * gone or rejected by the filter expression. A search may then return fewer than its limit. At least the limit
+     * is always read.
+     */
+    public SearchOptions setMaxFetchDepth(int maxFetchDepth) {
+        if (maxFetchDepth < 1) {
+            throw new IllegalArgumentException("maxFetchDepth must be at least 1");
+        }
+        this.maxFetchDepth = maxFetchDepth;
+        return this;
+    }
+
+    public SortBy getSortBy() {
+        return sortBy;
+    }
+
+    /**
+     * Orders results by a sortable numeric bin instead of relevance. Text searches return the first matches in
+     * that order, vector searches order their k nearest neighbors. Not applied by hybrid search, and overridden by
+     * the order of a {@link #setReranker reranker}.
+     */
+    public SearchOptions setSortBy(SortBy sortBy) {
+        this.sortBy = sortBy;
+        return this;
+    }
+
+    public String[] getFacets() {
+        return facets;
+    }
+
+    /**
+     * Facet bins (see {@link IndexOptions#setFacetBins(String...)}) to count and aggregate over all matches
+     * with the {@code WithFacets} search methods.
+     */
+    public SearchOptions setFacets(String... facets) {
+        this.facets = facets == null ? new String[0] : facets;
+        return this;
+    }
+
+    public int getMaxFacetValues() {
+        return maxFacetValues;
+    }
+
+    /**
+     * Number of most frequent values returned per keyword facet.
+     */
+    public SearchOptions setMaxFacetValues(int maxFacetValues) {
+        if (maxFacetValues < 1) {
+            throw new IllegalArgumentException("maxFacetValues must be at least 1");
+        }
+        this.maxFacetValues = maxFacetValues;
+        return this;
+    }
+
+    public int getMaxPassages() {
+        return maxPassages;
+    }
+
+    /**
+     * Number of best passages per bin returned by highlighted searches.
+     */
+    public SearchOptions setMaxPassages(int maxPassages) {
+        if (maxPassages < 1) {
+            throw new IllegalArgumentException("maxPassages must be at least 1");
+        }
+        this.maxPassages = maxPassages;
+        return this;
+    }
+
+    public Reranker getReranker() {
+        return reranker;
+    }
+
+    public int getRerankDepth() {
+        return rerankDepth;
+    }
+
+    /**
+     * Reranks the top candidates of the index with a batched scoring function and returns the best of them.
+     * Candidates are fetched once, records rejected by the filter expression or no longer existing are not scored.
+     * The reranker score overrides the order of {@link #setSortBy}: the sort still selects the candidates, but the
+     * results are returned by score.
+     *
+     * @param reranker       Scores the fetched candidate records
+     * @param candidateDepth Number of index candidates to rerank, at least the limit of the search
+     */
+    public SearchOptions setReranker(Reranker reranker, int candidateDepth) {
+        if (reranker != null && candidateDepth < 1) {
+            throw new IllegalArgumentException("candidateDepth must be at least 1");
+        }
+        this.reranker = reranker;
+        this.rerankDepth = candidateDepth;
+        return this;
+    }
+
+    public QueryPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Admission priority of the query when the maximum number of concurrent queries is reached.
+     */
+    public SearchOptions setPriority(QueryPriority priority) {
+        this.priority = priority == null ? QueryPriority.INTERACTIVE : priority;
+        return this;
+    }
+
+    public int getRerankBatchSize() {
+        return rerankBatchSize;
+    }
+
+    /**
+     * Number of candidates fetched and scored per reranker call. Smaller batches overlap the fetch of the next
+     * candidates with the scoring of the previous ones, at the cost of more reranker calls.
+     * 0 (default) scores all candidates with one call.
+     */
+    public SearchOptions setRerankBatchSize(int rerankBatchSize) {
+        if (rerankBatchSize < 0) {
+            throw new IllegalArgumentException("rerankBatchSize must be non-negative");
+        }
+        this.rerankBatchSize = rerankBatchSize;
+        return this;
+    }
+}
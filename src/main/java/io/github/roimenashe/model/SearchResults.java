@@ -0,0 +1,35 @@
+package io.github.roimenashe.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search results with the facets requested in {@link SearchOptions#setFacets(String...)}.
+ *
+ * @param <T> Result type (records, or encoded ids within the search services)
+ */
+public class SearchResults<T> {
+
+    private final List<T> results;
+    private final Map<String, FacetResult> facets;
+
+    public SearchResults(List<T> results, Map<String, FacetResult> facets) {
+        this.results = results;
+        this.facets = facets;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    /**
+     * Facets by bin name.
+     */
+    public Map<String, FacetResult> getFacets() {
+        return facets;
+    }
+
+    public FacetResult getFacet(String binName) {
+        return facets.get(binName);
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.roimenashe.model;
+
+/**
+ * A full-text or vector query sent by a coordinator to the shards of a set, each answering with its local top ids.
+ */
+public class ShardQuery {
+
+    private final IndexType indexType;
+    private final String namespace;
+    private final String set;
+    private final String text;
+    private final float[] vector;
+    private final SimilarityFunction similarityFunction;
+    private final int limit;
+    private SearchOptions options = SearchOptions.defaults();
+
+    private ShardQuery(IndexType indexType, String namespace, String set, String text, float[] vector,
+                       SimilarityFunction similarityFunction, int limit) {
+        this.indexType = indexType;
+        this.namespace = namespace;
+        this.set = set;
+        this.text = text;
+        this.vector = vector;
+        this.similarityFunction = similarityFunction;
+        this.limit = limit;
+    }
+
+    public static ShardQuery text(String namespace, String set, String query, int limit) {
+        return new ShardQuery(IndexType.FULL_TEXT, namespace, set, query, null, null, limit);
+    }
+
+    public static ShardQuery vector(String namespace, String set, float[] queryVector, int k,
+                                    SimilarityFunction similarityFunction) {
+        return new ShardQuery(IndexType.VECTOR, namespace, set, null, queryVector, similarityFunction, k);
+    }
+
+    /**
+     * Index options of the query (e.g. timeout, vector field). Filter expressions are applied by the coordinator.
+     * Shard hits are merged by score, so a sort, facets and a reranker are rejected.
+     *
+     * @throws IllegalArgumentException if the options set a sort, facets or a reranker
+     */
+    public ShardQuery setOptions(SearchOptions options) {
+        if (options != null && (options.getSortBy() != null || options.getFacets().length > 0
+                || options.getReranker() != null)) {
+            throw new IllegalArgumentException("Sharded queries support neither sortBy, facets nor a reranker");
+        }
+        this.options = options == null ? SearchOptions.defaults() : options;
+        return this;
+    }
+
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getSet() {
+        return set;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public float[] getVector() {
+        return vector;
+    }
+
+    public SimilarityFunction getSimilarityFunction() {
+        return similarityFunction;
+    }
+
+    /**
+     * Number of ids requested from every shard.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public SearchOptions getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.roimenashe.model;
+
+import java.util.Objects;
+
+/**
+ * Orders results by a numeric bin indexed as sortable (see {@link IndexOptions#setSortableBins(String...)}).
+ * Records without a value come last.
+ */
+public class SortBy {
+
+    private final String binName;
+    private final boolean descending;
+
+    private SortBy(String binName, boolean descending) {
+        this.binName = Objects.requireNonNull(binName, "binName");
+        this.descending = descending;
+    }
+
+    public static SortBy ascending(String binName) {
+        return new SortBy(binName, false);
+    }
+
+    public static SortBy descending(String binName) {
+        return new SortBy(binName, true);
+    }
+
+    public String getBinName() {
+        return binName;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SortBy other && binName.equals(other.binName) && descending == other.descending;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(binName, descending);
+    }
+
+    @Override
+    public String toString() {
+        return binName + (descending ? " DESC" : " ASC");
+    }
+}
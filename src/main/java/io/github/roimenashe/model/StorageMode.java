@@ -0,0 +1,16 @@
+package io.github.roimenashe.model;
+
+public enum StorageMode {
+    /**
+     * Index data is kept in Java heap buffers.
+     */
+    HEAP,
+    /**
+     * Index data is kept in memory-mapped files outside the Java heap (by default on the {@code /dev/shm}
+     * tmpfs when available). Memory is unmapped and released explicitly on rebuild and close.
+     * Without a configured path and a writable {@code /dev/shm}, files are mapped from {@code java.io.tmpdir},
+     * which is often disk-backed, and a warning is logged. The resolved directory is returned by
+     * {@code AerospikeSearch.getOffHeapPath()}.
+     */
+    OFF_HEAP
+}
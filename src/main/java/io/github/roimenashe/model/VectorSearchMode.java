@@ -0,0 +1,17 @@
+package io.github.roimenashe.model;
+
+public enum VectorSearchMode {
+    /**
+     * Choose between exact and approximate search per query, based on the number of indexed vectors.
+     */
+    AUTO,
+    /**
+     * Score every indexed vector (brute-force KNN). Guarantees 100% recall, except for truncated fields, whose
+     * top prefixes are reranked.
+     */
+    EXACT,
+    /**
+     * Traverse the HNSW graph (approximate KNN).
+     */
+    APPROXIMATE
+}
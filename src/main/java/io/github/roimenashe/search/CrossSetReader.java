@@ -0,0 +1,75 @@
+package io.github.roimenashe.search;
+
+import com.aerospike.client.Key;
+import io.github.roimenashe.index.FullTextIndexer;
+import io.github.roimenashe.model.NamespaceSet;
+import io.github.roimenashe.util.FullTextUtil;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.StoredFields;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the index readers of several sets into one {@link MultiReader}, so that a single query ranks all sets
+ * with global statistics, and maps hits back to the keys of their sets.
+ * Sets of the same shared index contribute its reader once, their documents are mapped by their set field.
+ * The sub-readers are reference counted, closing this reader releases them.
+ */
+class CrossSetReader implements AutoCloseable {
+
+    private final List<NamespaceSet> readerSets = new ArrayList<>();
+    private final Map<String, NamespaceSet> setsByName = new HashMap<>();
+    private final MultiReader reader;
+    private final int[] starts;
+
+    CrossSetReader(List<NamespaceSet> sets, List<IndexReader> readers) throws IOException {
+        Map<IndexReader, NamespaceSet> distinct = new IdentityHashMap<>();
+        List<IndexReader> subReaders = new ArrayList<>();
+        for (int i = 0; i < readers.size(); i++) {
+            NamespaceSet set = sets.get(i);
+            setsByName.put(FullTextUtil.getFullTextUniqueIndexName(set.getNamespace(), set.getSet()), set);
+            if (distinct.putIfAbsent(readers.get(i), set) == null) {
+                subReaders.add(readers.get(i));
+                readerSets.add(set);
+            }
+        }
+
+        this.reader = new MultiReader(subReaders.toArray(IndexReader[]::new), false);
+        this.starts = new int[subReaders.size()];
+        int start = 0;
+        for (int i = 0; i < subReaders.size(); i++) {
+            starts[i] = start;
+            start += subReaders.get(i).maxDoc();
+        }
+    }
+
+    MultiReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Key of the record indexed by a top-level document.
+     */
+    Key getKey(int doc) throws IOException {
+        StoredFields storedFields = reader.storedFields();
+        Document document = storedFields.document(doc);
+        byte[] digest = Base64.getDecoder().decode(document.get("id"));
+        String sharedSet = document.get(FullTextIndexer.SET_FIELD);
+        NamespaceSet set = sharedSet != null ? setsByName.get(sharedSet) : readerSets.get(ReaderUtil.subIndex(doc, starts));
+        return new Key(set.getNamespace(), digest, set.getSet(), null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.roimenashe.search;
+
+import io.github.roimenashe.model.FacetResult;
+import io.github.roimenashe.util.FacetUtil;
+import io.github.roimenashe.util.SortUtil;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts keyword values and aggregates numeric values of facet bins over every collected document, reading only
+ * doc values. Runs alongside the top-k collector of a search, so facets need no Aerospike reads.
+ */
+public class FacetCollectorManager implements CollectorManager<FacetCollectorManager.FacetCollector, Map<String, FacetResult>> {
+
+    private final String[] binNames;
+    private final int maxFacetValues;
+
+    public FacetCollectorManager(String[] binNames, int maxFacetValues) {
+        this.binNames = binNames;
+        this.maxFacetValues = maxFacetValues;
+    }
+
+    /**
+     * Facets over an already collected set of hits, such as the k nearest neighbors of a vector query.
+     */
+    public Map<String, FacetResult> collect(IndexSearcher indexSearcher, ScoreDoc[] hits) throws IOException {
+        ScoreDoc[] byDoc = hits.clone();
+        Arrays.sort(byDoc, Comparator.comparingInt(sd -> sd.doc));
+
+        List<LeafReaderContext> leaves = indexSearcher.getIndexReader().leaves();
+        FacetCollector collector = newCollector();
+        LeafCollector leafCollector = null;
+        int leafOrd = -1;
+        for (ScoreDoc hit : byDoc) {
+            int ord = ReaderUtil.subIndex(hit.doc, leaves);
+            if (ord != leafOrd) {
+                if (leafCollector != null) {
+                    leafCollector.finish();
+                }
+                leafOrd = ord;
+                leafCollector = collector.getLeafCollector(leaves.get(ord));
+            }
+            leafCollector.collect(hit.doc - leaves.get(ord).docBase);
+        }
+        if (leafCollector != null) {
+            leafCollector.finish();
+        }
+        return reduce(List.of(collector));
+    }
+
+    @Override
+    public FacetCollector newCollector() {
+        return new FacetCollector(binNames);
+    }
+
+    @Override
+    public Map<String, FacetResult> reduce(Collection<FacetCollector> collectors) {
+        Map<String, FacetResult> facets = new LinkedHashMap<>();
+        for (int i = 0; i < binNames.length; i++) {
+            Map<String, Long> counts = new HashMap<>();
+            long count = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (FacetCollector collector : collectors) {
+                Accumulator accumulator = collector.accumulators[i];
+                accumulator.counts.forEach((value, c) -> counts.merge(value, c, Long::sum));
+                count += accumulator.count;
+                min = Math.min(min, accumulator.min);
+                max = Math.max(max, accumulator.max);
+                sum += accumulator.sum;
+            }
+
+            Map<String, Long> topCounts = new LinkedHashMap<>();
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(maxFacetValues)
+                    .forEach(e -> topCounts.put(e.getKey(), e.getValue()));
+            facets.put(binNames[i], new FacetResult(binNames[i], topCounts, count, min, max, sum));
+        }
+        return facets;
+    }
+
+    private static class Accumulator {
+        private final Map<String, Long> counts = new HashMap<>();
+        private long count;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+    }
+
+    public static class FacetCollector implements Collector {
+
+        private final String[] binNames;
+        private final Accumulator[] accumulators;
+
+        private FacetCollector(String[] binNames) {
+            this.binNames = binNames;
+            this.accumulators = new Accumulator[binNames.length];
+            for (int i = 0; i < binNames.length; i++) {
+                accumulators[i] = new Accumulator();
+            }
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            SortedSetDocValues[] keywords = new SortedSetDocValues[binNames.length];
+            NumericDocValues[] numbers = new NumericDocValues[binNames.length];
+            // Keyword values are counted per segment ordinal and resolved to strings once per segment
+            List<long[]> ordCounts = new ArrayList<>(binNames.length);
+            for (int i = 0; i < binNames.length; i++) {
+                keywords[i] = context.reader().getSortedSetDocValues(FacetUtil.getFacetField(binNames[i]));
+                numbers[i] = context.reader().getNumericDocValues(SortUtil.getSortField(binNames[i]));
+                ordCounts.add(keywords[i] == null ? null : new long[(int) keywords[i].getValueCount()]);
+            }
+
+            return new LeafCollector() {
+                @Override
+                public void setScorer(Scorable scorer) {
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    for (int i = 0; i < binNames.length; i++) {
+                        if (keywords[i] != null && keywords[i].advanceExact(doc)) {
+                            long[] counts = ordCounts.get(i);
+                            for (int j = 0; j < keywords[i].docValueCount(); j++) {
+                                counts[(int) keywords[i].nextOrd()]++;
+                            }
+                        }
+                        if (numbers[i] != null && numbers[i].advanceExact(doc)) {
+                            double value = Double.longBitsToDouble(numbers[i].longValue());
+                            Accumulator accumulator = accumulators[i];
+                            accumulator.count++;
+                            accumulator.min = Math.min(accumulator.min, value);
+                            accumulator.max = Math.max(accumulator.max, value);
+                            accumulator.sum += value;
+                        }
+                    }
+                }
+
+                @Override
+                public void finish() throws IOException {
+                    for (int i = 0; i < binNames.length; i++) {
+                        long[] counts = ordCounts.get(i);
+                        if (counts == null) continue;
+                        for (int ord = 0; ord < counts.length; ord++) {
+                            if (counts[ord] > 0) {
+                                accumulators[i].counts.merge(keywords[i].lookupOrd(ord).utf8ToString(), counts[ord], Long::sum);
+                            }
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE_NO_SCORES;
+        }
+    }
+}
@@ -1,62 +1,360 @@
 package io.github.roimenashe.search;
 
+import com.aerospike.client.Key;
+import io.github.roimenashe.index.DigestTable;
 import io.github.roimenashe.index.FullTextIndexer;
+import io.github.roimenashe.model.FacetResult;
+import io.github.roimenashe.model.NamespaceSet;
 import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.SearchResults;
+import io.github.roimenashe.model.SortBy;
+import io.github.roimenashe.util.ExpirationUtil;
+import io.github.roimenashe.util.FacetUtil;
+import io.github.roimenashe.util.FullTextUtil;
+import io.github.roimenashe.util.SearchUtil;
+import io.github.roimenashe.util.SortUtil;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiCollectorManager;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollectorManager;
+import org.apache.lucene.search.TopScoreDocCollectorManager;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FullTextSearchService {
 
+    private static final Logger log = LoggerFactory.getLogger(FullTextSearchService.class);
+
     private final FullTextIndexer indexer;
+    private final QuerySampler<SampledQuery> sampler;
 
     public FullTextSearchService(FullTextIndexer indexer) {
+        this(indexer, 0);
+    }
+
+    /**
+     * @param warmupQueries Number of recent queries per index replayed by {@link #warm}
+     */
+    public FullTextSearchService(FullTextIndexer indexer, int warmupQueries) {
         this.indexer = indexer;
+        this.sampler = new QuerySampler<>(warmupQueries);
+    }
+
+    /**
+     * Replays the recent queries of the set against a rebuilt index, loading the terms and postings they
+     * read and the stored fields of their hits, and compiling the query paths, before the index serves traffic.
+     */
+    public void warm(String namespace, String set, IndexSearcher searcher) {
+        List<SampledQuery> queries = sampler.sample(FullTextUtil.getFullTextUniqueIndexName(namespace, set));
+        if (queries.isEmpty()) return;
+        // The set filter of a shared index is resolved from the new index, the set may just have moved into it
+        Query setFilter = FieldInfos.getMergedFieldInfos(searcher.getIndexReader()).fieldInfo(FullTextIndexer.SET_FIELD) == null
+                ? null : new TermQuery(new Term(FullTextIndexer.SET_FIELD, FullTextUtil.getFullTextUniqueIndexName(namespace, set)));
+        long start = System.nanoTime();
+        for (SampledQuery sampled : queries) {
+            try {
+                TopDocs topDocs = search(searcher, sampled.query(), setFilter, sampled.limit(), SortUtil.toSort(sampled.sortBy()));
+                for (ScoreDoc sd : topDocs.scoreDocs) {
+                    getDocument(searcher, sd);
+                }
+            } catch (Exception e) {
+                log.debug("Warmup query '{}' failed on [{}:{}]", sampled.query(), namespace, set, e);
+            }
+        }
+        log.info("Warmed full-text index of [{}:{}] with {} queries in {}ms", namespace, set, queries.size(),
+                (System.nanoTime() - start) / 1_000_000);
     }
 
     public List<String> searchText(String namespace, String set, String queryStr, int limit) throws Exception {
-        IndexSearcher indexSearcher = indexer.getIndexSearcher(namespace, set);
-        if (indexSearcher == null) {
-            throw new IllegalStateException("Index not built yet. Call createFullTextIndex() first.");
+        return searchText(namespace, set, queryStr, limit, SearchOptions.defaults());
+    }
+
+    public List<String> searchText(String namespace, String set, String queryStr, int limit,
+                                   SearchOptions options) throws Exception {
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set), options.getTimeout());
+        try {
+            sampler.record(FullTextUtil.getFullTextUniqueIndexName(namespace, set), new SampledQuery(queryStr, limit, options.getSortBy()));
+            TopDocs topDocs = search(indexSearcher, queryStr, indexer.getSetFilter(namespace, set), limit,
+                    SortUtil.toSort(options.getSortBy()));
+
+            List<String> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(doc.get("id"));
+            }
+
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
         }
+    }
 
-        String[] fieldNames = extractFieldNames(indexSearcher.getIndexReader());
-        Query query = new MultiFieldQueryParser(fieldNames, indexer.getAnalyzer()).parse(queryStr);
-        TopDocs topDocs = indexSearcher.search(query, limit);
+    /**
+     * Searches and computes the facets of {@link SearchOptions#getFacets()} over all matches in the same pass.
+     */
+    public SearchResults<String> searchTextWithFacets(String namespace, String set, String queryStr, int limit,
+                                                      SearchOptions options) throws Exception {
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set), options.getTimeout());
+        try {
+            sampler.record(FullTextUtil.getFullTextUniqueIndexName(namespace, set), new SampledQuery(queryStr, limit, options.getSortBy()));
+            Query query = parseQuery(indexSearcher, queryStr, indexer.getSetFilter(namespace, set));
+            Sort sort = SortUtil.toSort(options.getSortBy());
+
+            // Facets need every match, so the top-k collector cannot skip non-competitive hits anyway
+            CollectorManager<?, ? extends TopDocs> topDocsManager = sort == null
+                    ? new TopScoreDocCollectorManager(limit, Integer.MAX_VALUE)
+                    : new TopFieldCollectorManager(sort, limit, Integer.MAX_VALUE);
+            FacetCollectorManager facetManager = new FacetCollectorManager(options.getFacets(), options.getMaxFacetValues());
+            Object[] collected = indexSearcher.search(query, new MultiCollectorManager(topDocsManager, facetManager));
+            if (indexSearcher.timedOut()) {
+                log.debug("Text query '{}' timed out, returning partial results and facets", queryStr);
+            }
 
-        List<String> results = new ArrayList<>();
-        for (ScoreDoc sd : topDocs.scoreDocs) {
-            Document doc = getDocument(indexSearcher, sd);
-            results.add(doc.get("id"));
+            TopDocs topDocs = (TopDocs) collected[0];
+            List<String> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(doc.get("id"));
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, FacetResult> facets = (Map<String, FacetResult>) collected[1];
+            return new SearchResults<>(results, facets);
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
         }
+    }
+
+    /**
+     * Searches and highlights the matches of every hit in the bins indexed with offsets.
+     * Passages are located from postings offsets, the stored text is not re-analyzed.
+     *
+     * @return Passages per bin of each hit, by encoded id in result order
+     */
+    public Map<String, Map<String, String>> searchTextHighlighted(String namespace, String set, String queryStr, int limit,
+                                                                  SearchOptions options) throws Exception {
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set), options.getTimeout());
+        try {
+            sampler.record(FullTextUtil.getFullTextUniqueIndexName(namespace, set), new SampledQuery(queryStr, limit, options.getSortBy()));
+            Query query = parseQuery(indexSearcher, queryStr, indexer.getSetFilter(namespace, set));
+            TopDocs topDocs = search(indexSearcher, query, limit, SortUtil.toSort(options.getSortBy()));
 
-        return results;
+            String[] fields = extractOffsetFieldNames(indexSearcher.getIndexReader());
+            int[] maxPassages = new int[fields.length];
+            Arrays.fill(maxPassages, options.getMaxPassages());
+            Map<String, String[]> passages = fields.length == 0 ? Map.of() : UnifiedHighlighter.builder(indexSearcher, indexer.getAnalyzer())
+                    .build()
+                    .highlightFields(fields, query, topDocs, maxPassages);
+
+            Map<String, Map<String, String>> results = new LinkedHashMap<>();
+            for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+                Map<String, String> highlights = new HashMap<>();
+                for (Map.Entry<String, String[]> field : passages.entrySet()) {
+                    String passage = field.getValue()[i];
+                    if (passage != null) {
+                        highlights.put(field.getKey(), passage);
+                    }
+                }
+                Document doc = getDocument(indexSearcher, topDocs.scoreDocs[i]);
+                results.put(doc.get("id"), highlights);
+            }
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Searches the full-text indexes of several sets with one query over a multi-reader, so that scores use
+     * statistics of all sets and the top hits are global.
+     *
+     * @return Keys of the top hits, in result order
+     */
+    public List<Key> searchText(List<NamespaceSet> sets, String queryStr, int limit, SearchOptions options) throws Exception {
+        List<IndexSearcher> acquired = new ArrayList<>(sets.size());
+        List<Query> setFilters = new ArrayList<>();
+        try {
+            for (NamespaceSet set : sets) {
+                acquired.add(acquireSearcher(set.getNamespace(), set.getSet()));
+                Query setFilter = indexer.getSetFilter(set.getNamespace(), set.getSet());
+                if (setFilter != null) {
+                    setFilters.add(setFilter);
+                }
+            }
+            List<IndexReader> readers = acquired.stream().map(IndexSearcher::getIndexReader).toList();
+
+            try (CrossSetReader reader = new CrossSetReader(sets, readers)) {
+                IndexSearcher indexSearcher = SearchUtil.withTimeout(new IndexSearcher(reader.getReader()), options.getTimeout());
+                TopDocs topDocs = search(indexSearcher, queryStr, crossSetFilter(setFilters), limit,
+                        SortUtil.toSort(options.getSortBy()));
+
+                List<Key> results = new ArrayList<>(topDocs.scoreDocs.length);
+                for (ScoreDoc sd : topDocs.scoreDocs) {
+                    results.add(reader.getKey(sd.doc));
+                }
+                return results;
+            }
+        } finally {
+            for (IndexSearcher searcher : acquired) {
+                indexer.releaseSearcher(searcher);
+            }
+        }
     }
 
     public List<ScoredId> searchWithScores(String namespace, String set,
                                            String queryStr, int limit) throws Exception {
-        IndexSearcher indexSearcher = indexer.getIndexSearcher(namespace, set);
+        return searchWithScores(namespace, set, queryStr, limit, SearchOptions.defaults());
+    }
+
+    /**
+     * Top ids by relevance with their scores, which callers merge or fuse. The sort of the options is not applied.
+     */
+    public List<ScoredId> searchWithScores(String namespace, String set,
+                                           String queryStr, int limit, SearchOptions options) throws Exception {
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set), options.getTimeout());
+        try {
+            sampler.record(FullTextUtil.getFullTextUniqueIndexName(namespace, set), new SampledQuery(queryStr, limit, null));
+            TopDocs topDocs = search(indexSearcher, queryStr, indexer.getSetFilter(namespace, set), limit, null);
+
+            List<ScoredId> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(new ScoredId(doc.get("id"), sd.score));
+            }
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Searches the records most like an indexed record with a more-like-this query, made of the most distinctive
+     * terms of the record's text as stored in the index, so the record itself is not read.
+     *
+     * @return Ids of the similar records by descending score, without the record itself. Empty if the record is not
+     * indexed.
+     */
+    public List<ScoredId> searchSimilar(String namespace, String set, Key key, int limit, SearchOptions options) throws Exception {
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set), options.getTimeout());
+        try {
+            Term id = new Term("id", Base64.getEncoder().encodeToString(key.digest));
+            TopDocs source = indexSearcher.search(new TermQuery(id), 1);
+            if (source.scoreDocs.length == 0) {
+                return List.of();
+            }
+            MoreLikeThis moreLikeThis = new MoreLikeThis(indexSearcher.getIndexReader());
+            moreLikeThis.setAnalyzer(indexer.getAnalyzer());
+            moreLikeThis.setFieldNames(extractFieldNames(indexSearcher.getIndexReader()));
+            // The defaults suit large corpora, here any term of the record shared with another record counts
+            moreLikeThis.setMinTermFreq(1);
+            moreLikeThis.setMinDocFreq(2);
+            Query query = new BooleanQuery.Builder()
+                    .add(moreLikeThis.like(source.scoreDocs[0].doc), BooleanClause.Occur.MUST)
+                    .add(new TermQuery(id), BooleanClause.Occur.MUST_NOT)
+                    .build();
+            TopDocs topDocs = search(indexSearcher, filter(indexSearcher, query, indexer.getSetFilter(namespace, set)), limit,
+                    SortUtil.toSort(options.getSortBy()));
+
+            List<ScoredId> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(new ScoredId(doc.get("id"), sd.score));
+            }
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Searcher of the index holding the set, to be released with {@link FullTextIndexer#releaseSearcher}.
+     */
+    private IndexSearcher acquireSearcher(String namespace, String set) {
+        IndexSearcher indexSearcher = indexer.acquireSearcher(namespace, set);
         if (indexSearcher == null) {
             throw new IllegalStateException("Index not built yet. Call createFullTextIndex() first.");
         }
+        return indexSearcher;
+    }
+
+    /**
+     * Matches the documents of the requested sets of shared indexes, and every document of dedicated indexes,
+     * which have no set field. Null when no set is in a shared index.
+     */
+    private Query crossSetFilter(List<Query> setFilters) {
+        if (setFilters.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder filter = new BooleanQuery.Builder();
+        setFilters.forEach(setFilter -> filter.add(setFilter, BooleanClause.Occur.SHOULD));
+        Query anySet = TermRangeQuery.newStringRange(FullTextIndexer.SET_FIELD, null, null, true, true);
+        filter.add(new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                .add(anySet, BooleanClause.Occur.MUST_NOT)
+                .build(), BooleanClause.Occur.SHOULD);
+        return filter.build();
+    }
+
+    /**
+     * @param setFilter Optional filter restricting a shared index to the searched sets
+     * @param sort      Optional sort by a sortable bin. Matches are collected in that order, which stops early
+     *                  on segments sorted the same way.
+     */
+    private TopDocs search(IndexSearcher indexSearcher, String queryStr, Query setFilter, int limit, Sort sort) throws Exception {
+        return search(indexSearcher, parseQuery(indexSearcher, queryStr, setFilter), limit, sort);
+    }
+
+    private TopDocs search(IndexSearcher indexSearcher, Query query, int limit, Sort sort) throws Exception {
+        TopDocs topDocs = sort == null ? indexSearcher.search(query, limit) : indexSearcher.search(query, limit, sort);
+        if (indexSearcher.timedOut()) {
+            log.debug("Text query '{}' timed out, returning {} partial results", query, topDocs.scoreDocs.length);
+        }
+        return topDocs;
+    }
 
+    private Query parseQuery(IndexSearcher indexSearcher, String queryStr, Query setFilter) throws Exception {
         String[] fieldNames = extractFieldNames(indexSearcher.getIndexReader());
-        Query query = new MultiFieldQueryParser(fieldNames, indexer.getAnalyzer()).parse(queryStr);
-        TopDocs topDocs = indexSearcher.search(query, limit);
+        return filter(indexSearcher, new MultiFieldQueryParser(fieldNames, indexer.getAnalyzer()).parse(queryStr), setFilter);
+    }
 
-        List<ScoredId> results = new ArrayList<>();
-        for (ScoreDoc sd : topDocs.scoreDocs) {
-            Document doc = getDocument(indexSearcher, sd);
-            results.add(new ScoredId(doc.get("id"), sd.score));
+    /**
+     * Restricts a query to the set of a shared index and to records that have not expired.
+     */
+    private Query filter(IndexSearcher indexSearcher, Query query, Query setFilter) throws IOException {
+        if (setFilter != null) {
+            query = new BooleanQuery.Builder()
+                    .add(query, BooleanClause.Occur.MUST)
+                    .add(setFilter, BooleanClause.Occur.FILTER)
+                    .build();
+        }
+        long now = ExpirationUtil.nowSeconds();
+        if (ExpirationUtil.hasExpired(indexSearcher.getIndexReader(), now)) {
+            query = ExpirationUtil.excludeExpired(query, now);
         }
-        return results;
+        return query;
     }
 
     private String[] extractFieldNames(IndexReader reader) {
@@ -68,7 +366,24 @@ public class FullTextSearchService {
                     }
                     return fields.stream();
                 })
-                .filter(name -> !"id".equals(name))
+                .filter(name -> !"id".equals(name) && !ExpirationUtil.VOID_TIME_FIELD.equals(name)
+                        && !FullTextIndexer.SET_FIELD.equals(name) && !DigestTable.GENERATION_FIELD.equals(name)
+                        && !name.startsWith(SortUtil.SORT_FIELD_PREFIX) && !name.startsWith(FacetUtil.FACET_FIELD_PREFIX))
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private String[] extractOffsetFieldNames(IndexReader reader) {
+        return reader.leaves().stream()
+                .flatMap(l -> {
+                    List<String> fields = new ArrayList<>();
+                    for (FieldInfo fi : l.reader().getFieldInfos()) {
+                        if (fi.getIndexOptions() == IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) {
+                            fields.add(fi.name);
+                        }
+                    }
+                    return fields.stream();
+                })
                 .distinct()
                 .toArray(String[]::new);
     }
@@ -79,4 +394,7 @@ public class FullTextSearchService {
         StoredFields storedFields = leaf.reader().storedFields();
         return storedFields.document(sd.doc - leaf.docBase);
     }
+
+    private record SampledQuery(String query, int limit, SortBy sortBy) {
+    }
 }
@@ -1,6 +1,7 @@
 package io.github.roimenashe.search;
 
 import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.SearchOptions;
 import io.github.roimenashe.model.SimilarityFunction;
 
 import java.util.HashMap;
@@ -26,10 +27,23 @@ public class HybridSearchService {
                                      int limit,
                                      double textWeight,
                                      double vectorWeight) throws Exception {
+        return searchHybrid(namespace, set, textQuery, queryVector, similarityFunction, limit, textWeight, vectorWeight,
+                SearchOptions.defaults());
+    }
+
+    public List<String> searchHybrid(String namespace,
+                                     String set,
+                                     String textQuery,
+                                     float[] queryVector,
+                                     SimilarityFunction similarityFunction,
+                                     int limit,
+                                     double textWeight,
+                                     double vectorWeight,
+                                     SearchOptions options) throws Exception {
         validateWeights(textWeight, vectorWeight);
 
-        List<ScoredId> textResults = fullTextSearchService.searchWithScores(namespace, set, textQuery, limit);
-        List<ScoredId> vectorResults = vectorService.searchWithScores(namespace, set, queryVector, limit, similarityFunction);
+        List<ScoredId> textResults = fullTextSearchService.searchWithScores(namespace, set, textQuery, limit, options);
+        List<ScoredId> vectorResults = vectorService.searchWithScores(namespace, set, queryVector, limit, similarityFunction, options);
 
         normalizeScores(textResults);
         normalizeScores(vectorResults);
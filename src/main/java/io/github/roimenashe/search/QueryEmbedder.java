@@ -0,0 +1,231 @@
+package io.github.roimenashe.search;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Embeds query text for vector and hybrid searches, keeping model calls off the hot path of repeated queries:
+ * <ul>
+ *     <li>vectors of recent queries are kept in a bounded LRU cache</li>
+ *     <li>concurrent requests for the same text wait for a single embedder call</li>
+ *     <li>a batching embedder receives the distinct queries arriving within a short window in one call</li>
+ * </ul>
+ * Returned vectors are copies, callers may modify them. A closed embedder rejects new queries.
+ */
+public class QueryEmbedder implements AutoCloseable {
+
+    private final Function<List<String>, List<float[]>> embedder;
+    private final Map<String, float[]> cache;
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong embedderCalls = new AtomicLong();
+    private List<String> pending = new ArrayList<>();
+    private volatile boolean closed;
+
+    private QueryEmbedder(Function<List<String>, List<float[]>> embedder, int cacheSize, Duration batchWindow, int maxBatchSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must be non-negative");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.embedder = embedder;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = batchWindow == null ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "query-embedder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Embeds every query on the calling thread.
+     *
+     * @param embedder  Embeds one query text
+     * @param cacheSize Maximum number of cached query vectors, 0 disables the cache
+     */
+    public static QueryEmbedder of(Function<String, float[]> embedder, int cacheSize) {
+        return new QueryEmbedder(texts -> List.of(embedder.apply(texts.getFirst())), cacheSize, null, 1);
+    }
+
+    /**
+     * Collects the queries arriving within the batch window and embeds them with one call.
+     *
+     * @param embedder     Embeds several query texts, returning their vectors in the same order
+     * @param cacheSize    Maximum number of cached query vectors, 0 disables the cache
+     * @param batchWindow  How long the first query of a batch waits for others
+     * @param maxBatchSize Number of queries embedding a batch without waiting for the end of the window
+     */
+    public static QueryEmbedder batched(Function<List<String>, List<float[]>> embedder, int cacheSize,
+                                        Duration batchWindow, int maxBatchSize) {
+        if (batchWindow == null || batchWindow.isNegative()) {
+            throw new IllegalArgumentException("batchWindow must be non-negative");
+        }
+        return new QueryEmbedder(embedder, cacheSize, batchWindow, maxBatchSize);
+    }
+
+    public float[] embed(String text) {
+        return await(submit(text));
+    }
+
+    /**
+     * Embeds the query text, waiting at most the timeout for a vector computed by another caller or by the batch.
+     * An embedder call made on the calling thread is not interrupted.
+     *
+     * @param timeout Maximum time to wait, null waits until the vector is ready
+     * @throws TimeoutException if the vector is not ready within the timeout
+     */
+    public float[] embed(String text, Duration timeout) throws TimeoutException {
+        CompletableFuture<float[]> future = submit(text);
+        if (timeout == null) {
+            return await(future);
+        }
+        try {
+            // The copy times out for this caller only, others keep waiting for the shared call
+            return await(future.copy().orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Number of calls made to the embedder.
+     */
+    public long getEmbedderCalls() {
+        return embedderCalls.get();
+    }
+
+    private CompletableFuture<float[]> submit(String text) {
+        if (closed) {
+            throw new IllegalStateException("QueryEmbedder is closed");
+        }
+        synchronized (cache) {
+            float[] cached = cache.get(text);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        CompletableFuture<float[]> created = new CompletableFuture<>();
+        CompletableFuture<float[]> future = inFlight.putIfAbsent(text, created);
+        if (future != null) {
+            return future;
+        }
+        try {
+            if (scheduler == null) {
+                embedBatch(List.of(text));
+            } else {
+                enqueue(text);
+            }
+        } catch (Throwable e) {
+            // E.g. the scheduler rejected the batch after close, waiting callers must not hang
+            inFlight.remove(text, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private static float[] await(CompletableFuture<float[]> future) {
+        try {
+            return future.join().clone();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void enqueue(String text) {
+        List<String> full = null;
+        synchronized (this) {
+            pending.add(text);
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new ArrayList<>();
+            } else if (pending.size() == 1) {
+                scheduler.schedule(this::flush, batchWindow.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            embedBatch(full);
+        }
+    }
+
+    private void flush() {
+        List<String> batch;
+        synchronized (this) {
+            // A full batch may have been embedded already
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        embedBatch(batch);
+    }
+
+    private void embedBatch(List<String> texts) {
+        try {
+            embedderCalls.incrementAndGet();
+            List<float[]> vectors = embedder.apply(texts);
+            if (vectors == null || vectors.size() != texts.size()) {
+                throw new IllegalStateException("Embedder returned " + (vectors == null ? 0 : vectors.size())
+                        + " vectors for " + texts.size() + " queries");
+            }
+            if (vectors.contains(null)) {
+                throw new IllegalStateException("Embedder returned no vector for a query");
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                synchronized (cache) {
+                    cache.put(texts.get(i), vectors.get(i));
+                }
+                CompletableFuture<float[]> future = inFlight.remove(texts.get(i));
+                if (future != null) {
+                    future.complete(vectors.get(i));
+                }
+            }
+        } catch (Throwable e) {
+            // Failures are not cached, the next request calls the embedder again
+            for (String text : texts) {
+                CompletableFuture<float[]> future = inFlight.remove(text);
+                if (future != null) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            flush();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.roimenashe.search;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the most recent queries of every index, to be replayed against a rebuilt index before it serves traffic.
+ * A size of 0 keeps nothing.
+ */
+class QuerySampler<Q> {
+
+    private final int size;
+    private final Map<String, Deque<Q>> queries = new ConcurrentHashMap<>();
+
+    QuerySampler(int size) {
+        this.size = size;
+    }
+
+    void record(String key, Q query) {
+        if (size == 0) return;
+        Deque<Q> recent = queries.computeIfAbsent(key, k -> new ArrayDeque<>(size));
+        synchronized (recent) {
+            if (recent.size() == size) {
+                recent.removeFirst();
+            }
+            recent.addLast(query);
+        }
+    }
+
+    List<Q> sample(String key) {
+        Deque<Q> recent = queries.get(key);
+        if (recent == null) return List.of();
+        synchronized (recent) {
+            return List.copyOf(recent);
+        }
+    }
+}
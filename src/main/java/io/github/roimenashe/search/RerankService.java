@@ -0,0 +1,129 @@
+package io.github.roimenashe.search;
+
+import com.aerospike.client.Record;
+import io.github.roimenashe.model.Reranker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Reranks search candidates with a batched {@link Reranker}. Candidates are fetched in batches on the calling
+ * thread while the previous batches are scored on a bounded pool of reranking threads, so fetching overlaps scoring.
+ * A single batch is scored on the calling thread, as is any batch arriving while the pool and its queue are full.
+ */
+public class RerankService implements AutoCloseable {
+
+    private static final int QUEUED_BATCHES_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+
+    public RerankService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads Maximum number of threads scoring batches concurrently
+     */
+    public RerankService(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_BATCHES_PER_THREAD), runnable -> {
+            Thread thread = new Thread(runnable, "reranker");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * @param ids       Candidate ids in index relevance order
+     * @param fetcher   Reads the records of ids, null for records that no longer exist or are filtered out
+     * @param batchSize Candidates per reranker call, 0 for a single call
+     * @param limit     Number of results
+     * @return The best live candidates by reranker score, ties kept in index order
+     */
+    public <T> Map<T, Record> rerank(List<T> ids, Function<List<T>, Record[]> fetcher, Reranker reranker,
+                                     int batchSize, int limit) {
+        if (batchSize == 0) {
+            // Nothing to overlap with, the single call is made on the calling thread
+            return rerank(ids, fetcher, reranker, Math.max(1, ids.size()), limit, Runnable::run);
+        }
+        return rerank(ids, fetcher, reranker, batchSize, limit, executor);
+    }
+
+    private <T> Map<T, Record> rerank(List<T> ids, Function<List<T>, Record[]> fetcher, Reranker reranker,
+                                      int size, int limit, Executor scoringExecutor) {
+        List<T> liveIds = new ArrayList<>();
+        List<Record> liveRecords = new ArrayList<>();
+        List<CompletableFuture<float[]>> scores = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += size) {
+            List<T> batch = ids.subList(from, Math.min(ids.size(), from + size));
+            Record[] records = fetcher.apply(batch);
+            List<Record> candidates = new ArrayList<>();
+            for (int i = 0; i < records.length; i++) {
+                if (records[i] == null) continue;
+                liveIds.add(batch.get(i));
+                candidates.add(records[i]);
+            }
+            liveRecords.addAll(candidates);
+            if (!candidates.isEmpty()) {
+                scores.add(CompletableFuture.supplyAsync(() -> score(reranker, candidates), scoringExecutor));
+            }
+        }
+
+        float[] allScores = new float[liveRecords.size()];
+        int offset = 0;
+        try {
+            for (CompletableFuture<float[]> future : scores) {
+                float[] batchScores = future.join();
+                System.arraycopy(batchScores, 0, allScores, offset, batchScores.length);
+                offset += batchScores.length;
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        List<Integer> order = new ArrayList<>(liveRecords.size());
+        for (int i = 0; i < liveRecords.size(); i++) {
+            order.add(i);
+        }
+        // Stable sort keeps the index order of equal scores
+        order.sort(Comparator.comparingDouble((Integer i) -> allScores[i]).reversed());
+        Map<T, Record> results = new LinkedHashMap<>();
+        for (int i : order.subList(0, Math.min(limit, order.size()))) {
+            results.put(liveIds.get(i), liveRecords.get(i));
+        }
+        return results;
+    }
+
+    private static float[] score(Reranker reranker, List<Record> candidates) {
+        float[] scores = reranker.score(candidates);
+        if (scores == null || scores.length != candidates.size()) {
+            throw new IllegalStateException("Reranker returned " + (scores == null ? 0 : scores.length)
+                    + " scores for " + candidates.size() + " candidates");
+        }
+        return scores;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
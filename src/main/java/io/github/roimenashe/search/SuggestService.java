@@ -0,0 +1,30 @@
+package io.github.roimenashe.search;
+
+import io.github.roimenashe.index.FullTextIndexer;
+import org.apache.lucene.search.suggest.Lookup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SuggestService {
+
+    private final FullTextIndexer indexer;
+
+    public SuggestService(FullTextIndexer indexer) {
+        this.indexer = indexer;
+    }
+
+    public List<String> suggest(String namespace, String set, String prefix, int n) throws IOException {
+        Lookup suggester = indexer.getSuggester(namespace, set);
+        if (suggester == null) {
+            throw new IllegalStateException("Suggestions not built yet. Create the full-text index with suggest bins first.");
+        }
+
+        List<String> suggestions = new ArrayList<>(n);
+        for (Lookup.LookupResult result : suggester.lookup(prefix, false, n)) {
+            suggestions.add(result.key.toString());
+        }
+        return suggestions;
+    }
+}
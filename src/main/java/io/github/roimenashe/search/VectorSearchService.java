@@ -1,61 +1,490 @@
 package io.github.roimenashe.search;
 
+import com.aerospike.client.Key;
+import io.github.roimenashe.index.DigestTable;
+import io.github.roimenashe.index.VectorField;
 import io.github.roimenashe.index.VectorIndexer;
+import io.github.roimenashe.model.FacetResult;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.NamespaceSet;
 import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.SearchResults;
 import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.VectorSearchMode;
+import io.github.roimenashe.util.ExpirationUtil;
+import io.github.roimenashe.util.SearchUtil;
+import io.github.roimenashe.util.SortUtil;
+import io.github.roimenashe.util.VectorUtil;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.KnnVectorValues;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.QueryTimeout;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
 import org.apache.lucene.search.*;
+import org.apache.lucene.util.Bits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.roimenashe.util.VectorUtil.getVectorSimilarityFunction;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 public class VectorSearchService {
 
+    private static final Logger log = LoggerFactory.getLogger(VectorSearchService.class);
+
+    /**
+     * Indexes with up to this many vectors are searched exactly when using {@link VectorSearchMode#AUTO}.
+     */
+    public static final int EXACT_SEARCH_THRESHOLD = 10_000;
+
     private final VectorIndexer indexer;
+    private final QuerySampler<SampledQuery> sampler;
 
     public VectorSearchService(VectorIndexer indexer) {
+        this(indexer, 0);
+    }
+
+    /**
+     * @param warmupQueries Number of recent queries per index replayed by {@link #warm}
+     */
+    public VectorSearchService(VectorIndexer indexer, int warmupQueries) {
         this.indexer = indexer;
+        this.sampler = new QuerySampler<>(warmupQueries);
+    }
+
+    /**
+     * Reads every vector of a rebuilt index, paging memory-mapped vector data in, then replays the recent
+     * queries of the set against it, loading the graph nodes they visit, before the index serves traffic.
+     */
+    public void warm(String namespace, String set, IndexSearcher searcher) {
+        List<SampledQuery> queries = sampler.sample(VectorUtil.getUniqueVectorIndexName(namespace, set));
+        if (queries.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                for (FieldInfo fieldInfo : leaf.reader().getFieldInfos()) {
+                    if (fieldInfo.getVectorDimension() == 0) continue;
+                    FloatVectorValues values = leaf.reader().getFloatVectorValues(fieldInfo.name);
+                    KnnVectorValues.DocIndexIterator iterator = values.iterator();
+                    for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                        values.vectorValue(iterator.index());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to preload the vectors of [{}:{}]", namespace, set, e);
+        }
+        for (SampledQuery sampled : queries) {
+            try {
+                VectorField field = indexer.resolveField(namespace, set, sampled.options().getVectorField(),
+                        sampled.similarityFunction());
+                TopDocs topDocs = search(searcher, field, sampled.vector(), sampled.k(), sampled.similarityFunction(),
+                        sampled.options(), docKeys(searcher, namespace, set));
+                for (ScoreDoc sd : topDocs.scoreDocs) {
+                    getDocument(searcher, sd);
+                }
+            } catch (Exception e) {
+                log.debug("Warmup vector query failed on [{}:{}]", namespace, set, e);
+            }
+        }
+        log.info("Warmed vector index of [{}:{}] with {} queries in {}ms", namespace, set, queries.size(),
+                (System.nanoTime() - start) / 1_000_000);
     }
 
     public List<String> searchVector(String namespace, String set, float[] queryVector, int k,
                                      SimilarityFunction similarityFunction) throws IOException {
-        IndexSearcher indexSearcher = indexer.getIndexSearcher(namespace, set, similarityFunction);
-        if (indexSearcher == null) {
-            throw new IllegalStateException("Vector index not built for similarityFunction: " + similarityFunction);
+        return searchVector(namespace, set, queryVector, k, similarityFunction, SearchOptions.defaults());
+    }
+
+    public List<String> searchVector(String namespace, String set, float[] queryVector, int k,
+                                     SimilarityFunction similarityFunction, SearchOptions options) throws IOException {
+        VectorField field = indexer.resolveField(namespace, set, options.getVectorField(), similarityFunction);
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set, similarityFunction), options.getTimeout());
+        try {
+            sampler.record(VectorUtil.getUniqueVectorIndexName(namespace, set), new SampledQuery(queryVector.clone(), k, similarityFunction, options));
+            TopDocs topDocs = search(indexSearcher, field, queryVector, k, similarityFunction, options,
+                    docKeys(indexSearcher, namespace, set));
+            if (options.getSortBy() != null) {
+                topDocs = SortUtil.sortHits(indexSearcher, topDocs, options.getSortBy());
+            }
+
+            List<String> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(doc.get("id"));
+            }
+
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Searches and computes the facets of {@link SearchOptions#getFacets()} over the k nearest neighbors.
+     */
+    public SearchResults<String> searchVectorWithFacets(String namespace, String set, float[] queryVector, int k,
+                                                        SimilarityFunction similarityFunction, SearchOptions options) throws IOException {
+        VectorField field = indexer.resolveField(namespace, set, options.getVectorField(), similarityFunction);
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set, similarityFunction), options.getTimeout());
+        try {
+            sampler.record(VectorUtil.getUniqueVectorIndexName(namespace, set), new SampledQuery(queryVector.clone(), k, similarityFunction, options));
+            TopDocs topDocs = search(indexSearcher, field, queryVector, k, similarityFunction, options,
+                    docKeys(indexSearcher, namespace, set));
+            if (options.getSortBy() != null) {
+                topDocs = SortUtil.sortHits(indexSearcher, topDocs, options.getSortBy());
+            }
+            Map<String, FacetResult> facets = new FacetCollectorManager(options.getFacets(), options.getMaxFacetValues())
+                    .collect(indexSearcher, topDocs.scoreDocs);
+
+            List<String> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(doc.get("id"));
+            }
+            return new SearchResults<>(results, facets);
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
         }
+    }
 
-        Query query = new KnnFloatVectorQuery("vector", queryVector, k);
-        TopDocs topDocs = indexSearcher.search(query, k);
+    /**
+     * Searches the vector indexes of several sets for the k global nearest neighbors. Sets whose resolved
+     * fields share a layout are searched with one query over a multi-reader, groups of different layouts
+     * are searched separately and merged by score.
+     *
+     * @return Keys of the k nearest neighbors, by descending score
+     */
+    public List<Key> searchVector(List<NamespaceSet> sets, float[] queryVector, int k,
+                                  SimilarityFunction similarityFunction, SearchOptions options) throws IOException {
+        Map<String, List<NamespaceSet>> groups = new LinkedHashMap<>();
+        Map<String, VectorField> groupFields = new HashMap<>();
+        for (NamespaceSet set : sets) {
+            VectorField field = indexer.resolveField(set.getNamespace(), set.getSet(), options.getVectorField(), similarityFunction);
+            String layout = field.getLuceneField() + ":" + field.isNormalized() + ":" + field.getOptions().getTruncatedDimensions();
+            groups.computeIfAbsent(layout, l -> new ArrayList<>()).add(set);
+            groupFields.putIfAbsent(layout, field);
+        }
 
-        List<String> results = new ArrayList<>();
-        for (ScoreDoc sd : topDocs.scoreDocs) {
-            Document doc = getDocument(indexSearcher, sd);
-            results.add(doc.get("id"));
+        record ScoredKey(Key key, float score) {
+        }
+        List<ScoredKey> hits = new ArrayList<>();
+        for (Map.Entry<String, List<NamespaceSet>> group : groups.entrySet()) {
+            List<IndexSearcher> acquired = new ArrayList<>(group.getValue().size());
+            try {
+                for (NamespaceSet set : group.getValue()) {
+                    acquired.add(acquireSearcher(set.getNamespace(), set.getSet(), similarityFunction));
+                }
+                List<IndexReader> readers = acquired.stream().map(IndexSearcher::getIndexReader).toList();
+                try (CrossSetReader reader = new CrossSetReader(group.getValue(), readers)) {
+                    IndexSearcher indexSearcher = SearchUtil.withTimeout(new IndexSearcher(reader.getReader()), options.getTimeout());
+                    TopDocs topDocs = search(indexSearcher, groupFields.get(group.getKey()), queryVector, k,
+                            similarityFunction, options, reader::getKey);
+                    for (ScoreDoc sd : topDocs.scoreDocs) {
+                        hits.add(new ScoredKey(reader.getKey(sd.doc), sd.score));
+                    }
+                }
+            } finally {
+                for (IndexSearcher searcher : acquired) {
+                    indexer.releaseSearcher(searcher);
+                }
+            }
         }
 
-        return results;
+        // Scores of all groups are on the requested similarity function's scale
+        return hits.stream()
+                .sorted(Comparator.comparingDouble(ScoredKey::score).reversed())
+                .limit(k)
+                .map(ScoredKey::key)
+                .toList();
     }
 
     public List<ScoredId> searchWithScores(String namespace, String set, float[] queryVector, int k,
                                            SimilarityFunction similarityFunction) throws IOException {
-        IndexSearcher indexSearcher = indexer.getIndexSearcher(namespace, set, similarityFunction);
+        return searchWithScores(namespace, set, queryVector, k, similarityFunction, SearchOptions.defaults());
+    }
+
+    /**
+     * Nearest neighbor ids by score, which callers merge or fuse. The sort of the options is not applied.
+     */
+    public List<ScoredId> searchWithScores(String namespace, String set, float[] queryVector, int k,
+                                           SimilarityFunction similarityFunction, SearchOptions options) throws IOException {
+        VectorField field = indexer.resolveField(namespace, set, options.getVectorField(), similarityFunction);
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set, similarityFunction), options.getTimeout());
+        try {
+            sampler.record(VectorUtil.getUniqueVectorIndexName(namespace, set), new SampledQuery(queryVector.clone(), k, similarityFunction, options));
+            TopDocs topDocs = search(indexSearcher, field, queryVector, k, similarityFunction, options,
+                    docKeys(indexSearcher, namespace, set));
+
+            List<ScoredId> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                Document doc = getDocument(indexSearcher, sd);
+                results.add(new ScoredId(doc.get("id"), sd.score));
+            }
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Searches the k nearest neighbors of an indexed record, using its vector as stored in the index, so the
+     * record itself is not read. Scores are those of the field's similarity function.
+     *
+     * @return Ids of the k nearest neighbors by descending score, without the record itself. Empty if the record
+     * has no vector in the index.
+     */
+    public List<ScoredId> searchSimilar(String namespace, String set, Key key, int k, SearchOptions options) throws IOException {
+        VectorField field = indexer.resolveField(namespace, set, options.getVectorField());
+        SimilarityFunction similarityFunction = field.getSimilarityFunction();
+        IndexSearcher indexSearcher = SearchUtil.withTimeout(acquireSearcher(namespace, set, similarityFunction), options.getTimeout());
+        try {
+            String id = Base64.getEncoder().encodeToString(key.digest);
+            float[] vector = readVector(indexSearcher, field, key);
+            if (vector == null) {
+                return List.of();
+            }
+            // The record is its own nearest neighbor, one more is searched in its place
+            TopDocs topDocs = search(indexSearcher, field, vector, k + 1, similarityFunction, options,
+                    docKeys(indexSearcher, namespace, set));
+
+            List<ScoredId> results = new ArrayList<>();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                String hitId = getDocument(indexSearcher, sd).get("id");
+                if (!hitId.equals(id) && results.size() < k) {
+                    results.add(new ScoredId(hitId, sd.score));
+                }
+            }
+            return results;
+        } finally {
+            indexer.releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Vector of an indexed document, null if there is none. Truncated fields only index a prefix, the full vector
+     * is read from the full vectors stored by the build.
+     */
+    private float[] readVector(IndexSearcher indexSearcher, VectorField field, Key key) throws IOException {
+        TopDocs hits = indexSearcher.search(new TermQuery(new Term("id", Base64.getEncoder().encodeToString(key.digest))), 1);
+        if (hits.scoreDocs.length == 0) return null;
+        if (field.getOptions().isTruncated()) {
+            return indexer.readFullVectors(field, List.of(key), new long[]{getGeneration(indexSearcher, hits.scoreDocs[0].doc)})[0];
+        }
+        List<LeafReaderContext> leaves = indexSearcher.getIndexReader().leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(hits.scoreDocs[0].doc, leaves));
+        int doc = hits.scoreDocs[0].doc - leaf.docBase;
+        FloatVectorValues values = leaf.reader().getFloatVectorValues(field.getLuceneField());
+        if (values == null) return null;
+        KnnVectorValues.DocIndexIterator iterator = values.iterator();
+        if (iterator.advance(doc) != doc) return null;
+        // Vector values may reuse their array
+        return values.vectorValue(iterator.index()).clone();
+    }
+
+    /**
+     * Searcher of the set's vector index, to be released with {@link VectorIndexer#releaseSearcher}.
+     */
+    private IndexSearcher acquireSearcher(String namespace, String set, SimilarityFunction similarityFunction) {
+        IndexSearcher indexSearcher = indexer.acquireSearcher(namespace, set);
         if (indexSearcher == null) {
             throw new IllegalStateException("Vector index not built for similarityFunction: " + similarityFunction);
         }
+        return indexSearcher;
+    }
 
-        Query query = new KnnFloatVectorQuery("vector", queryVector, k);
-        TopDocs topDocs = indexSearcher.search(query, k);
+    /**
+     * @param keys Keys of the documents, to look up the full vectors of truncated fields
+     */
+    private TopDocs search(IndexSearcher indexSearcher, VectorField field, float[] queryVector, int k,
+                           SimilarityFunction similarityFunction, SearchOptions options, DocKeys keys) throws IOException {
+        // Neither the exact top-k queue nor a KNN query can be sized for no results
+        if (k < 1) {
+            return new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]);
+        }
+        // Fields of normalized vectors are queried with a normalized vector, and so are fields queried
+        // under another similarity function, whose scores are then converted through the cosine
+        boolean converted = similarityFunction != field.getSimilarityFunction();
+        float[] target = field.isNormalized() || converted ? VectorUtil.normalize(queryVector) : queryVector;
+        IndexOptions indexOptions = field.getOptions();
+
+        // Records expired but not swept yet are filtered out, so they neither take result slots nor batch reads
+        long now = ExpirationUtil.nowSeconds();
+        boolean hasExpired = ExpirationUtil.hasExpired(indexSearcher.getIndexReader(), now);
+        Query filter = hasExpired ? ExpirationUtil.liveQuery(now) : null;
 
-        List<ScoredId> results = new ArrayList<>();
+        boolean exact = switch (options.getVectorSearchMode()) {
+            case EXACT -> true;
+            case APPROXIMATE -> false;
+            case AUTO -> indexSearcher.getIndexReader().numDocs() <= EXACT_SEARCH_THRESHOLD;
+        };
+        TopDocs topDocs;
+        if (indexOptions.isTruncated()) {
+            // Search the over-fetched candidates with the query prefix, then rerank them with the full vectors
+            int candidates = k * indexOptions.getRerankOversample();
+            float[] prefix = Arrays.copyOf(target, Math.min(target.length, indexOptions.getTruncatedDimensions()));
+            TopDocs prefixTopDocs;
+            if (exact) {
+                prefixTopDocs = exactSearch(indexSearcher, field, prefix, candidates, hasExpired ? now : null);
+            } else {
+                Query query = new KnnFloatVectorQuery(field.getLuceneField(), prefix, Math.max(candidates, options.getNumCandidates()), filter);
+                prefixTopDocs = indexSearcher.search(query, candidates);
+            }
+            topDocs = rerank(indexSearcher, field, prefixTopDocs, target, k, keys);
+        } else if (exact) {
+            topDocs = exactSearch(indexSearcher, field, target, k, hasExpired ? now : null);
+        } else {
+            // Candidate exploration (ef) is decoupled from k, only the top k candidates are returned
+            int numCandidates = Math.max(k, options.getNumCandidates());
+            Query query = new KnnFloatVectorQuery(field.getLuceneField(), target, numCandidates, filter);
+            topDocs = indexSearcher.search(query, k);
+        }
+        if (indexSearcher.timedOut()) {
+            log.debug("Vector query timed out after {}, returning {} partial results",
+                    options.getTimeout(), topDocs.scoreDocs.length);
+        }
+        if (converted) {
+            convertScores(topDocs, field.getStoredSimilarity(), similarityFunction, VectorUtil.norm(queryVector));
+        }
+        return topDocs;
+    }
+
+    /**
+     * Converts scores of unit stored vectors searched with a normalized query into scores of the requested
+     * similarity function for the original query. All conversions are monotonic, so the ranking is kept.
+     */
+    private void convertScores(TopDocs topDocs, VectorSimilarityFunction stored, SimilarityFunction requested, float queryNorm) {
         for (ScoreDoc sd : topDocs.scoreDocs) {
-            Document doc = getDocument(indexSearcher, sd);
-            results.add(new ScoredId(doc.get("id"), sd.score));
+            double cosine = stored == VectorSimilarityFunction.DOT_PRODUCT
+                    ? 2 * sd.score - 1
+                    : 1 - (1 / sd.score - 1) / 2;
+            double dotProduct = queryNorm * cosine;
+            sd.score = (float) switch (requested) {
+                case COSINE -> (1 + cosine) / 2;
+                case DOT_PRODUCT -> Math.max((1 + dotProduct) / 2, 0);
+                case EUCLIDEAN -> 1 / (1 + queryNorm * queryNorm + 1 - 2 * dotProduct);
+            };
+        }
+    }
+
+    /**
+     * Brute-force KNN over the flat vector storage of every segment. Scoring goes through the codec's
+     * vector scorer, which reads the contiguous vector data in place and uses Lucene's SIMD (Panama)
+     * implementation when the JVM runs with {@code --add-modules jdk.incubator.vector}.
+     * Truncated fields are scored on their prefixes, the caller reranks the candidates with full vectors.
+     *
+     * @param now Time in epoch seconds to skip expired records at, or null when no record is expired
+     */
+    private TopDocs exactSearch(IndexSearcher indexSearcher, VectorField field, float[] queryVector, int k,
+                                Long now) throws IOException {
+        PriorityQueue<ScoreDoc> topK = new PriorityQueue<>(k + 1, Comparator.comparingDouble(sd -> sd.score));
+        QueryTimeout timeout = indexSearcher.getTimeout();
+        long totalHits = 0;
+        boolean timedOut = false;
+
+        for (LeafReaderContext leaf : indexSearcher.getIndexReader().leaves()) {
+            if (timedOut) break;
+            FloatVectorValues values = leaf.reader().getFloatVectorValues(field.getLuceneField());
+            if (values == null) continue;
+            VectorScorer scorer = values.scorer(queryVector);
+            if (scorer == null) continue;
+
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            NumericDocValues voidTimes = now == null ? null : leaf.reader().getNumericDocValues(ExpirationUtil.VOID_TIME_FIELD);
+            DocIdSetIterator iterator = scorer.iterator();
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                if (liveDocs != null && !liveDocs.get(doc)) continue;
+                if (voidTimes != null && ExpirationUtil.isExpired(voidTimes, doc, now)) continue;
+                if (timeout != null && (totalHits & 0x3FF) == 0 && timeout.shouldExit()) {
+                    timedOut = true;
+                    break;
+                }
+                totalHits++;
+                float score = scorer.score();
+                if (topK.size() < k) {
+                    topK.add(new ScoreDoc(leaf.docBase + doc, score));
+                } else if (score > topK.peek().score) {
+                    topK.poll();
+                    topK.add(new ScoreDoc(leaf.docBase + doc, score));
+                }
+            }
         }
-        return results;
+
+        ScoreDoc[] scoreDocs = new ScoreDoc[topK.size()];
+        for (int i = scoreDocs.length - 1; i >= 0; i--) {
+            scoreDocs[i] = topK.poll();
+        }
+        TotalHits.Relation relation = timedOut ? TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO : TotalHits.Relation.EQUAL_TO;
+        if (timedOut) {
+            log.debug("Exact vector query timed out after scoring {} vectors", totalHits);
+        }
+        return new TopDocs(new TotalHits(totalHits, relation), scoreDocs);
+    }
+
+    /**
+     * Rescores candidates of a truncated field with the full vectors they were indexed with, kept next to the index,
+     * and keeps the top k. Candidates missing from the store are read from Aerospike with one batch, and dropped if
+     * their record was written since it was indexed or has no vector anymore.
+     */
+    private TopDocs rerank(IndexSearcher indexSearcher, VectorField field, TopDocs candidates, float[] queryVector,
+                           int k, DocKeys keys) throws IOException {
+        ScoreDoc[] hits = candidates.scoreDocs;
+        List<Key> hitKeys = new ArrayList<>(hits.length);
+        long[] generations = new long[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            hitKeys.add(keys.get(hits[i].doc));
+            generations[i] = getGeneration(indexSearcher, hits[i].doc);
+        }
+        float[][] fullVectors = indexer.readFullVectors(field, hitKeys, generations);
+
+        VectorSimilarityFunction similarity = getVectorSimilarityFunction(field.getSimilarityFunction());
+        List<ScoreDoc> rescored = new ArrayList<>(hits.length);
+        for (int i = 0; i < hits.length; i++) {
+            if (fullVectors[i] != null && fullVectors[i].length == queryVector.length) {
+                rescored.add(new ScoreDoc(hits[i].doc, similarity.compare(queryVector, fullVectors[i])));
+            }
+        }
+
+        rescored.sort(Comparator.comparingDouble((ScoreDoc sd) -> sd.score).reversed());
+        ScoreDoc[] scoreDocs = rescored.subList(0, Math.min(k, rescored.size())).toArray(ScoreDoc[]::new);
+        return new TopDocs(candidates.totalHits, scoreDocs);
+    }
+
+    /**
+     * Generation of the record at indexing time.
+     */
+    private static long getGeneration(IndexSearcher indexSearcher, int doc) throws IOException {
+        List<LeafReaderContext> leaves = indexSearcher.getIndexReader().leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+        NumericDocValues generations = DocValues.getNumeric(leaf.reader(), DigestTable.GENERATION_FIELD);
+        return generations.advanceExact(doc - leaf.docBase) ? generations.longValue() : 0;
+    }
+
+    /**
+     * Keys of the documents of a set's index.
+     */
+    private DocKeys docKeys(IndexSearcher indexSearcher, String namespace, String set) {
+        return doc -> new Key(namespace, Base64.getDecoder().decode(getDocument(indexSearcher, new ScoreDoc(doc, 0)).get("id")),
+                set, null);
     }
 
     private Document getDocument(IndexSearcher indexSearcher, ScoreDoc sd) throws IOException {
@@ -64,4 +493,15 @@ public class VectorSearchService {
         StoredFields storedFields = leaf.reader().storedFields();
         return storedFields.document(sd.doc - leaf.docBase);
     }
+
+    /**
+     * A replayed query keeps the options it was searched with, so warmup uses the same field, mode and candidates.
+     */
+    private record SampledQuery(float[] vector, int k, SimilarityFunction similarityFunction, SearchOptions options) {
+    }
+
+    @FunctionalInterface
+    private interface DocKeys {
+        Key get(int doc) throws IOException;
+    }
 }
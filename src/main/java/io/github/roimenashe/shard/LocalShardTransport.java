@@ -0,0 +1,24 @@
+package io.github.roimenashe.shard;
+
+import io.github.roimenashe.AerospikeSearch;
+import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.ShardQuery;
+
+import java.util.List;
+
+/**
+ * Transport to a shard in the same JVM.
+ */
+public class LocalShardTransport implements ShardTransport {
+
+    private final AerospikeSearch shard;
+
+    public LocalShardTransport(AerospikeSearch shard) {
+        this.shard = shard;
+    }
+
+    @Override
+    public List<ScoredId> search(ShardQuery query) throws Exception {
+        return shard.searchShard(query);
+    }
+}
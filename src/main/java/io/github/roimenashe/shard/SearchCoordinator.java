@@ -0,0 +1,148 @@
+package io.github.roimenashe.shard;
+
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Record;
+import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.ShardQuery;
+import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.storage.AerospikeConnection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Searches a set sharded by partition ranges across application instances (see
+ * {@link io.github.roimenashe.AerospikeSearchConfig#setPartitionRange}). Queries are sent to all shards in
+ * parallel, their top ids are merged into the global top by score, and the records are read with one batch.
+ * <p>
+ * Vector scores are comparable across shards. Full-text scores use the term statistics of each shard, which
+ * are close to the global ones since records are spread evenly over partitions.
+ * <p>
+ * Results are ordered by score: options setting a sort, facets or a reranker are rejected with an
+ * {@link IllegalArgumentException}. Filtered searches over-fetch from every shard, and query the shards again
+ * with larger pages while the filter rejects too many records, up to {@link SearchOptions#setMaxFetchDepth}
+ * ids per shard, as single-instance searches do.
+ */
+public class SearchCoordinator implements AutoCloseable {
+
+    private static final int MAX_REFILL_ROUNDS = 3;
+
+    private final AerospikeConnection aerospikeConnection;
+    private final List<ShardTransport> shards;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "search-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param shards One transport per shard, together covering all partitions of the searched sets
+     */
+    public SearchCoordinator(IAerospikeClient client, List<ShardTransport> shards) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.aerospikeConnection = new AerospikeConnection(client);
+        this.shards = List.copyOf(shards);
+    }
+
+    public List<Record> searchText(String namespace, String set, String query, int limit,
+                                   SearchOptions options) throws Exception {
+        return searchAll(namespace, set, limit, options,
+                n -> ShardQuery.text(namespace, set, query, n).setOptions(options));
+    }
+
+    public List<Record> searchVector(String namespace, String set, float[] queryVector, int k,
+                                     SimilarityFunction similarityFunction, SearchOptions options) throws Exception {
+        return searchAll(namespace, set, k, options,
+                n -> ShardQuery.vector(namespace, set, queryVector, n, similarityFunction).setOptions(options));
+    }
+
+    /**
+     * Reads the records of the merged top ids, querying the shards again with a larger page when some records
+     * no longer exist or are rejected by the filter expression.
+     *
+     * @param queries Shard query for a number of ids per shard
+     */
+    private List<Record> searchAll(String namespace, String set, int limit, SearchOptions options,
+                                   IntFunction<ShardQuery> queries) throws Exception {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        Map<String, Record> fetched = new HashMap<>();
+        List<String> ids = List.of();
+        int maxRequested = Math.max(limit, options.getMaxFetchDepth());
+        // Filtered searches over-fetch from every shard, as most candidates are expected to be rejected
+        int requested = Math.min(maxRequested,
+                options.getFilterExpression() == null ? limit : limit * options.getOverFetchFactor());
+        for (int round = 0; round <= MAX_REFILL_ROUNDS; round++) {
+            ids = scatterGather(queries.apply(requested));
+            List<String> newIds = ids.stream().filter(id -> !fetched.containsKey(id)).toList();
+            Record[] records = aerospikeConnection.fetchRecordArrayByDigest(namespace, set, newIds,
+                    options.getFilterExpression());
+            for (int i = 0; i < records.length; i++) {
+                fetched.put(newIds.get(i), records[i]);
+            }
+
+            long live = ids.stream().filter(id -> fetched.get(id) != null).count();
+            if (live >= limit || ids.size() < requested || newIds.isEmpty() || requested == maxRequested) break;
+            long grown = live == 0 ? (long) requested * 4 : (long) Math.ceil((double) requested * limit / live) + 1;
+            requested = (int) Math.min(maxRequested, grown);
+        }
+
+        List<Record> results = new ArrayList<>(limit);
+        for (String id : ids) {
+            if (results.size() == limit) break;
+            Record record = fetched.get(id);
+            if (record != null) {
+                results.add(record);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merges the top ids of all shards, best first.
+     */
+    private List<String> scatterGather(ShardQuery query) throws Exception {
+        List<Future<List<ScoredId>>> futures = new ArrayList<>(shards.size());
+        for (ShardTransport shard : shards) {
+            futures.add(executor.submit(() -> shard.search(query)));
+        }
+        List<ScoredId> merged = new ArrayList<>();
+        try {
+            for (Future<List<ScoredId>> future : futures) {
+                merged.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            // A missing shard would silently drop its results, so the query fails
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+
+        // Shards with overlapping ranges, e.g. while ranges are reassigned, return the same record more than once
+        Map<String, ScoredId> distinct = new HashMap<>();
+        for (ScoredId scoredId : merged) {
+            distinct.merge(scoredId.getId(), scoredId, (first, second) -> first.getScore() >= second.getScore() ? first : second);
+        }
+        return distinct.values().stream()
+                .sorted(Comparator.comparingDouble(ScoredId::getScore).reversed())
+                .limit(query.getLimit())
+                .map(ScoredId::getId)
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
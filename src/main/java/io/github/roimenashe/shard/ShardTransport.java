@@ -0,0 +1,19 @@
+package io.github.roimenashe.shard;
+
+import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.ShardQuery;
+
+import java.util.List;
+
+/**
+ * Sends queries to one shard, e.g. over HTTP or gRPC to the application instance indexing its partitions.
+ * The shard answers with {@link io.github.roimenashe.AerospikeSearch#searchShard(ShardQuery)}.
+ */
+@FunctionalInterface
+public interface ShardTransport {
+
+    /**
+     * @return Top ids of the shard with their scores, best first
+     */
+    List<ScoredId> search(ShardQuery query) throws Exception;
+}
@@ -5,23 +5,76 @@ import com.aerospike.client.Record;
 import com.aerospike.client.Key;
 import com.aerospike.client.ScanCallback;
 import com.aerospike.client.AerospikeException;
+import com.aerospike.client.exp.Expression;
 import com.aerospike.client.policy.BatchPolicy;
 import com.aerospike.client.policy.ScanPolicy;
+import com.aerospike.client.query.PartitionFilter;
+import io.github.roimenashe.model.PartitionRange;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 
 public class AerospikeConnection {
 
     private final IAerospikeClient client;
+    private final int scanRecordsPerSecond;
+    private final PartitionRange partitionRange;
 
     public AerospikeConnection(IAerospikeClient client) {
+        this(client, 0, PartitionRange.all());
+    }
+
+    /**
+     * @param scanRecordsPerSecond Maximum records per second returned by each server node to the scans of
+     *                             index builds, 0 for no limit
+     * @param partitionRange       Partitions covered by scans, the shard of the set indexed by this instance
+     */
+    public AerospikeConnection(IAerospikeClient client, int scanRecordsPerSecond, PartitionRange partitionRange) {
         this.client = client;
+        this.scanRecordsPerSecond = scanRecordsPerSecond;
+        this.partitionRange = partitionRange;
+    }
+
+    public PartitionRange getPartitionRange() {
+        return partitionRange;
+    }
+
+    /**
+     * A new filter over the partitions covered by scans.
+     */
+    public PartitionFilter newPartitionFilter() {
+        return partitionRange.toFilter();
     }
 
     public List<Record> fetchRecordsByDigest(String namespace, String set, List<String> encodedDigests) {
         List<Record> results = new ArrayList<>(encodedDigests.size());
+
+        for (Record record : fetchRecordArrayByDigest(namespace, set, encodedDigests)) {
+            if (record != null) {
+                results.add(record);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Fetches records in the order of the digests, with null for records that no longer exist (deleted or expired).
+     */
+    public Record[] fetchRecordArrayByDigest(String namespace, String set, List<String> encodedDigests) {
+        return fetchRecordArrayByDigest(namespace, set, encodedDigests, null);
+    }
+
+    /**
+     * Fetches records in the order of the digests, with null for records that no longer exist or that the
+     * filter expression rejects. The filter is evaluated by the server, rejected records are not transferred.
+     */
+    public Record[] fetchRecordArrayByDigest(String namespace, String set, List<String> encodedDigests,
+                                             Expression filterExpression) {
+        if (encodedDigests.isEmpty()) {
+            return new Record[0];
+        }
         Key[] keys = new Key[encodedDigests.size()];
 
         for (int i = 0; i < encodedDigests.size(); i++) {
@@ -29,19 +82,71 @@ public class AerospikeConnection {
             keys[i] = new Key(namespace, digest, set, null);
         }
 
+        return fetchRecordArrayByKeys(Arrays.asList(keys), filterExpression);
+    }
+
+    /**
+     * Fetches records of any namespaces and sets in one batch, in the order of the keys, with null for records
+     * that no longer exist or that the filter expression rejects.
+     */
+    public Record[] fetchRecordArrayByKeys(List<Key> keys, Expression filterExpression) {
+        if (keys.isEmpty()) {
+            return new Record[0];
+        }
         BatchPolicy batchPolicy = new BatchPolicy();
-        Record[] records = client.get(batchPolicy, keys);
+        batchPolicy.filterExp = filterExpression;
+        return client.get(batchPolicy, keys.toArray(Key[]::new));
+    }
 
-        for (Record record : records) {
-            if (record != null) {
-                results.add(record);
-            }
+    /**
+     * Fetches the given bins of records of any namespaces and sets in one batch, in the order of the keys,
+     * with null for records that no longer exist.
+     *
+     * @param binNames Bins to read, all bins if empty
+     */
+    public Record[] fetchRecordArrayByKeys(List<Key> keys, String... binNames) {
+        if (keys.isEmpty()) {
+            return new Record[0];
+        }
+        Key[] keyArray = keys.toArray(Key[]::new);
+        return binNames.length == 0 ? client.get(new BatchPolicy(), keyArray) : client.get(new BatchPolicy(), keyArray, binNames);
+    }
+
+    /**
+     * Scans the digests, generations and void-times of a set's records without their bins.
+     */
+    public void scanMetadata(String namespace, String set, ScanCallback scanCallback) throws AerospikeException {
+        ScanPolicy policy = newScanPolicy();
+        policy.includeBinData = false;
+        if (partitionRange.isAll()) {
+            client.scanAll(policy, namespace, set, scanCallback);
+        } else {
+            client.scanPartitions(policy, partitionRange.toFilter(), namespace, set, scanCallback);
         }
-        return results;
     }
 
     public void scan(String namespace, String set, ScanCallback scanCallback, String... binNames) throws AerospikeException {
+        ScanPolicy policy = newScanPolicy();
+        if (partitionRange.isAll()) {
+            client.scanAll(policy, namespace, set, scanCallback, binNames);
+        } else {
+            client.scanPartitions(policy, partitionRange.toFilter(), namespace, set, scanCallback, binNames);
+        }
+    }
+
+    /**
+     * Scans the partitions of the filter. The client records the progress of every partition in the filter,
+     * so a filter captured during the scan resumes it where it stopped.
+     */
+    public void scanPartitions(String namespace, String set, PartitionFilter partitionFilter, ScanCallback scanCallback,
+                               String... binNames) throws AerospikeException {
+        ScanPolicy policy = newScanPolicy();
+        client.scanPartitions(policy, partitionFilter, namespace, set, scanCallback, binNames);
+    }
+
+    private ScanPolicy newScanPolicy() {
         ScanPolicy policy = new ScanPolicy();
-        client.scanAll(policy, namespace, set, scanCallback, binNames);
+        policy.recordsPerSecond = scanRecordsPerSecond;
+        return policy;
     }
 }
@@ -0,0 +1,100 @@
+package io.github.roimenashe.util;
+
+import com.aerospike.client.Record;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+
+public class ExpirationUtil {
+
+    /**
+     * Index field holding the record void-time in epoch seconds. Records that never expire have no value.
+     */
+    public static final String VOID_TIME_FIELD = "_voidTime";
+
+    /**
+     * Aerospike expresses void-times in seconds since 2010-01-01T00:00:00Z.
+     */
+    private static final long CITRUSLEAF_EPOCH_SECONDS = 1262304000L;
+
+    public static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Void-time of a record in epoch seconds, 0 if it never expires.
+     */
+    public static long getVoidTime(Record record) {
+        return record.expiration == 0 ? 0 : record.expiration + CITRUSLEAF_EPOCH_SECONDS;
+    }
+
+    /**
+     * Stores the void-time of a TTL record so that it can be excluded once expired and swept from the index.
+     */
+    public static void addVoidTime(Document doc, Record record) {
+        if (record.expiration == 0) return;
+        long voidTime = getVoidTime(record);
+        doc.add(new LongPoint(VOID_TIME_FIELD, voidTime));
+        doc.add(new NumericDocValuesField(VOID_TIME_FIELD, voidTime));
+    }
+
+    /**
+     * Matches documents of records expired at the given time.
+     */
+    public static Query expiredQuery(long nowSeconds) {
+        return LongPoint.newRangeQuery(VOID_TIME_FIELD, Long.MIN_VALUE, nowSeconds);
+    }
+
+    /**
+     * Matches documents of records still alive at the given time.
+     */
+    public static Query liveQuery(long nowSeconds) {
+        return new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.FILTER)
+                .add(expiredQuery(nowSeconds), BooleanClause.Occur.MUST_NOT)
+                .build();
+    }
+
+    /**
+     * Restricts a query to live documents, scores are unchanged.
+     */
+    public static Query excludeExpired(Query query, long nowSeconds) {
+        return new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(expiredQuery(nowSeconds), BooleanClause.Occur.MUST_NOT)
+                .build();
+    }
+
+    /**
+     * Whether the index holds documents of records expired at the given time. Reads only the per-segment
+     * minimum void-time, so queries skip the expiration filter until the first record expires.
+     */
+    public static boolean hasExpired(IndexReader reader, long nowSeconds) throws IOException {
+        for (LeafReaderContext leaf : reader.leaves()) {
+            PointValues pointValues = leaf.reader().getPointValues(VOID_TIME_FIELD);
+            if (pointValues != null && pointValues.size() > 0
+                    && LongPoint.decodeDimension(pointValues.getMinPackedValue(), 0) <= nowSeconds) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a document read from the void-time doc values is expired. The doc values must be positioned
+     * at or before the document.
+     */
+    public static boolean isExpired(NumericDocValues voidTimes, int doc, long nowSeconds) throws IOException {
+        return voidTimes != null && voidTimes.advanceExact(doc) && voidTimes.longValue() <= nowSeconds;
+    }
+}
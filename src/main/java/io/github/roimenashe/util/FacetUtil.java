@@ -0,0 +1,46 @@
+package io.github.roimenashe.util;
+
+import com.aerospike.client.Record;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.Collection;
+import java.util.List;
+
+public class FacetUtil {
+
+    /**
+     * Prefix of the doc values fields holding keyword facet values.
+     */
+    public static final String FACET_FIELD_PREFIX = "_facet:";
+
+    public static String getFacetField(String binName) {
+        return FACET_FIELD_PREFIX + binName;
+    }
+
+    /**
+     * Adds keyword values as sorted set doc values, and numeric values as the bin's sortable doc values
+     * unless the bin is already sortable.
+     */
+    public static void addFacetValues(Document doc, Record record, Collection<String> facetBins,
+                                      Collection<String> sortableBins) {
+        for (String binName : facetBins) {
+            switch (record.getValue(binName)) {
+                case String value -> doc.add(new SortedSetDocValuesField(getFacetField(binName), new BytesRef(value)));
+                case List<?> values -> {
+                    for (Object value : values) {
+                        if (value instanceof String keyword) {
+                            doc.add(new SortedSetDocValuesField(getFacetField(binName), new BytesRef(keyword)));
+                        }
+                    }
+                }
+                case Number number when !sortableBins.contains(binName) ->
+                        doc.add(new DoubleDocValuesField(SortUtil.getSortField(binName), number.doubleValue()));
+                case null, default -> {
+                }
+            }
+        }
+    }
+}
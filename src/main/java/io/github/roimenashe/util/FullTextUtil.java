@@ -5,4 +5,11 @@ public class FullTextUtil {
     public static String getFullTextUniqueIndexName(String namespace, String set) {
         return namespace + ":" + set;
     }
+
+    /**
+     * Name of a physical index shared by several sets of a namespace, distinct from any set's index name.
+     */
+    public static String getSharedIndexName(String namespace, String sharedIndex) {
+        return namespace + "::" + sharedIndex;
+    }
 }
@@ -0,0 +1,23 @@
+package io.github.roimenashe.util;
+
+import org.apache.lucene.index.QueryTimeoutImpl;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.time.Duration;
+
+public class SearchUtil {
+
+    /**
+     * Returns a searcher that stops collecting once the timeout has elapsed.
+     * The timeout is a searcher-level setting, so a lightweight searcher is created per query
+     * over the same reader instead of mutating the shared one.
+     */
+    public static IndexSearcher withTimeout(IndexSearcher indexSearcher, Duration timeout) {
+        if (timeout == null) {
+            return indexSearcher;
+        }
+        IndexSearcher searcher = new IndexSearcher(indexSearcher.getIndexReader());
+        searcher.setTimeout(new QueryTimeoutImpl(timeout.toMillis()));
+        return searcher;
+    }
+}
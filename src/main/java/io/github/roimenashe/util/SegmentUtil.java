@@ -0,0 +1,55 @@
+package io.github.roimenashe.util;
+
+import io.github.roimenashe.model.IndexOptions;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+public class SegmentUtil {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentUtil.class);
+
+    /**
+     * Applies the segment options of a build to its writer. Writers outlive builds, so unset options restore
+     * Lucene's defaults rather than keeping those of a previous build.
+     */
+    public static void applySegmentOptions(IndexWriter writer, IndexOptions options) {
+        writer.getConfig().setRAMBufferSizeMB(options.getRamBufferSizeMb() > 0
+                ? options.getRamBufferSizeMb() : IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        if (options.getSegmentsPerTier() > 0) {
+            mergePolicy.setSegmentsPerTier(options.getSegmentsPerTier());
+        }
+        if (options.getMaxMergedSegmentMb() > 0) {
+            mergePolicy.setMaxMergedSegmentMB(options.getMaxMergedSegmentMb());
+        }
+        writer.getConfig().setMergePolicy(mergePolicy);
+        if (writer.getConfig().getMergeScheduler() instanceof ConcurrentMergeScheduler scheduler) {
+            int threads = options.getMergeThreads();
+            if (threads > 0) {
+                // Lucene's default backlog of merges over the thread count
+                scheduler.setMaxMergesAndThreads(threads + 5, threads);
+            } else {
+                // Auto-detection only happens when the writer opens, so the defaults are set explicitly
+                scheduler.setDefaultMaxMergesAndThreads(false);
+            }
+        }
+    }
+
+    /**
+     * Merges the segments of a completed build down to {@link IndexOptions#getForceMergeSegments()}, if set.
+     * Called before the build commits, so the merged segments are committed and searched right away.
+     */
+    public static void forceMerge(String key, IndexWriter writer, IndexOptions options) throws IOException {
+        if (options.getForceMergeSegments() == 0) return;
+        long start = System.nanoTime();
+        writer.forceMerge(options.getForceMergeSegments());
+        log.info("Merged [{}] down to {} segments in {}ms", key, options.getForceMergeSegments(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
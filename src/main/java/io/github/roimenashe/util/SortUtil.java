@@ -0,0 +1,87 @@
+package io.github.roimenashe.util;
+
+import com.aerospike.client.Record;
+import io.github.roimenashe.model.SortBy;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SortUtil {
+
+    /**
+     * Prefix of the doc values fields holding sortable bins, kept apart from the text fields of the same bins.
+     */
+    public static final String SORT_FIELD_PREFIX = "_sort:";
+
+    public static String getSortField(String binName) {
+        return SORT_FIELD_PREFIX + binName;
+    }
+
+    public static void addSortableValues(Document doc, Record record, Collection<String> binNames) {
+        for (String binName : binNames) {
+            if (record.getValue(binName) instanceof Number number) {
+                doc.add(new DoubleDocValuesField(getSortField(binName), number.doubleValue()));
+            }
+        }
+    }
+
+    public static Sort toSort(SortBy sortBy) {
+        if (sortBy == null) {
+            return null;
+        }
+        SortField sortField = new SortField(getSortField(sortBy.getBinName()), SortField.Type.DOUBLE, sortBy.isDescending());
+        // Records without a value come last in both directions
+        sortField.setMissingValue(sortBy.isDescending() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+        return new Sort(sortField);
+    }
+
+    /**
+     * Reorders already collected hits by a sortable bin, for result sets that are not collected in sort order
+     * (e.g. the k nearest neighbors of a vector query).
+     */
+    public static TopDocs sortHits(IndexSearcher indexSearcher, TopDocs topDocs, SortBy sortBy) throws IOException {
+        List<LeafReaderContext> leaves = indexSearcher.getIndexReader().leaves();
+        double missing = sortBy.isDescending() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        String field = getSortField(sortBy.getBinName());
+
+        // Doc values iterate forward only, so read them in doc id order
+        ScoreDoc[] byDoc = topDocs.scoreDocs.clone();
+        Arrays.sort(byDoc, Comparator.comparingInt(sd -> sd.doc));
+        Map<ScoreDoc, Double> values = new HashMap<>();
+        int leafOrd = -1;
+        NumericDocValues docValues = null;
+        for (ScoreDoc hit : byDoc) {
+            int ord = ReaderUtil.subIndex(hit.doc, leaves);
+            LeafReaderContext leaf = leaves.get(ord);
+            if (ord != leafOrd) {
+                leafOrd = ord;
+                docValues = leaf.reader().getNumericDocValues(field);
+            }
+            double value = missing;
+            if (docValues != null && docValues.advanceExact(hit.doc - leaf.docBase)) {
+                value = Double.longBitsToDouble(docValues.longValue());
+            }
+            values.put(hit, value);
+        }
+
+        Comparator<ScoreDoc> comparator = Comparator.comparingDouble(values::get);
+        ScoreDoc[] sorted = topDocs.scoreDocs.clone();
+        Arrays.sort(sorted, sortBy.isDescending() ? comparator.reversed() : comparator);
+        return new TopDocs(topDocs.totalHits, sorted);
+    }
+}
@@ -8,8 +8,30 @@ import java.nio.ByteOrder;
 
 public class VectorUtil {
 
-    public static String getUniqueVectorIndexName(String namespace, String set, SimilarityFunction similarityFunction) {
-        return namespace + ":" + set + ":" + similarityFunction.name();
+    public static String getUniqueVectorIndexName(String namespace, String set) {
+        return namespace + ":" + set + ":vector";
+    }
+
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(org.apache.lucene.util.VectorUtil.dotProduct(vector, vector));
+    }
+
+    public static boolean isUnitLength(float[] vector) {
+        return Math.abs(norm(vector) - 1f) < 1e-4f;
+    }
+
+    /**
+     * Returns a unit-length copy of the vector. Zero vectors are returned as is.
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = norm(vector);
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] /= norm;
+            }
+        }
+        return normalized;
     }
 
     public static byte[] floatsToBytes(float[] floats) {
@@ -22,8 +44,12 @@ public class VectorUtil {
     }
 
     public static float[] bytesToFloats(byte[] bytes) {
-        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
-        float[] floats = new float[bytes.length / 4];
+        return bytesToFloats(bytes, 0, bytes.length);
+    }
+
+    public static float[] bytesToFloats(byte[] bytes, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        float[] floats = new float[length / 4];
         for (int i = 0; i < floats.length; i++) {
             floats[i] = buffer.getFloat();
         }
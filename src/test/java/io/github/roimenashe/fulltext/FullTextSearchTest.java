@@ -1,16 +1,40 @@
 package io.github.roimenashe.fulltext;
 
 import io.github.roimenashe.AerospikeSearch;
+import io.github.roimenashe.AerospikeSearchConfig;
 import io.github.roimenashe.BaseTest;
+import io.github.roimenashe.OverloadedException;
 import com.aerospike.client.Key;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Record;
+import com.aerospike.client.exp.Exp;
+import com.aerospike.client.policy.WritePolicy;
+import io.github.roimenashe.index.IndexEventListener;
+import io.github.roimenashe.model.ConsistencyReport;
+import io.github.roimenashe.model.FacetResult;
+import io.github.roimenashe.model.HighlightedRecord;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.IndexSpec;
 import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.model.NamespaceSet;
+import io.github.roimenashe.model.QueryPriority;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.SearchResults;
+import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.SortBy;
+import io.github.roimenashe.model.StorageMode;
+import io.github.roimenashe.util.FullTextUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class FullTextSearchTest extends BaseTest {
 
@@ -112,6 +136,446 @@ public class FullTextSearchTest extends BaseTest {
         }
     }
 
+    @Test
+    void testOffHeapFullTextIndexAndSearch() throws Exception {
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults().setStorageMode(StorageMode.OFF_HEAP);
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createFullTextIndex(NAMESPACE, SET);
+
+            List<Record> results = search.searchText(NAMESPACE, SET, "Lucene", 10);
+            Assertions.assertEquals(2, results.size());
+
+            // Off-heap usage is reported per index
+            Map<String, Long> usage = search.getIndexMemoryUsage();
+            Assertions.assertEquals(1, usage.size());
+            Assertions.assertTrue(usage.values().iterator().next() > 0);
+
+            // The directory files are mapped from is resolved even without a configured path
+            Assertions.assertNotNull(search.getOffHeapPath());
+        }
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            Assertions.assertNull(search.getOffHeapPath());
+        }
+    }
+
+    @Test
+    void testMemoryBudgetEvictsColdIndexes() throws Exception {
+        final String notesSet = "notes";
+        aerospikeClient.put(null, new Key(NAMESPACE, notesSet, "note1"),
+                new Bin("text", "Lucene notes"));
+
+        List<String> evicted = new ArrayList<>();
+        List<String> reloaded = new ArrayList<>();
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults()
+                .setMemoryBudget(1) // only one index fits at a time
+                .addIndexEventListener(new IndexEventListener() {
+                    @Override
+                    public void onEvict(String indexName, long sizeInBytes) {
+                        evicted.add(indexName);
+                    }
+
+                    @Override
+                    public void onReload(String indexName, long sizeInBytes) {
+                        reloaded.add(indexName);
+                    }
+                });
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createFullTextIndex(NAMESPACE, SET);
+            search.createFullTextIndex(NAMESPACE, notesSet);
+
+            // The first index was evicted, but is still listed
+            Assertions.assertEquals(List.of(NAMESPACE + ":" + SET), evicted);
+            Assertions.assertEquals(2, search.listIndexes().size());
+            Assertions.assertEquals(1, search.getIndexMemoryUsage().size());
+
+            // Querying the evicted index reloads it lazily
+            List<Record> results = search.searchText(NAMESPACE, SET, "Lucene", 10);
+            Assertions.assertEquals(2, results.size());
+            Assertions.assertEquals(List.of(NAMESPACE + ":" + SET), reloaded);
+            Assertions.assertEquals(List.of(NAMESPACE + ":" + SET, NAMESPACE + ":" + notesSet), evicted);
+        }
+    }
+
+    @Test
+    void testExpiredRecordsAreExcludedAndSwept() throws Exception {
+        final String sessionsSet = "sessions";
+        WritePolicy shortTtl = new WritePolicy();
+        shortTtl.expiration = 1;
+        aerospikeClient.put(shortTtl, new Key(NAMESPACE, sessionsSet, "s1"), new Bin("text", "active session"));
+        aerospikeClient.put(shortTtl, new Key(NAMESPACE, sessionsSet, "s2"), new Bin("text", "active session"));
+        aerospikeClient.put(null, new Key(NAMESPACE, sessionsSet, "s3"), new Bin("text", "active session"));
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, sessionsSet);
+            Thread.sleep(2500);
+
+            // Expired documents are filtered out before the batch read
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, sessionsSet, "session", 10).size());
+
+            Assertions.assertEquals(2, search.deleteExpired());
+            Assertions.assertEquals(0, search.deleteExpired());
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, sessionsSet, "session", 10).size());
+        }
+    }
+
+    @Test
+    void testExpiredRecordsOfReloadedIndexAreSwept() throws Exception {
+        final String sessionsSet = "sessions";
+        final String notesSet = "notes";
+        WritePolicy shortTtl = new WritePolicy();
+        shortTtl.expiration = 1;
+        aerospikeClient.put(shortTtl, new Key(NAMESPACE, sessionsSet, "s1"), new Bin("text", "active session"));
+        aerospikeClient.put(shortTtl, new Key(NAMESPACE, sessionsSet, "s2"), new Bin("text", "active session"));
+        aerospikeClient.put(null, new Key(NAMESPACE, sessionsSet, "s3"), new Bin("text", "active session"));
+        aerospikeClient.put(null, new Key(NAMESPACE, notesSet, "note1"), new Bin("text", "Lucene notes"));
+
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults().setMemoryBudget(1);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createFullTextIndex(NAMESPACE, sessionsSet);
+            // Evicts the sessions index, the query below reloads it without a writer
+            search.createFullTextIndex(NAMESPACE, notesSet);
+            Thread.sleep(2500);
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, sessionsSet, "session", 10).size());
+
+            Assertions.assertEquals(2, search.deleteExpired());
+            Assertions.assertEquals(0, search.deleteExpired());
+        }
+    }
+
+    @Test
+    void testSearchRefillsDeletedRecords() throws Exception {
+        final String itemsSet = "items";
+        for (int i = 0; i < 6; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, itemsSet, "item" + i),
+                    new Bin("name", "item" + i), new Bin("text", "refill item"));
+        }
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, itemsSet);
+
+            // Delete the current top results behind the index's back
+            for (Record record : search.searchText(NAMESPACE, itemsSet, "refill", 3)) {
+                aerospikeClient.delete(null, new Key(NAMESPACE, itemsSet, record.getString("name")));
+            }
+
+            // The search tops up with the next live records
+            List<Record> results = search.searchText(NAMESPACE, itemsSet, "refill", 3);
+            Assertions.assertEquals(3, results.size());
+        }
+    }
+
+    @Test
+    void testSearchWithFilterExpression() throws Exception {
+        final String ordersSet = "orders";
+        for (int i = 0; i < 20; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, ordersSet, "order" + i),
+                    new Bin("text", "laptop order"), new Bin("status", i % 5 == 0 ? "active" : "closed"));
+        }
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, ordersSet, "text");
+
+            SearchOptions options = SearchOptions.defaults()
+                    .setFilterExpression(Exp.build(Exp.eq(Exp.stringBin("status"), Exp.val("active"))));
+            List<Record> results = search.searchText(NAMESPACE, ordersSet, "laptop", 4, options);
+
+            // Only active orders come back, and over-fetching fills the limit
+            Assertions.assertEquals(4, results.size());
+            results.forEach(r -> Assertions.assertEquals("active", r.getString("status")));
+        }
+    }
+
+    @Test
+    void testSortedSearchByNumericBins() throws Exception {
+        final String productsSet = "products";
+        for (int i = 0; i < 10; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, productsSet, "product" + i),
+                    new Bin("text", "wireless phone"), new Bin("price", (i * 7) % 10), new Bin("rating", i / 2.0));
+        }
+        aerospikeClient.put(null, new Key(NAMESPACE, productsSet, "unpriced"), new Bin("text", "wireless phone"));
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, productsSet,
+                    IndexOptions.defaults().setIndexSort(SortBy.ascending("price")).setSortableBins("rating"), "text");
+
+            // Cheapest matches, served in index order
+            List<Record> cheapest = search.searchText(NAMESPACE, productsSet, "phone", 3,
+                    SearchOptions.defaults().setSortBy(SortBy.ascending("price")));
+            Assertions.assertEquals(List.of(0L, 1L, 2L), cheapest.stream().map(r -> r.getLong("price")).toList());
+
+            // Most expensive matches, records without a price come last
+            List<Record> priciest = search.searchText(NAMESPACE, productsSet, "phone", 11,
+                    SearchOptions.defaults().setSortBy(SortBy.descending("price")));
+            Assertions.assertEquals(9L, priciest.getFirst().getLong("price"));
+            Assertions.assertNull(priciest.getLast().getValue("price"));
+
+            List<Record> bestRated = search.searchText(NAMESPACE, productsSet, "phone", 2,
+                    SearchOptions.defaults().setSortBy(SortBy.descending("rating")));
+            Assertions.assertEquals(List.of(4.5, 4.0), bestRated.stream().map(r -> r.getDouble("rating")).toList());
+        }
+    }
+
+    @Test
+    void testSearchWithFacets() throws Exception {
+        final String catalogSet = "catalog";
+        String[] categories = {"phones", "phones", "phones", "laptops", "laptops", "tablets"};
+        for (int i = 0; i < categories.length; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, catalogSet, "item" + i),
+                    new Bin("text", "wireless device"), new Bin("category", categories[i]), new Bin("price", 100 * (i + 1)));
+        }
+        aerospikeClient.put(null, new Key(NAMESPACE, catalogSet, "cable"),
+                new Bin("text", "usb cable"), new Bin("category", "accessories"), new Bin("price", 5));
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, catalogSet, IndexOptions.defaults().setFacetBins("category", "price"), "text");
+
+            SearchResults<Record> results = search.searchTextWithFacets(NAMESPACE, catalogSet, "wireless", 2,
+                    SearchOptions.defaults().setFacets("category", "price"));
+
+            // Facets cover all 6 matches, not only the 2 returned records
+            Assertions.assertEquals(2, results.getResults().size());
+            Assertions.assertEquals(Map.of("phones", 3L, "laptops", 2L, "tablets", 1L), results.getFacet("category").getCounts());
+
+            FacetResult price = results.getFacet("price");
+            Assertions.assertEquals(6, price.getCount());
+            Assertions.assertEquals(100, price.getMin());
+            Assertions.assertEquals(600, price.getMax());
+            Assertions.assertEquals(2100, price.getSum());
+        }
+    }
+
+    @Test
+    void testSuggestions() throws Exception {
+        final String citiesSet = "cities";
+        aerospikeClient.put(null, new Key(NAMESPACE, citiesSet, "london"), new Bin("name", "London"), new Bin("population", 8_900_000));
+        aerospikeClient.put(null, new Key(NAMESPACE, citiesSet, "longbeach"), new Bin("name", "Long Beach"), new Bin("population", 460_000));
+        aerospikeClient.put(null, new Key(NAMESPACE, citiesSet, "lyon"), new Bin("name", "Lyon"), new Bin("population", 520_000));
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, citiesSet,
+                    IndexOptions.defaults().setSuggestBins("name").setSuggestWeightBin("population"), "name");
+
+            // Completions ordered by weight
+            Assertions.assertEquals(List.of("London", "Long Beach"), search.suggest(NAMESPACE, citiesSet, "lon", 5));
+            Assertions.assertEquals(List.of("London"), search.suggest(NAMESPACE, citiesSet, "l", 1));
+            Assertions.assertTrue(search.suggest(NAMESPACE, citiesSet, "lodn", 5).isEmpty());
+
+            // Typo-tolerant suggestions
+            search.createFullTextIndex(NAMESPACE, citiesSet,
+                    IndexOptions.defaults().setSuggestBins("name").setFuzzySuggestions(true), "name");
+            Assertions.assertTrue(search.suggest(NAMESPACE, citiesSet, "lodn", 5).contains("London"));
+        }
+    }
+
+    @Test
+    void testHighlightedSearch() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, SET, IndexOptions.defaults().setHighlightBins("body"));
+
+            List<HighlightedRecord> results = search.searchTextHighlighted(NAMESPACE, SET, "latency", 10,
+                    SearchOptions.defaults());
+
+            Assertions.assertEquals(1, results.size());
+            Assertions.assertEquals("Distributed Databases", results.getFirst().getRecord().getString("title"));
+            Assertions.assertEquals("Aerospike provides low <b>latency</b> storage.", results.getFirst().getHighlight("body"));
+
+            // Bins indexed without offsets are not highlighted
+            results = search.searchTextHighlighted(NAMESPACE, SET, "Lucene", 10, SearchOptions.defaults());
+            Assertions.assertEquals(2, results.size());
+            results.forEach(r -> Assertions.assertNull(r.getHighlight("title")));
+        }
+    }
+
+    @Test
+    void testCrossSetSearch() throws Exception {
+        final String euSet = "articles-eu";
+        final String usSet = "articles-us";
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            aerospikeClient.put(null, new Key(NAMESPACE, euSet, "eu1"),
+                    new Bin("body", "Lucene search in Europe"), new Bin("region", "eu"));
+            aerospikeClient.put(null, new Key(NAMESPACE, euSet, "eu2"),
+                    new Bin("body", "Aerospike clusters in Europe"), new Bin("region", "eu"));
+            aerospikeClient.put(null, new Key(NAMESPACE, usSet, "us1"),
+                    new Bin("body", "Lucene Lucene Lucene"), new Bin("region", "us"));
+
+            search.createFullTextIndex(NAMESPACE, euSet);
+            search.createFullTextIndex(NAMESPACE, usSet);
+
+            List<NamespaceSet> sets = List.of(NamespaceSet.of(NAMESPACE, euSet), NamespaceSet.of(NAMESPACE, usSet));
+            List<Record> results = search.searchText(sets, "Lucene", 10, SearchOptions.defaults());
+
+            // One global ranking over both sets, each record read from its own set
+            Assertions.assertEquals(List.of("us", "eu"), results.stream().map(r -> r.getString("region")).toList());
+
+            results = search.searchText(sets, "Lucene OR Aerospike", 1, SearchOptions.defaults());
+            Assertions.assertEquals(1, results.size());
+
+            results = search.searchText(sets, "Europe", 10,
+                    SearchOptions.defaults().setFilterExpression(Exp.build(Exp.eq(Exp.stringBin("body"), Exp.val("Lucene search in Europe")))));
+            Assertions.assertEquals(1, results.size());
+        }
+    }
+
+    @Test
+    void testSharedIndexForSmallSets() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            IndexOptions shared = IndexOptions.defaults().setSharedIndex("tenants");
+            for (String tenant : List.of("tenant1", "tenant2", "tenant3")) {
+                aerospikeClient.put(null, new Key(NAMESPACE, tenant, "note"),
+                        new Bin("text", "Lucene notes of " + tenant), new Bin("tenant", tenant));
+                search.createFullTextIndex(NAMESPACE, tenant, shared);
+            }
+
+            // One physical index, listed per set
+            Assertions.assertEquals(1, search.getIndexMemoryUsage().size());
+            Assertions.assertEquals(3, search.listIndexes().size());
+
+            List<Record> results = search.searchText(NAMESPACE, "tenant2", "Lucene", 10);
+            Assertions.assertEquals(List.of("tenant2"), results.stream().map(r -> r.getString("tenant")).toList());
+
+            // Rebuilding a set replaces only its own documents
+            aerospikeClient.put(null, new Key(NAMESPACE, "tenant1", "note2"),
+                    new Bin("text", "More Lucene notes"), new Bin("tenant", "tenant1"));
+            search.createFullTextIndex(NAMESPACE, "tenant1", shared);
+            Assertions.assertEquals(2, search.searchText(NAMESPACE, "tenant1", "Lucene", 10).size());
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, "tenant3", "Lucene", 10).size());
+
+            // Sets of a shared index and dedicated indexes can be searched together
+            search.createFullTextIndex(NAMESPACE, SET);
+            results = search.searchText(List.of(NamespaceSet.of(NAMESPACE, "tenant1"), NamespaceSet.of(NAMESPACE, "tenant3"),
+                    NamespaceSet.of(NAMESPACE, SET)), "notes OR Java", 10, SearchOptions.defaults());
+            Assertions.assertEquals(4, results.size());
+        }
+    }
+
+    @Test
+    void testSharedIndexRollsBackFailedBuildsAndRejectsConflictingBins() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            IndexOptions shared = IndexOptions.defaults().setSharedIndex("shops");
+            for (String shop : List.of("shop1", "shop2")) {
+                aerospikeClient.put(null, new Key(NAMESPACE, shop, "note"),
+                        new Bin("text", "Lucene notes of " + shop));
+            }
+            search.createFullTextIndex(NAMESPACE, "shop1", shared);
+
+            // The scan fails midway, the rebuild of shop1 is rolled back instead of left pending in the writer,
+            // where the next commit of another set would publish it
+            aerospikeClient.put(null, new Key(NAMESPACE, "shop1", "note"), new Bin("text", "Aerospike notes of shop1"));
+            Assertions.assertThrows(Exception.class, () -> search.createIndexes(NAMESPACE, "shop1",
+                    IndexSpec.fullText().setOptions(shared),
+                    IndexSpec.vector(record -> {
+                        throw new IllegalStateException("Embedding service unavailable");
+                    }, SimilarityFunction.DOT_PRODUCT)));
+            search.createFullTextIndex(NAMESPACE, "shop2", shared);
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, "shop1", "Lucene", 10).size());
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, "shop2", "Lucene", 10).size());
+
+            // A bin highlighted by one set and not by another would need two index options for one field
+            IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> search.createFullTextIndex(NAMESPACE, "shop2", IndexOptions.defaults()
+                            .setSharedIndex("shops").setHighlightBins("text")));
+            Assertions.assertTrue(e.getMessage().contains("text"));
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, "shop2", "Lucene", 10).size());
+        }
+    }
+
+    @Test
+    void testFailedMoveToSharedIndexKeepsPreviousIndex() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            aerospikeClient.put(null, new Key(NAMESPACE, "shop3", "note"), new Bin("text", "Lucene notes of shop3"));
+            search.createFullTextIndex(NAMESPACE, "shop3");
+            String dedicated = FullTextUtil.getFullTextUniqueIndexName(NAMESPACE, "shop3");
+
+            // The build into the shared index fails, the set keeps its dedicated index
+            IndexOptions shared = IndexOptions.defaults().setSharedIndex("shops");
+            Assertions.assertThrows(Exception.class, () -> search.createIndexes(NAMESPACE, "shop3",
+                    IndexSpec.fullText().setOptions(shared),
+                    IndexSpec.vector(record -> {
+                        throw new IllegalStateException("Embedding service unavailable");
+                    }, SimilarityFunction.DOT_PRODUCT)));
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, "shop3", "Lucene", 10).size());
+            Assertions.assertTrue(search.getIndexMemoryUsage().containsKey(dedicated));
+
+            // Once the shared index is live, the dedicated one is dropped
+            search.createFullTextIndex(NAMESPACE, "shop3", shared);
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, "shop3", "Lucene", 10).size());
+            Assertions.assertFalse(search.getIndexMemoryUsage().containsKey(dedicated));
+        }
+    }
+
+    @Test
+    void testVerifyAndRepairIndex() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            String set = "verify";
+            aerospikeClient.truncate(null, NAMESPACE, set, null);
+            for (int i = 0; i < 3; i++) {
+                aerospikeClient.put(null, new Key(NAMESPACE, set, "doc" + i), new Bin("text", "Lucene document " + i));
+            }
+            search.createFullTextIndex(NAMESPACE, set);
+            Assertions.assertTrue(search.verifyIndex(NAMESPACE, set, IndexType.FULL_TEXT, false).isConsistent());
+
+            // Writes not applied to the index: a new record, an updated record and a deleted record
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "doc3"), new Bin("text", "Lucene document 3"));
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "doc1"), new Bin("text", "Aerospike document 1"));
+            aerospikeClient.delete(null, new Key(NAMESPACE, set, "doc2"));
+
+            ConsistencyReport report = search.verifyIndex(NAMESPACE, set, IndexType.FULL_TEXT, true);
+            Assertions.assertEquals(3, report.getIndexed());
+            Assertions.assertEquals(3, report.getScanned());
+            Assertions.assertEquals(1, report.getMissing().size());
+            Assertions.assertEquals(1, report.getStale().size());
+            Assertions.assertEquals(1, report.getExtra().size());
+            Assertions.assertTrue(report.isRepaired());
+
+            Assertions.assertTrue(search.verifyIndex(NAMESPACE, set, IndexType.FULL_TEXT, false).isConsistent());
+            Assertions.assertEquals(2, search.searchText(NAMESPACE, set, "Lucene", 10).size());
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, set, "Aerospike", 10).size());
+        }
+    }
+
+    @Test
+    void testQueriesOverCapacityAreRejected() throws Exception {
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults()
+                .setMaxConcurrentQueries(1)
+                .setQueueTimeout(Duration.ofMillis(50))
+                .setBuildRecordsPerSecond(1000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createFullTextIndex(NAMESPACE, SET);
+
+            // A slow query holds the only slot
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            SearchOptions slow = SearchOptions.defaults().setReranker(candidates -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new float[candidates.size()];
+            }, 10);
+            Future<List<Record>> slowResults = executor.submit(() -> search.searchText(NAMESPACE, SET, "Lucene", 10, slow));
+            started.await();
+
+            Assertions.assertThrows(OverloadedException.class, () -> search.searchText(NAMESPACE, SET, "Lucene", 10));
+            Assertions.assertThrows(OverloadedException.class, () -> search.searchText(NAMESPACE, SET, "Lucene", 10,
+                    SearchOptions.defaults().setPriority(QueryPriority.BACKGROUND)));
+            // Builds have their own pool
+            search.createFullTextIndex(NAMESPACE, "set2");
+
+            release.countDown();
+            Assertions.assertEquals(2, slowResults.get().size());
+            Assertions.assertEquals(2, search.searchText(NAMESPACE, SET, "Lucene", 10).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     void testListFullTextIndexes() throws Exception {
         try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
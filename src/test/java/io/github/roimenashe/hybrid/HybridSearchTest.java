@@ -2,12 +2,26 @@ package io.github.roimenashe.hybrid;
 
 import io.github.roimenashe.AerospikeSearch;
 import io.github.roimenashe.BaseTest;
+import com.aerospike.client.Key;
 import com.aerospike.client.Record;
+import io.github.roimenashe.model.IndexSpec;
+import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.model.SearchOptions;
 import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.search.QueryEmbedder;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 public class HybridSearchTest extends BaseTest {
 
@@ -74,4 +88,160 @@ public class HybridSearchTest extends BaseTest {
             Assertions.assertEquals(3, results.size());
         }
     }
+
+    @Test
+    void testHybridSearchWithSingleScanBuild() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            // Build full-text (body bin only) and two vector fields from one scan
+            search.createIndexes(NAMESPACE, SET,
+                    IndexSpec.fullText("body"),
+                    IndexSpec.vector("vectorBin", SimilarityFunction.DOT_PRODUCT),
+                    IndexSpec.vector("vectorBin", SimilarityFunction.EUCLIDEAN));
+
+            // Vector fields share one vector index per set
+            Assertions.assertEquals(2, search.listIndexes().size());
+
+            // Only the body bin is full-text indexed, even though the scan also read the vector bin
+            Assertions.assertEquals(1, search.searchText(NAMESPACE, SET, "Java", 10).size());
+            Assertions.assertTrue(search.searchText(NAMESPACE, SET, "Distributed", 10).isEmpty());
+
+            List<Record> results = search.searchHybrid(NAMESPACE,
+                    SET,
+                    "Lucene",
+                    new float[]{1f, 0f, 1f},
+                    SimilarityFunction.DOT_PRODUCT,
+                    10,
+                    0.6,
+                    0.4);
+            Assertions.assertEquals(3, results.size());
+        }
+    }
+
+    @Test
+    void testHybridSearchWithQueryEmbedder() throws Exception {
+        Function<String, float[]> embed = text -> {
+            String lower = text.toLowerCase();
+            return new float[]{lower.contains("lucene") ? 1f : 0f, lower.contains("aerospike") ? 1f : 0f,
+                    lower.contains("search") ? 1f : 0f};
+        };
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient);
+             QueryEmbedder queryEmbedder = QueryEmbedder.batched(texts -> {
+                 batchSizes.add(texts.size());
+                 return texts.stream().map(embed).toList();
+             }, 100, Duration.ofMillis(200), 8)) {
+            search.createFullTextIndex(NAMESPACE, SET);
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.DOT_PRODUCT);
+
+            // Concurrent identical queries share one embedder call
+            List<Future<List<Record>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> search.searchHybrid(NAMESPACE, SET, "Lucene", queryEmbedder,
+                        SimilarityFunction.DOT_PRODUCT, 10, 0.6, 0.4, SearchOptions.defaults())));
+            }
+            for (Future<List<Record>> future : futures) {
+                Assertions.assertEquals(3, future.get().size());
+            }
+            Assertions.assertEquals(List.of(1), batchSizes);
+
+            // Distinct queries within the window are embedded in one batch
+            futures.clear();
+            for (String query : List.of("Aerospike", "search", "Lucene search")) {
+                futures.add(executor.submit(() -> search.searchVector(NAMESPACE, SET, query, queryEmbedder, 3,
+                        SimilarityFunction.DOT_PRODUCT, SearchOptions.defaults())));
+            }
+            for (Future<List<Record>> future : futures) {
+                Assertions.assertFalse(future.get().isEmpty());
+            }
+            Assertions.assertEquals(List.of(1, 3), batchSizes);
+
+            // Repeated queries are served from the cache
+            search.searchVector(NAMESPACE, SET, "Lucene", queryEmbedder, 3, SimilarityFunction.DOT_PRODUCT, SearchOptions.defaults());
+            Assertions.assertEquals(2, queryEmbedder.getEmbedderCalls());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testQueryEmbedderFailuresAndTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (QueryEmbedder queryEmbedder = QueryEmbedder.batched(texts -> {
+            if (texts.contains("broken")) {
+                throw new AssertionError("Model failure");
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return texts.stream().map(text -> new float[]{1f}).toList();
+        }, 100, Duration.ofMillis(10), 8)) {
+            // Errors fail the waiting query instead of leaving it blocked, and are not cached
+            Assertions.assertThrows(AssertionError.class, () -> queryEmbedder.embed("broken"));
+            Assertions.assertThrows(AssertionError.class, () -> queryEmbedder.embed("broken"));
+
+            // A query waiting for a slow batch gives up after its timeout
+            Assertions.assertThrows(TimeoutException.class, () -> queryEmbedder.embed("slow", Duration.ofMillis(50)));
+            release.countDown();
+            Assertions.assertArrayEquals(new float[]{1f}, queryEmbedder.embed("slow", Duration.ofSeconds(5)));
+
+            queryEmbedder.close();
+            Assertions.assertThrows(IllegalStateException.class, () -> queryEmbedder.embed("closed"));
+        }
+    }
+
+    @Test
+    void testHybridSearchWithReranker() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, SET);
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.DOT_PRODUCT);
+
+            // A reranker preferring storage records over the "Lucene" matches ranked first by the indexes
+            List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+            SearchOptions options = SearchOptions.defaults().setReranker(candidates -> {
+                batchSizes.add(candidates.size());
+                float[] scores = new float[candidates.size()];
+                for (int i = 0; i < scores.length; i++) {
+                    scores[i] = candidates.get(i).getString("body").contains("storage") ? 1f : 0f;
+                }
+                return scores;
+            }, 10);
+
+            List<Record> results = search.searchHybrid(NAMESPACE, SET, "Lucene", new float[]{1f, 0f, 1f},
+                    SimilarityFunction.DOT_PRODUCT, 2, 0.6, 0.4, options);
+            Assertions.assertEquals(2, results.size());
+            Assertions.assertEquals("Distributed Databases", results.getFirst().getString("title"));
+            Assertions.assertEquals(List.of(3), batchSizes);
+
+            // Smaller batches overlap fetching with scoring
+            batchSizes.clear();
+            results = search.searchText(NAMESPACE, SET, "Aerospike OR Lucene", 3, options.setRerankBatchSize(1));
+            Assertions.assertEquals(3, results.size());
+            Assertions.assertEquals("Distributed Databases", results.getFirst().getString("title"));
+            Assertions.assertEquals(List.of(1, 1, 1), batchSizes);
+        }
+    }
+
+    @Test
+    void testSearchSimilarByKey() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createFullTextIndex(NAMESPACE, SET);
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.COSINE);
+
+            // The vector index is used when the set has one, the record itself is not a result
+            List<Record> results = search.searchSimilar(NAMESPACE, SET, new Key(NAMESPACE, SET, "doc"), 1);
+            Assertions.assertEquals(1, results.size());
+            Assertions.assertEquals("Aerospike and Lucene", results.getFirst().getString("title"));
+
+            // "Aerospike" is the only term of doc3 shared with another record
+            results = search.searchSimilar(NAMESPACE, SET, new Key(NAMESPACE, SET, "doc3"), 2, IndexType.FULL_TEXT,
+                    SearchOptions.defaults());
+            Assertions.assertEquals(1, results.size());
+            Assertions.assertEquals("Aerospike and Lucene", results.getFirst().getString("title"));
+
+            Assertions.assertTrue(search.searchSimilar(NAMESPACE, SET, new Key(NAMESPACE, SET, "missing"), 2).isEmpty());
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package io.github.roimenashe.shard;
+
+import io.github.roimenashe.AerospikeSearch;
+import io.github.roimenashe.AerospikeSearchConfig;
+import io.github.roimenashe.BaseTest;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.exp.Exp;
+import io.github.roimenashe.model.PartitionRange;
+import io.github.roimenashe.model.ScoredId;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.ShardQuery;
+import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.SortBy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ShardedSearchTest extends BaseTest {
+
+    @Test
+    void testScatterGatherOverPartitionShards() throws Exception {
+        String set = "sharded";
+        for (int i = 0; i < 200; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, set, i),
+                    new Bin("text", "document " + i), new Bin("n", i), new Bin("vector", List.of((float) i, 1f)));
+        }
+
+        try (AerospikeSearch shard0 = new AerospikeSearch(aerospikeClient,
+                AerospikeSearchConfig.defaults().setPartitionRange(PartitionRange.forShard(0, 2)));
+             AerospikeSearch shard1 = new AerospikeSearch(aerospikeClient,
+                     AerospikeSearchConfig.defaults().setPartitionRange(PartitionRange.forShard(1, 2)));
+             SearchCoordinator coordinator = new SearchCoordinator(aerospikeClient,
+                     List.of(new LocalShardTransport(shard0), new LocalShardTransport(shard1)))) {
+            for (AerospikeSearch shard : List.of(shard0, shard1)) {
+                shard.createFullTextIndex(NAMESPACE, set, "text");
+                shard.createVectorIndex(NAMESPACE, set, "vector", SimilarityFunction.EUCLIDEAN);
+            }
+
+            // Each shard indexes its own partitions only
+            List<ScoredId> ids0 = shard0.searchShard(ShardQuery.text(NAMESPACE, set, "document", 200));
+            List<ScoredId> ids1 = shard1.searchShard(ShardQuery.text(NAMESPACE, set, "document", 200));
+            Assertions.assertTrue(ids0.size() < 200 && ids1.size() < 200);
+            Set<String> all = new HashSet<>();
+            ids0.forEach(id -> all.add(id.getId()));
+            ids1.forEach(id -> all.add(id.getId()));
+            Assertions.assertEquals(200, all.size());
+
+            // The global nearest neighbors come from both shards
+            List<Record> results = coordinator.searchVector(NAMESPACE, set, new float[]{100f, 1f}, 5,
+                    SimilarityFunction.EUCLIDEAN, SearchOptions.defaults());
+            Assertions.assertEquals(List.of(100, 99, 101, 98, 102).stream().sorted().toList(),
+                    results.stream().map(r -> r.getInt("n")).sorted().toList());
+            Assertions.assertEquals(100, results.getFirst().getInt("n"));
+
+            results = coordinator.searchText(NAMESPACE, set, "document 42", 3, SearchOptions.defaults());
+            Assertions.assertEquals(3, results.size());
+            Assertions.assertEquals(42, results.getFirst().getInt("n"));
+
+            // Shard hits are merged by score, other orders are rejected
+            Assertions.assertThrows(IllegalArgumentException.class, () -> coordinator.searchText(NAMESPACE, set,
+                    "document", 3, SearchOptions.defaults().setSortBy(SortBy.ascending("n"))));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> coordinator.searchVector(NAMESPACE, set,
+                    new float[]{100f, 1f}, 0, SimilarityFunction.EUCLIDEAN, SearchOptions.defaults()));
+
+            // A selective filter rejects the over-fetched nearest neighbors, the shards are queried again
+            results = coordinator.searchVector(NAMESPACE, set, new float[]{0f, 1f}, 3, SimilarityFunction.EUCLIDEAN,
+                    SearchOptions.defaults().setFilterExpression(Exp.build(Exp.ge(Exp.intBin("n"), Exp.val(150)))));
+            Assertions.assertEquals(List.of(150, 151, 152), results.stream().map(r -> r.getInt("n")).toList());
+
+            // Records returned by overlapping shards are merged once
+            try (SearchCoordinator overlapping = new SearchCoordinator(aerospikeClient, List.of(
+                    new LocalShardTransport(shard0), new LocalShardTransport(shard0), new LocalShardTransport(shard1)))) {
+                results = overlapping.searchVector(NAMESPACE, set, new float[]{100f, 1f}, 5,
+                        SimilarityFunction.EUCLIDEAN, SearchOptions.defaults());
+                Assertions.assertEquals(List.of(98, 99, 100, 101, 102),
+                        results.stream().map(r -> r.getInt("n")).sorted().toList());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.roimenashe.vector;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Bin;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import io.github.roimenashe.AerospikeSearch;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.ShardQuery;
+import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.VectorSearchMode;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Measures build time and query latency of vector and full-text indexes built with different segment settings,
+ * as reported in the README. Queries go through {@code searchShard}, so no records are read.
+ * <p>
+ * Run with an Aerospike server on localhost:3000: {@code SegmentBenchmark [records] [dimensions] [queries]}
+ */
+public class SegmentBenchmark {
+
+    private static final String NAMESPACE = "test";
+    private static final String SET = "segment-bench";
+    private static final String[] WORDS = new String[2000];
+
+    static {
+        for (int i = 0; i < WORDS.length; i++) {
+            WORDS[i] = "w" + Integer.toString(i * 7919, 36);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int dimensions = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        Map<String, IndexOptions> runs = new LinkedHashMap<>();
+        runs.put("defaults", IndexOptions.defaults());
+        runs.put("force merge to 1", IndexOptions.defaults().setForceMergeSegments(1));
+        runs.put("4MB buffer, 50 segments/tier", IndexOptions.defaults().setRamBufferSizeMb(4).setSegmentsPerTier(50));
+        runs.put("same, force merge to 1", IndexOptions.defaults().setRamBufferSizeMb(4).setSegmentsPerTier(50)
+                .setForceMergeSegments(1));
+
+        try (IAerospikeClient client = new AerospikeClient("localhost", 3000)) {
+            load(client, records);
+            Function<Record, float[]> embedder = record -> randomVector(new Random(record.getInt("n")), dimensions);
+            Random random = new Random(2);
+            float[][] vectorQueries = new float[queries][];
+            String[] textQueries = new String[queries];
+            for (int i = 0; i < queries; i++) {
+                vectorQueries[i] = randomVector(random, dimensions);
+                textQueries[i] = WORDS[random.nextInt(400)] + " " + WORDS[random.nextInt(400)];
+            }
+
+            System.out.println("| Build options | Vector segments | Vector build | KNN p50 | KNN p99 | Text p50 | Text p99 |");
+            for (Map.Entry<String, IndexOptions> run : runs.entrySet()) {
+                try (AerospikeSearch search = new AerospikeSearch(client)) {
+                    long start = System.nanoTime();
+                    search.createVectorIndex(NAMESPACE, SET, embedder, SimilarityFunction.EUCLIDEAN, run.getValue());
+                    long buildMillis = (System.nanoTime() - start) / 1_000_000;
+                    search.createFullTextIndex(NAMESPACE, SET, run.getValue(), "text");
+
+                    SearchOptions options = SearchOptions.defaults().setVectorSearchMode(VectorSearchMode.APPROXIMATE);
+                    long[] knn = new long[queries];
+                    long[] text = new long[queries];
+                    // The first pass warms up the JIT and the index files, the second one is measured
+                    for (int pass = 0; pass < 2; pass++) {
+                        for (int i = 0; i < queries; i++) {
+                            long queryStart = System.nanoTime();
+                            search.searchShard(ShardQuery.vector(NAMESPACE, SET, vectorQueries[i], 10,
+                                    SimilarityFunction.EUCLIDEAN).setOptions(options));
+                            knn[i] = System.nanoTime() - queryStart;
+                        }
+                        for (int i = 0; i < queries; i++) {
+                            long queryStart = System.nanoTime();
+                            search.searchShard(ShardQuery.text(NAMESPACE, SET, textQueries[i], 10));
+                            text[i] = System.nanoTime() - queryStart;
+                        }
+                    }
+                    Arrays.sort(knn);
+                    Arrays.sort(text);
+                    System.out.printf("| %s | %d | %.1fs | %.2fms | %.2fms | %.2fms | %.2fms |%n", run.getKey(),
+                            search.getSegmentCount(NAMESPACE, SET, IndexType.VECTOR), buildMillis / 1000.0,
+                            percentile(knn, 50), percentile(knn, 99), percentile(text, 50), percentile(text, 99));
+                }
+            }
+            client.truncate(null, NAMESPACE, SET, null);
+        }
+    }
+
+    private static void load(IAerospikeClient client, int records) {
+        client.truncate(null, NAMESPACE, SET, null);
+        Random random = new Random(1);
+        for (int i = 0; i < records; i++) {
+            // Word frequencies roughly follow a half-normal distribution, like a natural vocabulary
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                int word = (int) Math.min(WORDS.length - 1, Math.abs(random.nextGaussian()) * 300);
+                text.append(WORDS[word]).append(' ');
+            }
+            client.put(null, new Key(NAMESPACE, SET, i), new Bin("n", i), new Bin("text", text.toString()));
+        }
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double percentile(long[] sortedNanos, int percentile) {
+        return sortedNanos[sortedNanos.length * percentile / 100] / 1e6;
+    }
+}
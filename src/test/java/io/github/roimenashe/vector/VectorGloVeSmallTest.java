@@ -6,7 +6,9 @@ import com.aerospike.client.Record;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.policy.WritePolicy;
+import io.github.roimenashe.model.IndexOptions;
 import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.VectorSearchMode;
 import io.github.roimenashe.util.VectorUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -15,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -92,6 +95,70 @@ public class VectorGloVeSmallTest extends BaseTest {
         }
     }
 
+    @Test
+    void testExactVectorSearchTop10() throws Exception {
+        float[] query = vectors.values().iterator().next();
+
+        List<String> expectedTop10 = vectors.entrySet().stream()
+                .sorted((a, b) -> Float.compare(dot(query, b.getValue()), dot(query, a.getValue()))) // desc
+                .limit(10)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, gloveSet, "vectorBin", SimilarityFunction.DOT_PRODUCT);
+
+            // Exact search must reproduce the brute-force ground truth
+            List<Record> results = search.searchVector(NAMESPACE, gloveSet, query, 10,
+                    SimilarityFunction.DOT_PRODUCT, VectorSearchMode.EXACT);
+
+            List<String> actual = results.stream().map(r -> r.getString("token")).toList();
+            Assertions.assertEquals(expectedTop10, actual);
+        }
+    }
+
+    @Test
+    void testTruncatedVectorIndexWithRerank() throws Exception {
+        float[] query = vectors.values().iterator().next();
+
+        List<String> expectedTop5 = vectors.entrySet().stream()
+                .sorted((a, b) -> Float.compare(dot(query, b.getValue()), dot(query, a.getValue()))) // desc
+                .limit(5)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            // HNSW graph on the first 25 of 50 dimensions
+            search.createVectorIndex(NAMESPACE, gloveSet, "vectorBin", SimilarityFunction.DOT_PRODUCT,
+                    IndexOptions.defaults().setTruncatedDimensions(25).setRerankOversample(8));
+
+            // Approximate search reranks candidates with full vectors
+            List<Record> results = search.searchVector(NAMESPACE, gloveSet, query, 5,
+                    SimilarityFunction.DOT_PRODUCT, VectorSearchMode.APPROXIMATE);
+            Assertions.assertEquals(5, results.size());
+
+            // Exact search scores every prefix, then reranks the top 5 * 8 with their full vectors
+            float[] queryPrefix = Arrays.copyOf(query, 25);
+            List<String> expectedReranked = vectors.entrySet().stream()
+                    .sorted((a, b) -> Float.compare(dot(queryPrefix, b.getValue()), dot(queryPrefix, a.getValue())))
+                    .limit(40)
+                    .sorted((a, b) -> Float.compare(dot(query, b.getValue()), dot(query, a.getValue())))
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            results = search.searchVector(NAMESPACE, gloveSet, query, 5,
+                    SimilarityFunction.DOT_PRODUCT, VectorSearchMode.EXACT);
+            Assertions.assertEquals(expectedReranked, results.stream().map(r -> r.getString("token")).toList());
+
+            // Reranking every vector matches the ground truth
+            search.createVectorIndex(NAMESPACE, gloveSet, "vectorBin", SimilarityFunction.DOT_PRODUCT,
+                    IndexOptions.defaults().setTruncatedDimensions(25).setRerankOversample(vectors.size()));
+            results = search.searchVector(NAMESPACE, gloveSet, query, 5,
+                    SimilarityFunction.DOT_PRODUCT, VectorSearchMode.EXACT);
+            Assertions.assertEquals(expectedTop5, results.stream().map(r -> r.getString("token")).toList());
+        }
+    }
+
     /**
      * Compute dot-product for KNN ranking
      */
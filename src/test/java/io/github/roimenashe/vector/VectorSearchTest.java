@@ -1,14 +1,32 @@
 package io.github.roimenashe.vector;
 
 import io.github.roimenashe.AerospikeSearch;
+import io.github.roimenashe.AerospikeSearchConfig;
 import io.github.roimenashe.BaseTest;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
 import com.aerospike.client.Record;
+import com.aerospike.client.exp.Exp;
+import io.github.roimenashe.index.IndexEventListener;
+import io.github.roimenashe.model.ConsistencyReport;
+import io.github.roimenashe.model.IndexOptions;
+import io.github.roimenashe.model.IndexSpec;
 import io.github.roimenashe.model.IndexType;
+import io.github.roimenashe.model.NamespaceSet;
+import io.github.roimenashe.model.SearchOptions;
+import io.github.roimenashe.model.SearchResults;
+import io.github.roimenashe.model.VectorSearchMode;
 import io.github.roimenashe.model.SimilarityFunction;
+import io.github.roimenashe.model.SortBy;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 public class VectorSearchTest extends BaseTest {
@@ -68,6 +86,233 @@ public class VectorSearchTest extends BaseTest {
         }
     }
 
+    @Test
+    void testVectorSearchWithOptions() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.DOT_PRODUCT);
+
+            // Explore more candidates than requested results, within a time budget
+            SearchOptions options = SearchOptions.defaults()
+                    .setVectorSearchMode(VectorSearchMode.APPROXIMATE)
+                    .setNumCandidates(50)
+                    .setTimeout(Duration.ofSeconds(1));
+
+            List<Record> results = search.searchVector(NAMESPACE, SET, new float[]{1f, 0f, 1f}, 2,
+                    SimilarityFunction.DOT_PRODUCT, options);
+
+            Assertions.assertEquals(2, results.size());
+
+            // No result count is rejected upfront, whatever the search mode
+            for (VectorSearchMode mode : VectorSearchMode.values()) {
+                Assertions.assertThrows(IllegalArgumentException.class, () -> search.searchVector(NAMESPACE, SET,
+                        new float[]{1f, 0f, 1f}, 0, SimilarityFunction.DOT_PRODUCT, mode));
+            }
+        }
+    }
+
+    @Test
+    void testMultipleVectorFieldsInOneIndex() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            // A vector bin and an embedder share the documents of one vector index
+            search.createIndexes(NAMESPACE, SET,
+                    IndexSpec.vector("vectorBin", SimilarityFunction.COSINE),
+                    IndexSpec.vector(getEmbedder(), SimilarityFunction.DOT_PRODUCT).setFieldName("topics"));
+
+            Assertions.assertEquals(1, search.listIndexes().size());
+
+            // The similarity function picks the field when it is unambiguous
+            List<Record> results = search.searchVector(NAMESPACE, SET, new float[]{0f, 1f, 0f}, 1, SimilarityFunction.COSINE);
+            Assertions.assertEquals("Distributed Databases", results.getFirst().getString("title"));
+
+            results = search.searchVector(NAMESPACE, SET, new float[]{0f, 1f, 0f}, 3, SimilarityFunction.DOT_PRODUCT,
+                    SearchOptions.defaults().setVectorField("topics"));
+            Assertions.assertEquals(3, results.size());
+
+            // Neither field holds unit vectors, so euclidean queries cannot be served
+            Assertions.assertThrows(IllegalStateException.class,
+                    () -> search.searchVector(NAMESPACE, SET, new float[]{0f, 1f, 0f}, 1, SimilarityFunction.EUCLIDEAN));
+        }
+    }
+
+    @Test
+    void testSingleFieldBuildsKeepOtherFields() throws Exception {
+        AtomicInteger embedded = new AtomicInteger();
+        Function<Record, float[]> embedder = record -> {
+            embedded.incrementAndGet();
+            return getEmbedder().apply(record);
+        };
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createIndexes(NAMESPACE, SET,
+                    IndexSpec.vector("vectorBin", SimilarityFunction.COSINE),
+                    IndexSpec.vector(embedder, SimilarityFunction.DOT_PRODUCT).setFieldName("topics"));
+            Assertions.assertEquals(3, embedded.get());
+
+            // Rebuilding one field keeps the vectors of the other field for unchanged records
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.COSINE);
+            Assertions.assertEquals(3, embedded.get());
+            SearchOptions topics = SearchOptions.defaults().setVectorField("topics");
+            List<Record> results = search.searchVector(NAMESPACE, SET, new float[]{0f, 1f, 0f}, 3,
+                    SimilarityFunction.DOT_PRODUCT, topics);
+            Assertions.assertEquals(3, results.size());
+
+            // The field of a failed build is not registered
+            Assertions.assertThrows(Exception.class, () -> search.createIndexes(NAMESPACE, SET,
+                    IndexSpec.vector(record -> {
+                        throw new IllegalStateException("Embedding service unavailable");
+                    }, SimilarityFunction.EUCLIDEAN).setFieldName("broken")));
+            Assertions.assertThrows(IllegalStateException.class, () -> search.searchVector(NAMESPACE, SET,
+                    new float[]{0f, 1f, 0f}, 1, SimilarityFunction.EUCLIDEAN, SearchOptions.defaults().setVectorField("broken")));
+
+            search.dropVectorField(NAMESPACE, SET, "topics");
+            Assertions.assertThrows(IllegalStateException.class, () -> search.searchVector(NAMESPACE, SET,
+                    new float[]{0f, 1f, 0f}, 3, SimilarityFunction.DOT_PRODUCT, topics));
+            results = search.searchVector(NAMESPACE, SET, new float[]{0f, 1f, 0f}, 1, SimilarityFunction.COSINE);
+            Assertions.assertEquals("Distributed Databases", results.getFirst().getString("title"));
+            Assertions.assertEquals(3, embedded.get());
+
+            // The index is dropped with its last field
+            search.dropVectorField(NAMESPACE, SET, "vectorBin");
+            Assertions.assertTrue(search.listIndexes().isEmpty());
+        }
+    }
+
+    @Test
+    void testRebuildOneOfTwoFieldsSharingASimilarity() throws Exception {
+        String set = "twoFields";
+        aerospikeClient.truncate(null, NAMESPACE, set, null);
+        Key first = new Key(NAMESPACE, set, "first");
+        aerospikeClient.put(null, first, new Bin("a", List.of(1f, 0f)), new Bin("b", List.of(2f, 0f)));
+        aerospikeClient.put(null, new Key(NAMESPACE, set, "second"), new Bin("a", List.of(0f, 1f)), new Bin("b", List.of(0f, 1f)));
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createIndexes(NAMESPACE, set,
+                    IndexSpec.vector("a", SimilarityFunction.DOT_PRODUCT),
+                    IndexSpec.vector("b", SimilarityFunction.DOT_PRODUCT));
+            SearchOptions b = SearchOptions.defaults().setVectorField("b");
+            // Field b has a vector that is not unit length, so it cannot serve euclidean queries
+            Assertions.assertThrows(IllegalStateException.class, () -> search.searchVector(NAMESPACE, set,
+                    new float[]{1f, 0f}, 1, SimilarityFunction.EUCLIDEAN, b));
+
+            // Rebuilding field a inspects the vectors of b again, now all unit length
+            aerospikeClient.put(null, first, new Bin("b", List.of(1f, 0f)));
+            search.createVectorIndex(NAMESPACE, set, "a", SimilarityFunction.DOT_PRODUCT);
+            List<Record> results = search.searchVector(NAMESPACE, set, new float[]{1f, 0f}, 1,
+                    SimilarityFunction.EUCLIDEAN, b);
+            Assertions.assertEquals(List.of(1f, 0f).toString(), results.getFirst().getList("b").toString());
+
+            // A rebuild of field a from a bin no record has removes the field, b alone serves the similarity
+            search.createIndexes(NAMESPACE, set, IndexSpec.vector("c", SimilarityFunction.DOT_PRODUCT).setFieldName("a"));
+            Assertions.assertThrows(IllegalStateException.class, () -> search.searchVector(NAMESPACE, set,
+                    new float[]{1f, 0f}, 1, SimilarityFunction.DOT_PRODUCT, SearchOptions.defaults().setVectorField("a")));
+            results = search.searchVector(NAMESPACE, set, new float[]{0f, 1f}, 1, SimilarityFunction.DOT_PRODUCT);
+            Assertions.assertEquals(List.of(0f, 1f).toString(), results.getFirst().getList("b").toString());
+        }
+    }
+
+    @Test
+    void testTruncatedFieldsRerankWithStoredFullVectors() throws Exception {
+        // The one-dimension prefixes rank "Lucene in Action" first, the full vectors rank other records first
+        float[] queryVector = new float[]{0.1f, 1f, 0f};
+        IndexOptions truncated = IndexOptions.defaults().setTruncatedDimensions(1);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.DOT_PRODUCT, truncated);
+            for (VectorSearchMode mode : List.of(VectorSearchMode.EXACT, VectorSearchMode.APPROXIMATE)) {
+                List<Record> results = search.searchVector(NAMESPACE, SET, queryVector, 1, SimilarityFunction.DOT_PRODUCT, mode);
+                Assertions.assertEquals("Distributed Databases", results.getFirst().getString("title"));
+            }
+            List<Record> similar = search.searchSimilar(NAMESPACE, SET, new Key(NAMESPACE, SET, "doc"), 1);
+            Assertions.assertEquals("Aerospike and Lucene", similar.getFirst().getString("title"));
+
+            // Candidates are reranked with the full vectors they were indexed with, not their current bins
+            aerospikeClient.put(null, new Key(NAMESPACE, SET, "doc3"), new Bin("vectorBin", List.of(0f, -1f, 0f)));
+            List<Record> results = search.searchVector(NAMESPACE, SET, queryVector, 1, SimilarityFunction.DOT_PRODUCT);
+            Assertions.assertEquals("Distributed Databases", results.getFirst().getString("title"));
+        }
+
+        // Embedded fields are not embedded again at search time
+        AtomicInteger embedded = new AtomicInteger();
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, SET, record -> {
+                embedded.incrementAndGet();
+                return getEmbedder().apply(record);
+            }, SimilarityFunction.DOT_PRODUCT, truncated);
+            List<Record> results = search.searchVector(NAMESPACE, SET, queryVector, 1, SimilarityFunction.DOT_PRODUCT);
+            Assertions.assertEquals("Aerospike and Lucene", results.getFirst().getString("title"));
+            Assertions.assertEquals(3, embedded.get());
+        }
+    }
+
+    @Test
+    void testUnitVectorsServeOtherSimilarityFunctions() throws Exception {
+        final String unitSet = "unit";
+        float s = (float) Math.sqrt(0.5);
+        aerospikeClient.put(null, new Key(NAMESPACE, unitSet, "u1"),
+                new Bin("title", "x"), new Bin("embedding", List.of(1f, 0f)));
+        aerospikeClient.put(null, new Key(NAMESPACE, unitSet, "u2"),
+                new Bin("title", "xy"), new Bin("embedding", List.of(s, s)));
+        aerospikeClient.put(null, new Key(NAMESPACE, unitSet, "u3"),
+                new Bin("title", "y"), new Bin("embedding", List.of(0f, 1f)));
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, unitSet, "embedding", SimilarityFunction.COSINE);
+
+            // Vectors are unit length, so the cosine field also answers dot-product and euclidean queries
+            for (SimilarityFunction similarityFunction : SimilarityFunction.values()) {
+                List<Record> results = search.searchVector(NAMESPACE, unitSet, new float[]{2f, 0f}, 3, similarityFunction);
+                Assertions.assertEquals(List.of("x", "xy", "y"), results.stream().map(r -> r.getString("title")).toList());
+            }
+        }
+    }
+
+    @Test
+    void testVectorSearchWithFilterExpression() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.COSINE);
+
+            // The nearest record is rejected by the server, the next one fills the result
+            SearchOptions options = SearchOptions.defaults()
+                    .setFilterExpression(Exp.build(Exp.ne(Exp.stringBin("title"), Exp.val("Distributed Databases"))));
+            List<Record> results = search.searchVector(NAMESPACE, SET, new float[]{0f, 1f, 0f}, 1, SimilarityFunction.COSINE, options);
+
+            Assertions.assertEquals(1, results.size());
+            Assertions.assertNotEquals("Distributed Databases", results.getFirst().getString("title"));
+        }
+    }
+
+    @Test
+    void testVectorSearchSortedByNumericBin() throws Exception {
+        final String listingsSet = "listings";
+        for (int i = 0; i < 5; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, listingsSet, "listing" + i),
+                    new Bin("price", 100 - i), new Bin("embedding", List.of(1f, i / 10f)));
+        }
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, listingsSet, "embedding", SimilarityFunction.EUCLIDEAN,
+                    IndexOptions.defaults().setSortableBins("price"));
+
+            // The 3 nearest neighbors, cheapest first
+            List<Record> results = search.searchVector(NAMESPACE, listingsSet, new float[]{1f, 0f}, 3,
+                    SimilarityFunction.EUCLIDEAN, SearchOptions.defaults().setSortBy(SortBy.ascending("price")));
+            Assertions.assertEquals(List.of(98L, 99L, 100L), results.stream().map(r -> r.getLong("price")).toList());
+        }
+    }
+
+    @Test
+    void testVectorSearchWithFacets() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.COSINE,
+                    IndexOptions.defaults().setFacetBins("title"));
+
+            SearchResults<Record> results = search.searchVectorWithFacets(NAMESPACE, SET, new float[]{1f, 0f, 1f}, 2,
+                    SimilarityFunction.COSINE, SearchOptions.defaults().setFacets("title"));
+
+            // Facets cover the 2 nearest neighbors
+            Assertions.assertEquals(2, results.getResults().size());
+            Assertions.assertEquals(Map.of("Lucene in Action", 1L, "Aerospike and Lucene", 1L),
+                    results.getFacet("title").getCounts());
+        }
+    }
+
     // Simple deterministic embedding generator
     private Function<Record, float[]> getEmbedder() {
         return record -> {
@@ -83,6 +328,220 @@ public class VectorSearchTest extends BaseTest {
         };
     }
 
+    @Test
+    void testCrossSetVectorSearch() throws Exception {
+        final String archiveSet = "docs-archive";
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            aerospikeClient.put(null, new Key(NAMESPACE, archiveSet, "old1"),
+                    new Bin("title", "Archived Databases"), new Bin("vectorBin", List.of(0.1f, 1f, 0f)));
+            aerospikeClient.put(null, new Key(NAMESPACE, archiveSet, "old2"),
+                    new Bin("title", "Archived Lucene"), new Bin("vectorBin", List.of(1f, 0f, 1f)));
+
+            // Sets with different field layouts are searched separately and merged by score
+            search.createVectorIndex(NAMESPACE, SET, "vectorBin", SimilarityFunction.COSINE);
+            search.createVectorIndex(NAMESPACE, archiveSet, "vectorBin", SimilarityFunction.COSINE,
+                    IndexOptions.defaults().setTruncatedDimensions(2));
+
+            List<NamespaceSet> sets = List.of(NamespaceSet.of(NAMESPACE, SET), NamespaceSet.of(NAMESPACE, archiveSet));
+            List<Record> results = search.searchVector(sets, new float[]{0f, 1f, 0f}, 2, SimilarityFunction.COSINE,
+                    SearchOptions.defaults());
+
+            Assertions.assertEquals(List.of("Distributed Databases", "Archived Databases"),
+                    results.stream().map(r -> r.getString("title")).toList());
+        }
+    }
+
+    @Test
+    void testEvictionSkipsIndexBeingRebuilt() throws Exception {
+        final String notesSet = "notes";
+        aerospikeClient.put(null, new Key(NAMESPACE, notesSet, "note1"), new Bin("text", "Lucene notes"));
+
+        List<String> evicted = new ArrayList<>();
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults()
+                .setMemoryBudget(1) // only one index fits at a time
+                .addIndexEventListener(new IndexEventListener() {
+                    @Override
+                    public void onEvict(String indexName, long sizeInBytes) {
+                        evicted.add(indexName);
+                    }
+                });
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createVectorIndex(NAMESPACE, SET, getEmbedder(), SimilarityFunction.DOT_PRODUCT);
+
+            // Another index is admitted while the vector index is rebuilt, the vector index is pinned by its build
+            AtomicInteger embedded = new AtomicInteger();
+            List<String> evictedDuringBuild = new ArrayList<>();
+            search.createVectorIndex(NAMESPACE, SET, record -> {
+                if (embedded.incrementAndGet() == 1) {
+                    try {
+                        search.createFullTextIndex(NAMESPACE, notesSet);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    evictedDuringBuild.addAll(evicted);
+                }
+                return getEmbedder().apply(record);
+            }, SimilarityFunction.DOT_PRODUCT);
+
+            Assertions.assertEquals(List.of(), evictedDuringBuild);
+            List<Record> results = search.searchVector(NAMESPACE, SET, new float[]{1f, 0f, 1f}, 10, SimilarityFunction.DOT_PRODUCT);
+            Assertions.assertEquals(3, results.size());
+            // Once built, the vector index is admitted and the cold one is evicted
+            Assertions.assertEquals(List.of(NAMESPACE + ":" + notesSet), evicted);
+        }
+    }
+
+    @Test
+    void testBuildResumesFromCheckpointAfterRestart(@TempDir Path checkpointPath) throws Exception {
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults()
+                .setCheckpointInterval(1)
+                .setCheckpointPath(checkpointPath);
+        AtomicInteger embedded = new AtomicInteger();
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            // The embedding service fails on the third record
+            Function<Record, float[]> failing = record -> {
+                if (embedded.incrementAndGet() == 3) {
+                    throw new IllegalStateException("Embedding service unavailable");
+                }
+                return getEmbedder().apply(record);
+            };
+            Assertions.assertThrows(Exception.class,
+                    () -> search.createVectorIndex(NAMESPACE, SET, failing, SimilarityFunction.DOT_PRODUCT));
+            // The records committed by the checkpoints are not served until a build completes the index
+            Assertions.assertThrows(IllegalStateException.class,
+                    () -> search.searchVector(NAMESPACE, SET, new float[]{1f, 0f, 1f}, 10, SimilarityFunction.DOT_PRODUCT));
+        }
+
+        embedded.set(0);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createVectorIndex(NAMESPACE, SET, record -> {
+                embedded.incrementAndGet();
+                return getEmbedder().apply(record);
+            }, SimilarityFunction.DOT_PRODUCT);
+
+            // Records scanned again after the checkpoint replace their documents instead of duplicating them
+            List<Record> results = search.searchVector(NAMESPACE, SET, new float[]{1f, 0f, 1f}, 10, SimilarityFunction.DOT_PRODUCT);
+            Assertions.assertEquals(3, results.size());
+            // The client records a partition's progress after the callback, so the last checkpoint (taken on the
+            // second record) covers the first record only: the second and third records are embedded again
+            Assertions.assertEquals(2, embedded.get());
+        }
+    }
+
+    @Test
+    void testEmbeddingCacheReusesUnchangedRecords(@TempDir Path cachePath) throws Exception {
+        String set = "embedded";
+        for (int i = 0; i < 1000; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, set, i), new Bin("n", i));
+        }
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults().setEmbeddingCachePath(cachePath);
+        AtomicInteger embedded = new AtomicInteger();
+        Function<Record, float[]> embedder = record -> {
+            embedded.incrementAndGet();
+            return new float[]{record.getInt("n"), 1f};
+        };
+
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(1000, embedded.get());
+
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(1000, embedded.get());
+        }
+
+        // After a restart, only the record written since is embedded again
+        aerospikeClient.put(null, new Key(NAMESPACE, set, 7), new Bin("n", 5000));
+        embedded.set(0);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(1, embedded.get());
+
+            List<Record> results = search.searchVector(NAMESPACE, set, new float[]{5000f, 1f}, 1, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(5000, results.getFirst().getInt("n"));
+            results = search.searchVector(NAMESPACE, set, new float[]{999f, 1f}, 1, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(999, results.getFirst().getInt("n"));
+        }
+    }
+
+    @Test
+    void testRebuildWarmsUpWithRecentQueries() throws Exception {
+        String set = "warmed";
+        for (int i = 0; i < 100; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, set, i), new Bin("n", i));
+        }
+        Function<Record, float[]> embedder = record -> new float[]{record.getInt("n"), 1f};
+        AerospikeSearchConfig config = AerospikeSearchConfig.defaults().setWarmupQueries(2);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient, config)) {
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN);
+            List<Record> results = search.searchVector(NAMESPACE, set, new float[]{42f, 1f}, 1, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(42, results.getFirst().getInt("n"));
+            search.searchVector(NAMESPACE, set, new float[]{7f, 1f}, 3, SimilarityFunction.EUCLIDEAN,
+                    SearchOptions.defaults().setVectorSearchMode(VectorSearchMode.APPROXIMATE));
+
+            // The rebuild replays the recent queries before it replaces the index
+            aerospikeClient.put(null, new Key(NAMESPACE, set, 100), new Bin("n", 500));
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN);
+            results = search.searchVector(NAMESPACE, set, new float[]{500f, 1f}, 1, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(500, results.getFirst().getInt("n"));
+        }
+    }
+
+    @Test
+    void testForceMergedBuild() throws Exception {
+        String set = "merged";
+        for (int i = 0; i < 2000; i++) {
+            aerospikeClient.put(null, new Key(NAMESPACE, set, i), new Bin("n", i));
+        }
+        Function<Record, float[]> embedder = record -> new float[]{record.getInt("n"), 1f};
+        IndexOptions options = IndexOptions.defaults()
+                .setRamBufferSizeMb(1)
+                .setSegmentsPerTier(2)
+                .setMergeThreads(1)
+                .setForceMergeSegments(1);
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN, options);
+            Assertions.assertEquals(1, search.getSegmentCount(NAMESPACE, set, IndexType.VECTOR));
+            List<Record> results = search.searchVector(NAMESPACE, set, new float[]{1234f, 1f}, 1, SimilarityFunction.EUCLIDEAN,
+                    SearchOptions.defaults().setVectorSearchMode(VectorSearchMode.APPROXIMATE));
+            Assertions.assertEquals(1234, results.getFirst().getInt("n"));
+
+            // Later builds with default options restore the default segment settings
+            search.createVectorIndex(NAMESPACE, set, embedder, SimilarityFunction.EUCLIDEAN);
+            results = search.searchVector(NAMESPACE, set, new float[]{99f, 1f}, 1, SimilarityFunction.EUCLIDEAN);
+            Assertions.assertEquals(99, results.getFirst().getInt("n"));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IndexOptions.defaults().setSegmentsPerTier(1));
+    }
+
+    @Test
+    void testVerifyVectorIndexSkipsRecordsWithoutVector() throws Exception {
+        try (AerospikeSearch search = new AerospikeSearch(aerospikeClient)) {
+            String set = "verifyVectors";
+            aerospikeClient.truncate(null, NAMESPACE, set, null);
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "doc0"), new Bin("vector", List.of(1f, 0f)));
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "doc1"), new Bin("vector", List.of(0f, 1f)));
+            // Not indexed by the build, as it has no vector
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "note"), new Bin("text", "no vector"));
+            search.createVectorIndex(NAMESPACE, set, "vector", SimilarityFunction.COSINE);
+
+            ConsistencyReport report = search.verifyIndex(NAMESPACE, set, IndexType.VECTOR, false);
+            Assertions.assertEquals(2, report.getIndexed());
+            Assertions.assertEquals(3, report.getScanned());
+            Assertions.assertTrue(report.isConsistent());
+
+            // A record written with a vector since the build is missing, one written without is not
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "doc2"), new Bin("vector", List.of(1f, 1f)));
+            aerospikeClient.put(null, new Key(NAMESPACE, set, "note2"), new Bin("text", "no vector either"));
+            report = search.verifyIndex(NAMESPACE, set, IndexType.VECTOR, true);
+            Assertions.assertEquals(List.of(new Key(NAMESPACE, set, "doc2")), report.getMissing());
+            Assertions.assertTrue(report.isRepaired());
+            Assertions.assertTrue(search.verifyIndex(NAMESPACE, set, IndexType.VECTOR, false).isConsistent());
+        }
+    }
+
     @Test
     void testTooLargeK() throws Exception {
         AerospikeSearch search = new AerospikeSearch(aerospikeClient);